@@ -14,6 +14,8 @@ import org.mtransit.commons.GTFSCommons;
 import org.mtransit.commons.StringsCleaner;
 import org.mtransit.parser.config.Configs;
 import org.mtransit.parser.config.gtfs.data.AgencyConfig;
+import org.mtransit.parser.db.DBUtils;
+import org.mtransit.parser.db.GTFSDataBase;
 import org.mtransit.parser.gtfs.GAgencyTools;
 import org.mtransit.parser.gtfs.GReader;
 import org.mtransit.parser.gtfs.data.GAgency;
@@ -122,6 +124,48 @@ public class DefaultAgencyTools implements GAgencyTools {
 		MTLog.log("Thread pool size: %d.", THREAD_POOL_SIZE);
 	}
 
+	private static final boolean PARALLEL_STOP_TIMES_PARSING;
+
+	static {
+		final String envMTParallelStopTimes = System.getenv("MT_PARALLEL_STOP_TIMES");
+		if (envMTParallelStopTimes != null && !envMTParallelStopTimes.isEmpty()) {
+			PARALLEL_STOP_TIMES_PARSING = Boolean.parseBoolean(envMTParallelStopTimes);
+		} else {
+			PARALLEL_STOP_TIMES_PARSING = THREAD_POOL_SIZE > 1;
+		}
+		MTLog.log("Parallel stop times parsing: %s.", PARALLEL_STOP_TIMES_PARSING);
+	}
+
+	public static final boolean OFF_HEAP_STOP_TIMES;
+
+	static {
+		final String envMTOffHeapStopTimes = System.getenv("MT_OFF_HEAP_STOP_TIMES");
+		OFF_HEAP_STOP_TIMES = envMTOffHeapStopTimes != null && Boolean.parseBoolean(envMTOffHeapStopTimes); // default: SQL
+		MTLog.log("Off-heap stop times: %s.", OFF_HEAP_STOP_TIMES);
+	}
+
+	private static final boolean INGEST_SNAPSHOT;
+
+	static {
+		final String envMTIngestSnapshot = System.getenv("MT_INGEST_SNAPSHOT");
+		INGEST_SNAPSHOT = envMTIngestSnapshot != null && Boolean.parseBoolean(envMTIngestSnapshot); // default: always parsing
+		MTLog.log("Ingest snapshot: %s.", INGEST_SNAPSHOT);
+	}
+
+	public static final long DB_MEMORY_BUDGET_IN_BYTES; // 0 = no limit (never spilled to file)
+
+	static {
+		final String envMTDBMemoryBudgetMB = System.getenv("MT_DB_MEMORY_BUDGET_MB");
+		if (envMTDBMemoryBudgetMB != null
+				&& !envMTDBMemoryBudgetMB.isEmpty()
+				&& CharUtils.isDigitsOnly(envMTDBMemoryBudgetMB)) {
+			DB_MEMORY_BUDGET_IN_BYTES = Long.parseLong(envMTDBMemoryBudgetMB) * 1024L * 1024L;
+		} else {
+			DB_MEMORY_BUDGET_IN_BYTES = 2L * 1024L * 1024L * 1024L; // 2 GB per in-memory DB
+		}
+		MTLog.log("DB memory budget: %s.", DB_MEMORY_BUDGET_IN_BYTES > 0L ? FileUtils.sizeToDiplayString(DB_MEMORY_BUDGET_IN_BYTES) : "none");
+	}
+
 	private static final Integer OVERRIDE_DATE;
 
 	static {
@@ -185,6 +229,7 @@ public class DefaultAgencyTools implements GAgencyTools {
 		}
 		final long start = System.currentTimeMillis();
 		final GSpec gtfs = GReader.readGtfsZipFile(args[0], this, false, false);
+		GTFSDataBase.spillToFileIfNeeded(); // all GTFS loaded
 		MDataChangedManager.avoidCalendarDatesDataChanged(lastServiceDates, gtfs, this);
 		gtfs.cleanupStops();
 		gtfs.cleanupExcludedData();
@@ -193,7 +238,10 @@ public class DefaultAgencyTools implements GAgencyTools {
 		if (args.length >= 4 && Boolean.parseBoolean(args[3])) {
 			gtfs.generateStopTimesFromFrequencies(this);
 		}
+		GTFSDataBase.spillToFileIfNeeded(); // stop times cleaned up & trip stops generated
+		DBUtils.spillToFileIfNeeded(); // trip stops generated
 		gtfs.splitByRouteId(this);
+		gtfs.partitionByRouteId();
 		gtfs.clearRawData();
 		final MSpec mSpec = MGenerator.generateMSpec(gtfs, this);
 		if (Constants.SKIP_FILE_DUMP) {
@@ -957,7 +1005,9 @@ public class DefaultAgencyTools implements GAgencyTools {
 		if (cleanMergedTripIds()) {
 			cleanTripId = CleanUtils.cleanMergedID(cleanTripId);
 		}
-		this.tripIdToCleanupTripId.put(gOriginalTripId, cleanTripId);
+		if (verifyTripIdsUniqueness()) { // only used for verification (called for each stop time)
+			this.tripIdToCleanupTripId.put(gOriginalTripId, cleanTripId);
+		}
 		return cleanTripId;
 	}
 
@@ -1548,7 +1598,9 @@ public class DefaultAgencyTools implements GAgencyTools {
 		if (cleanMergedStopIds()) {
 			cleanStopId = CleanUtils.cleanMergedID(cleanStopId);
 		}
-		this.stopIdToCleanupStopId.put(gStopOriginalId, cleanStopId);
+		if (verifyStopIdsUniqueness()) { // only used for verification (called for each stop time)
+			this.stopIdToCleanupStopId.put(gStopOriginalId, cleanStopId);
+		}
 		return cleanStopId;
 	}
 
@@ -1580,6 +1632,22 @@ public class DefaultAgencyTools implements GAgencyTools {
 		return THREAD_POOL_SIZE;
 	}
 
+	@Override
+	public boolean parallelStopTimesParsingEnabled() {
+		return PARALLEL_STOP_TIMES_PARSING;
+	}
+
+	@Nullable
+	@Override
+	public String getIngestSnapshotKey() {
+		if (!INGEST_SNAPSHOT) {
+			return null;
+		}
+		final List<String> serviceIds = this.serviceIdInts == null ? new ArrayList<>() : new ArrayList<>(GIDs.getStrings(this.serviceIdInts));
+		Collections.sort(serviceIds);
+		return serviceIds + "|" + Configs.getAgencyConfig() + "|" + Configs.getRouteConfig();
+	}
+
 	@Nullable
 	@Override
 	public Pair<Integer, Integer> getTimes(@NotNull GStopTime gStopTime, @NotNull List<GStopTime> tripStopTimes, @NotNull DateFormat timeFormat) {
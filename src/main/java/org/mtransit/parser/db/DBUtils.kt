@@ -6,19 +6,20 @@ import org.mtransit.commons.sql.fromSQL
 import org.mtransit.commons.sql.getStringOrNull
 import org.mtransit.commons.sql.toSQL
 import org.mtransit.parser.DefaultAgencyTools
-import org.mtransit.parser.FileUtils
 import org.mtransit.parser.MTLog
+import org.mtransit.parser.Utils
 import org.mtransit.parser.db.SQLUtils.quotesEscape
+import org.mtransit.parser.db.SQLUtils.quotesEscapeValue
 import org.mtransit.parser.db.SQLUtils.unquotes
 import org.mtransit.parser.gtfs.data.GStopTime
 import org.mtransit.parser.gtfs.data.GTripStop
 import org.mtransit.parser.mt.data.MSchedule
 import org.sqlite.SQLiteException
-import java.io.File
 import java.sql.Connection
-import java.sql.DriverManager
 import java.sql.PreparedStatement
 import java.sql.SQLException
+import java.sql.Statement
+import java.util.concurrent.TimeUnit
 import org.mtransit.commons.sql.SQLUtils as SQLUtilsCommons
 
 object DBUtils {
@@ -31,34 +32,31 @@ object DBUtils {
 
     private const val SQL_RESULT_ALIAS = "result"
 
+    const val DEFAULT_BATCH_SIZE = 1_000
+
     private val IS_USING_FILE_INSTEAD_OF_MEMORY = DefaultAgencyTools.IS_CI
 
-    private val connection: Connection by lazy {
-        FileUtils.deleteIfExist(File(FILE_PATH)) // delete previous
+    private val storage: SQLStorage by lazy {
         MTLog.log("DB connection > IS_USING_FILE_INSTEAD_OF_MEMORY: $IS_USING_FILE_INSTEAD_OF_MEMORY")
-        DriverManager.getConnection(
-            if (IS_USING_FILE_INSTEAD_OF_MEMORY) {
-                SQLUtils.getJDBCSQLiteFile(FILE_PATH)
-            } else {
-                SQLUtils.JDBC_SQLITE_MEMORY // faster
-            }.also {
-                MTLog.log("DB connection: $it")
-            }
-        )
+        SQLStorage("DB", FILE_PATH, IS_USING_FILE_INSTEAD_OF_MEMORY, DefaultAgencyTools.DB_MEMORY_BUDGET_IN_BYTES)
     }
 
+    private val connection: Connection // replaced if spilled to file
+        get() = storage.connection
+
+    private val statementCache: SQLStatementCache
+        get() = storage.statementCache
+
     private var selectCount = 0
     private var selectRowCount = 0
     private var insertCount = 0
     private var insertRowCount = 0
+    private var insertDurationInNs = 0L
     private var deleteCount = 0
     private var deletedRowCount = 0
 
     init {
         connection.createStatement().use { statement ->
-            SQLUtils.execute(statement, "PRAGMA synchronous = OFF")
-            SQLUtils.execute(statement, "PRAGMA journal_mode = MEMORY")
-            SQLUtils.execute(statement, SQLUtilsCommons.PRAGMA_AUTO_VACUUM_NONE)
             SQLUtils.executeUpdate(statement, SQLUtilsCommons.getSQLDropIfExistsQuery(STOP_TIMES_TABLE_NAME))
             SQLUtils.executeUpdate(statement, SQLUtilsCommons.getSQLDropIfExistsQuery(TRIP_STOPS_TABLE_NAME))
             SQLUtils.executeUpdate(statement, SQLUtilsCommons.getSQLDropIfExistsQuery(SCHEDULES_TABLE_NAME))
@@ -114,9 +112,13 @@ object DBUtils {
     }
 
     @JvmStatic
-    fun getDBSize() = if (IS_USING_FILE_INSTEAD_OF_MEMORY) {
-        FileUtils.size(File(FILE_PATH))
-    } else null
+    fun getDBSize() = storage.getSize()
+
+    /**
+     * Only between steps: no pending transaction & no concurrent reader.
+     */
+    @JvmStatic
+    fun spillToFileIfNeeded() = storage.spillToFileIfNeeded()
 
     @Suppress("unused")
     @JvmStatic
@@ -336,56 +338,98 @@ object DBUtils {
 
     // endregion Stop Time
 
-    @JvmStatic
-    fun insertTripStop(gTripStop: GTripStop): Boolean {
-        connection.createStatement().use { statement ->
-            val rs = SQLUtils.executeUpdate(
-                statement,
-                buildString {
-                    append(SQLUtilsCommons.INSERT_INTO)
-                    append(TRIP_STOPS_TABLE_NAME)
-                    append(
-                        buildList {
-                            add(gTripStop.routeIdInt.toString())
-                            add(gTripStop.tripIdInt.toString())
-                            add(gTripStop.stopIdInt.toString())
-                            add(gTripStop.stopSequence.toString())
-                            if (FeatureFlags.F_EXPORT_DIRECTION_STOP_LAST) {
-                                add(gTripStop.isLastTripStop.toSQL().toString())
-                            }
-                        }.joinToString(separator = ",", prefix = SQLUtilsCommons.VALUES_P1, postfix = (SQLUtilsCommons.P2))
-                    )
-                }
-            )
-            insertRowCount++
-            insertCount++
-            return rs > 0
+    private val insertTripStopQuery: String by lazy {
+        SQLUtilsCommons.INSERT_INTO + TRIP_STOPS_TABLE_NAME + SQLUtilsCommons.VALUES_P1 +
+                SQLUtils.placeholders(if (FeatureFlags.F_EXPORT_DIRECTION_STOP_LAST) 5 else 4) +
+                SQLUtilsCommons.P2
+    }
+
+    private fun GTripStop.toSQLArgs() = buildList {
+        add(routeIdInt)
+        add(tripIdInt)
+        add(stopIdInt)
+        add(stopSequence)
+        if (FeatureFlags.F_EXPORT_DIRECTION_STOP_LAST) {
+            add(isLastTripStop.toSQL())
         }
     }
 
+    /**
+     * @return inserted trip stops count
+     */
+    @JvmOverloads
+    @JvmStatic
+    fun insertTripStops(gTripStops: Collection<GTripStop>, batchSize: Int = DEFAULT_BATCH_SIZE) =
+        insertBatch(insertTripStopQuery, gTripStops, batchSize) { it.toSQLArgs() }
+
+    private val insertScheduleQuery: String by lazy {
+        SQLUtilsCommons.INSERT_INTO + SCHEDULES_TABLE_NAME + SQLUtilsCommons.VALUES_P1 +
+                SQLUtils.placeholders(11) +
+                SQLUtilsCommons.P2
+    }
+
+    private fun MSchedule.toSQLArgs() = listOf(
+        routeId,
+        serviceIdInt,
+        directionId,
+        stopId,
+        arrival,
+        departure,
+        tripIdInt,
+        stopSequence,
+        accessible,
+        headsignType,
+        headsignValue?.quotesEscapeValue(), // same stored value as previous escaped literal
+    )
+
     @JvmStatic
     fun insertSchedule(mSchedule: MSchedule): Boolean {
-        connection.createStatement().use { statement ->
-            val rs = SQLUtils.executeUpdate(
-                statement,
-                SQLUtilsCommons.INSERT_INTO + SCHEDULES_TABLE_NAME + SQLUtilsCommons.VALUES_P1 +
-                        "${mSchedule.routeId}," +
-                        "${mSchedule.serviceIdInt}," +
-                        "${mSchedule.directionId}," +
-                        "${mSchedule.stopId}," +
-                        "${mSchedule.arrival}," +
-                        "${mSchedule.departure}," +
-                        "${mSchedule.tripIdInt}," +
-                        "${mSchedule.stopSequence}," +
-                        "${mSchedule.accessible}," +
-                        "${mSchedule.headsignType}," +
-                        "${mSchedule.headsignValue?.quotesEscape()}" +
-                        SQLUtilsCommons.P2
-            )
-            insertRowCount++
-            insertCount++
-            return rs > 0
+        val startInNs = System.nanoTime()
+        val rs = statementCache.use(insertScheduleQuery, mSchedule.toSQLArgs()) { SQLUtils.executeUpdate(it, insertScheduleQuery) }
+        insertDurationInNs += System.nanoTime() - startInNs
+        insertRowCount++
+        insertCount++
+        return rs > 0
+    }
+
+    /**
+     * @param mSchedules ex: all schedules of a route
+     * @return inserted schedules count
+     */
+    @JvmOverloads
+    @JvmStatic
+    fun insertSchedules(mSchedules: Collection<MSchedule>, batchSize: Int = DEFAULT_BATCH_SIZE) =
+        insertBatch(insertScheduleQuery, mSchedules, batchSize) { it.toSQLArgs() }
+
+    /**
+     * 1 prepared statement (cached) with rows added to batches of [batchSize] rows.
+     */
+    private fun <T> insertBatch(query: String, items: Collection<T>, batchSize: Int, toSQLArgs: (T) -> List<Any?>): Int {
+        if (items.isEmpty()) return 0
+        val startInNs = System.nanoTime()
+        var inserted = 0
+        statementCache.use(query) { preparedStatement ->
+            try {
+                var batchRowCount = 0
+                items.forEach { item ->
+                    statementCache.bind(preparedStatement, query, toSQLArgs(item))
+                    preparedStatement.addBatch()
+                    if (++batchRowCount >= batchSize) {
+                        inserted += preparedStatement.executeBatch().count { it > 0 || it == Statement.SUCCESS_NO_INFO }
+                        batchRowCount = 0
+                    }
+                }
+                if (batchRowCount > 0) {
+                    inserted += preparedStatement.executeBatch().count { it > 0 || it == Statement.SUCCESS_NO_INFO }
+                }
+            } catch (e: SQLException) {
+                throw MTLog.Fatal(e, "SQL error while inserting ${items.size} rows with '$query'!")
+            }
         }
+        insertDurationInNs += System.nanoTime() - startInNs
+        insertRowCount += items.size
+        insertCount++
+        return inserted
     }
 
     @JvmStatic
@@ -396,49 +440,54 @@ object DBUtils {
         limitOffset: Int? = null
     ): List<GTripStop> {
         var query = "SELECT * FROM $TRIP_STOPS_TABLE_NAME"
+        val args = mutableListOf<Any>()
         tripIdInt?.let {
-            query += " WHERE ${GTripStop.TRIP_ID} = $tripIdInt"
+            query += " WHERE ${GTripStop.TRIP_ID} = ?"
+            args.add(tripIdInt)
         }
         tripIdInts?.let {
             query += " WHERE ${GTripStop.TRIP_ID} IN ${
                 tripIdInts
                     .distinct()
                     .joinToString(separator = ",", prefix = "(", postfix = ")") { "$it" }
-            }"
+            }" // inlined (integers): 1 query shape per list
         }
         limitMaxNbRow?.let {
-            query += " LIMIT $limitMaxNbRow"
+            query += " LIMIT ?"
+            args.add(limitMaxNbRow)
             limitOffset?.let {
-                query += " OFFSET $limitOffset"
+                query += " OFFSET ?"
+                args.add(limitOffset)
             }
         }
         val result = ArrayList<GTripStop>()
-        connection.createStatement().use { statement ->
-            val rs = SQLUtils.executeQuery(statement, query)
-            while (rs.next()) {
-                result.add(
-                    if (FeatureFlags.F_EXPORT_DIRECTION_STOP_LAST) {
-                        GTripStop(
-                            routeIdInt = rs.getInt(GTripStop.ROUTE_ID),
-                            tripIdInt = rs.getInt(GTripStop.TRIP_ID),
-                            stopIdInt = rs.getInt(GTripStop.STOP_ID),
-                            stopSequence = rs.getInt(GTripStop.STOP_SEQUENCE),
-                            isLastTripStop = rs.getInt(GTripStop.LAST_TRIP_STOP).fromSQL(),
-                        )
-                    } else {
-                        GTripStop(
-                            routeIdInt = rs.getInt(GTripStop.ROUTE_ID),
-                            tripIdInt = rs.getInt(GTripStop.TRIP_ID),
-                            stopIdInt = rs.getInt(GTripStop.STOP_ID),
-                            stopSequence = rs.getInt(GTripStop.STOP_SEQUENCE),
-                        )
-                    }
-                )
-                selectRowCount++
+        statementCache.use(query, args, cached = tripIdInts == null) { preparedStatement ->
+            SQLUtils.executeQuery(preparedStatement, query).use { rs ->
+                while (rs.next()) {
+                    result.add(
+                        if (FeatureFlags.F_EXPORT_DIRECTION_STOP_LAST) {
+                            GTripStop(
+                                routeIdInt = rs.getInt(GTripStop.ROUTE_ID),
+                                tripIdInt = rs.getInt(GTripStop.TRIP_ID),
+                                stopIdInt = rs.getInt(GTripStop.STOP_ID),
+                                stopSequence = rs.getInt(GTripStop.STOP_SEQUENCE),
+                                isLastTripStop = rs.getInt(GTripStop.LAST_TRIP_STOP).fromSQL(),
+                            )
+                        } else {
+                            GTripStop(
+                                routeIdInt = rs.getInt(GTripStop.ROUTE_ID),
+                                tripIdInt = rs.getInt(GTripStop.TRIP_ID),
+                                stopIdInt = rs.getInt(GTripStop.STOP_ID),
+                                stopSequence = rs.getInt(GTripStop.STOP_SEQUENCE),
+                            )
+                        }
+                    )
+                    selectRowCount++
+                }
             }
             selectCount++
-            return result
         }
+        return result
     }
 
     @Suppress("AssignedValueIsNeverRead")
@@ -456,12 +505,14 @@ object DBUtils {
         limitOffset: Int? = null
     ): List<MSchedule> {
         var query = "SELECT * FROM $SCHEDULES_TABLE_NAME"
+        val args = mutableListOf<Any>()
         var whereAdded = false
         // SERVICE ID
         serviceIdInt?.let {
             @Suppress("KotlinConstantConditions")
             query += if (whereAdded) " AND" else " WHERE"; whereAdded = true
-            query += " ${MSchedule.SERVICE_ID} = $serviceIdInt"
+            query += " ${MSchedule.SERVICE_ID} = ?"
+            args.add(serviceIdInt)
         }
         serviceIdInts?.let {
             query += if (whereAdded) " AND" else " WHERE"; whereAdded = true
@@ -478,7 +529,8 @@ object DBUtils {
         // DIRECTION ID
         directionId?.let {
             query += if (whereAdded) " AND" else " WHERE"; whereAdded = true
-            query += " ${MSchedule.DIRECTION_ID} = $directionId"
+            query += " ${MSchedule.DIRECTION_ID} = ?"
+            args.add(directionId)
 
         }
         directionIds?.let {
@@ -496,7 +548,8 @@ object DBUtils {
         // STOP ID
         stopIdInt?.let {
             query += if (whereAdded) " AND" else " WHERE"; whereAdded = true
-            query += " ${MSchedule.STOP_ID} = $stopIdInt"
+            query += " ${MSchedule.STOP_ID} = ?"
+            args.add(stopIdInt)
 
         }
         stopIdInts?.let {
@@ -514,11 +567,13 @@ object DBUtils {
         // ARRIVAL & DEPARTURE
         arrival?.let {
             query += if (whereAdded) " AND" else " WHERE"; whereAdded = true
-            query += " ${MSchedule.ARRIVAL} = $arrival"
+            query += " ${MSchedule.ARRIVAL} = ?"
+            args.add(arrival)
         }
         departure?.let {
             query += if (whereAdded) " AND" else " WHERE"; whereAdded = true
-            query += " ${MSchedule.DEPARTURE} = $departure"
+            query += " ${MSchedule.DEPARTURE} = ?"
+            args.add(departure)
         }
         query += " ORDER BY " +
                 "${MSchedule.SERVICE_ID} ASC, " +
@@ -527,35 +582,39 @@ object DBUtils {
                 "${MSchedule.DEPARTURE} ASC"
         // LIMIT
         limitMaxNbRow?.let {
-            query += " LIMIT $limitMaxNbRow"
+            query += " LIMIT ?"
+            args.add(limitMaxNbRow)
             limitOffset?.let {
-                query += " OFFSET $limitOffset"
+                query += " OFFSET ?"
+                args.add(limitOffset)
             }
         }
         val result = ArrayList<MSchedule>()
-        connection.createStatement().use { statement ->
-            val rs = SQLUtils.executeQuery(statement, query)
-            while (rs.next()) {
-                result.add(
-                    MSchedule(
-                        rs.getLong(MSchedule.ROUTE_ID),
-                        rs.getInt(MSchedule.SERVICE_ID),
-                        rs.getLong(MSchedule.DIRECTION_ID),
-                        rs.getInt(MSchedule.STOP_ID),
-                        rs.getInt(MSchedule.ARRIVAL),
-                        rs.getInt(MSchedule.DEPARTURE),
-                        rs.getInt(MSchedule.TRIP_ID),
-                        rs.getInt(MSchedule.STOP_SEQUENCE),
-                        rs.getInt(MSchedule.WHEELCHAIR_BOARDING),
-                        rs.getInt(MSchedule.HEADSIGN_TYPE),
-                        rs.getStringOrNull(MSchedule.HEADSIGN_VALUE)?.unquotes(),
+        val cached = serviceIdInts == null && directionIds == null && stopIdInts == null // IN lists inlined
+        statementCache.use(query, args, cached) { preparedStatement ->
+            SQLUtils.executeQuery(preparedStatement, query).use { rs ->
+                while (rs.next()) {
+                    result.add(
+                        MSchedule(
+                            rs.getLong(MSchedule.ROUTE_ID),
+                            rs.getInt(MSchedule.SERVICE_ID),
+                            rs.getLong(MSchedule.DIRECTION_ID),
+                            rs.getInt(MSchedule.STOP_ID),
+                            rs.getInt(MSchedule.ARRIVAL),
+                            rs.getInt(MSchedule.DEPARTURE),
+                            rs.getInt(MSchedule.TRIP_ID),
+                            rs.getInt(MSchedule.STOP_SEQUENCE),
+                            rs.getInt(MSchedule.WHEELCHAIR_BOARDING),
+                            rs.getInt(MSchedule.HEADSIGN_TYPE),
+                            rs.getStringOrNull(MSchedule.HEADSIGN_VALUE)?.unquotes(),
+                        )
                     )
-                )
-                selectRowCount++
+                    selectRowCount++
+                }
             }
             selectCount++
-            return result
         }
+        return result
     }
 
     @Suppress("unused", "AssignedValueIsNeverRead")
@@ -568,74 +627,99 @@ object DBUtils {
         departure: Int? = null
     ): Int {
         var query = "DELETE FROM $SCHEDULES_TABLE_NAME"
+        val args = mutableListOf<Any>()
         var whereAdded = false
         serviceIdInt?.let {
             @Suppress("KotlinConstantConditions")
             query += if (whereAdded) " AND" else " WHERE"; whereAdded = true
-            query += " ${MSchedule.SERVICE_ID} = $serviceIdInt"
+            query += " ${MSchedule.SERVICE_ID} = ?"
+            args.add(serviceIdInt)
         }
         directionId?.let {
             query += if (whereAdded) " AND" else " WHERE"; whereAdded = true
-            query += " ${MSchedule.DIRECTION_ID} = $directionId"
+            query += " ${MSchedule.DIRECTION_ID} = ?"
+            args.add(directionId)
 
         }
         // STOP ID
         stopIdInt?.let {
             query += if (whereAdded) " AND" else " WHERE"; whereAdded = true
-            query += " ${MSchedule.STOP_ID} = $stopIdInt"
+            query += " ${MSchedule.STOP_ID} = ?"
+            args.add(stopIdInt)
 
         }
         // ARRIVAL & DEPARTURE
         arrival?.let {
             query += if (whereAdded) " AND" else " WHERE"; whereAdded = true
-            query += " ${MSchedule.ARRIVAL} = $arrival"
+            query += " ${MSchedule.ARRIVAL} = ?"
+            args.add(arrival)
         }
         departure?.let {
             query += if (whereAdded) " AND" else " WHERE"; whereAdded = true
-            query += " ${MSchedule.DEPARTURE} = $departure"
+            query += " ${MSchedule.DEPARTURE} = ?"
+            args.add(departure)
         }
         deleteCount++
-        connection.createStatement().use { statement ->
-            val rs = SQLUtils.executeUpdate(statement, query)
-            deletedRowCount += rs
-            return rs
+        val rs = statementCache.use(query, args) { SQLUtils.executeUpdate(it, query) }
+        deletedRowCount += rs
+        return rs
+    }
+
+    /**
+     * Once loaded in route store (NOT in memory twice): table emptied & free pages released.
+     */
+    @JvmStatic
+    fun deleteAllTripStops(): Int {
+        val query = "DELETE FROM $TRIP_STOPS_TABLE_NAME"
+        deleteCount++
+        val rs = connection.createStatement().use { statement ->
+            SQLUtils.executeUpdate(statement, query)
         }
+        deletedRowCount += rs
+        storage.vacuum()
+        return rs
     }
 
     @JvmStatic
     fun countTripStops(): Int {
-        connection.createStatement().use { statement ->
-            val rs = SQLUtils.executeQuery(
-                statement,
-                "SELECT COUNT(*) AS $SQL_RESULT_ALIAS FROM $TRIP_STOPS_TABLE_NAME"
-            )
-            selectCount++
-            if (rs.next()) {
-                selectRowCount++
-                return rs.getInt(SQL_RESULT_ALIAS)
+        val query = "SELECT COUNT(*) AS $SQL_RESULT_ALIAS FROM $TRIP_STOPS_TABLE_NAME"
+        val count = statementCache.use(query) { preparedStatement ->
+            SQLUtils.executeQuery(preparedStatement, query).use { rs ->
+                selectCount++
+                if (rs.next()) {
+                    selectRowCount++
+                    rs.getInt(SQL_RESULT_ALIAS)
+                } else null
             }
         }
-        throw MTLog.Fatal("Error while counting trip stops!")
+        return count ?: throw MTLog.Fatal("Error while counting trip stops!")
     }
 
     @JvmStatic
     fun countSchedule(): Int {
-        connection.createStatement().use { statement ->
-            val rs = SQLUtils.executeQuery(
-                statement,
-                "SELECT COUNT(*) AS $SQL_RESULT_ALIAS FROM $SCHEDULES_TABLE_NAME"
-            )
-            selectCount++
-            if (rs.next()) {
-                selectRowCount++
-                return rs.getInt(SQL_RESULT_ALIAS)
+        val query = "SELECT COUNT(*) AS $SQL_RESULT_ALIAS FROM $SCHEDULES_TABLE_NAME"
+        val count = statementCache.use(query) { preparedStatement ->
+            SQLUtils.executeQuery(preparedStatement, query).use { rs ->
+                selectCount++
+                if (rs.next()) {
+                    selectRowCount++
+                    rs.getInt(SQL_RESULT_ALIAS)
+                } else null
             }
         }
-        throw MTLog.Fatal("Error while counting schedules!")
+        return count ?: throw MTLog.Fatal("Error while counting schedules!")
     }
 
     @JvmStatic
     fun printStats() {
-        MTLog.log("SQL: insert [$insertCount|$insertRowCount], select [$selectCount|$selectRowCount], delete [$deleteCount|$deletedRowCount].")
+        MTLog.log("SQL: insert [$insertCount|$insertRowCount], select [$selectCount|$selectRowCount], delete [$deleteCount|$deletedRowCount], $statementCache (hit|miss), $storage.")
+        if (insertDurationInNs > 0L) {
+            MTLog.log(
+                "SQL: insert throughput: %d rows/sec (%d rows in %s).",
+                insertRowCount * TimeUnit.SECONDS.toNanos(1L) / insertDurationInNs,
+                insertRowCount,
+                Utils.getPrettyDuration(TimeUnit.NANOSECONDS.toMillis(insertDurationInNs)),
+            )
+        }
     }
 }
\ No newline at end of file
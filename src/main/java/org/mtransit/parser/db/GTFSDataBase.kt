@@ -28,16 +28,13 @@ import org.mtransit.commons.gtfs.sql.TripSQL
 import org.mtransit.commons.sql.executeMT
 import org.mtransit.commons.sql.executeQueryMT
 import org.mtransit.commons.sql.executeUpdateMT
+import org.mtransit.commons.sql.getStringOrNull
 import org.mtransit.parser.Constants
 import org.mtransit.parser.DefaultAgencyTools
-import org.mtransit.parser.FileUtils
 import org.mtransit.parser.MTLog
-import java.io.File
 import java.sql.Connection
-import java.sql.DriverManager
 import java.sql.PreparedStatement
 import java.sql.ResultSet
-import org.mtransit.commons.sql.SQLUtils as SQLUtilsCommons
 
 @Suppress("unused")
 object GTFSDataBase {
@@ -51,25 +48,29 @@ object GTFSDataBase {
     // private val IS_USING_FILE_INSTEAD_OF_MEMORY = false // (GHA.standard.linux > RAM = 16 GB)
     // || true // DEBUG
 
-    private val connection: Connection by lazy {
-        FileUtils.deleteIfExist(File(FILE_PATH)) // delete previous
+    private val storage: SQLStorage by lazy {
         MTLog.log("$LOG_TAG: connection > IS_USING_FILE_INSTEAD_OF_MEMORY: $IS_USING_FILE_INSTEAD_OF_MEMORY")
-        DriverManager.getConnection(
-            if (IS_USING_FILE_INSTEAD_OF_MEMORY) {
-                SQLUtils.getJDBCSQLiteFile(FILE_PATH)
-            } else {
-                SQLUtils.JDBC_SQLITE_MEMORY // faster
-            }.also {
-                MTLog.log("$LOG_TAG: connection: $it")
-            }
-        )
+        SQLStorage(LOG_TAG, FILE_PATH, IS_USING_FILE_INSTEAD_OF_MEMORY, DefaultAgencyTools.DB_MEMORY_BUDGET_IN_BYTES)
     }
 
+    private val connection: Connection // replaced if spilled to file
+        get() = storage.connection
+
+    private val statementCache: SQLStatementCache
+        get() = storage.statementCache
+
+    /**
+     * Bound ID (commons GTFS SQL IDs tables): ID int sub-query.
+     */
+    private fun getIdIntQuery(idsTable: String, idColumn: String, idIntColumn: String) =
+        "(SELECT $idIntColumn FROM $idsTable WHERE $idColumn = ?)"
+
+    private val tripIdIntQuery = getIdIntQuery(TripSQL.T_TRIP_IDS, TripSQL.T_TRIP_IDS_K_ID, TripSQL.T_TRIP_IDS_K_ID_INT)
+
+    private val stopIdIntQuery = getIdIntQuery(StopSQL.T_STOP_IDS, StopSQL.T_STOP_IDS_K_ID, StopSQL.T_STOP_IDS_K_ID_INT)
+
     init {
         connection.createStatement().use { statement ->
-            SQLUtils.execute(statement, "PRAGMA synchronous = OFF")
-            SQLUtils.execute(statement, "PRAGMA journal_mode = MEMORY")
-            SQLUtils.execute(statement, SQLUtilsCommons.PRAGMA_AUTO_VACUUM_NONE)
             // drop if exist
             ALL_SQL_TABLES.forEach { it.getSQLDropIfExistsQueries().forEach { SQLUtils.execute(statement, it) } }
             // create tables
@@ -78,9 +79,13 @@ object GTFSDataBase {
     }
 
     @JvmStatic
-    fun getDBSize() = if (IS_USING_FILE_INSTEAD_OF_MEMORY) {
-        FileUtils.size(File(FILE_PATH))
-    } else null
+    fun getDBSize() = storage.getSize()
+
+    /**
+     * Only between steps: no pending transaction & no concurrent reader.
+     */
+    @JvmStatic
+    fun spillToFileIfNeeded() = storage.spillToFileIfNeeded()
 
     @JvmStatic
     fun reset() {
@@ -291,8 +296,33 @@ object GTFSDataBase {
         }
     }
 
+    private val selectTripQuery: String by lazy {
+        "SELECT * FROM ${TripSQL.T_TRIP} WHERE ${TripSQL.T_TRIP_K_ID_INT} = $tripIdIntQuery"
+    }
+
     @JvmStatic
-    fun selectTrip(tripId: TripId) = selectTrips(tripIds = listOf(tripId)).singleOrNull()
+    fun selectTrip(tripId: TripId): Trip? {
+        val query = selectTripQuery
+        return statementCache.use(query, listOf(tripId)) { preparedStatement ->
+            SQLUtils.executeQuery(preparedStatement, query).use { rs ->
+                if (rs.next()) {
+                    Trip(
+                        tripId = tripId,
+                        routeId = rs.getString(TripSQL.T_TRIP_K_ROUTE_ID),
+                        originalRouteId = rs.getString(TripSQL.T_TRIP_K_ORIGINAL_ROUTE_ID),
+                        serviceId = rs.getString(TripSQL.T_TRIP_K_SERVICE_ID),
+                        tripHeadsign = rs.getStringOrNull(TripSQL.T_TRIP_K_TRIP_HEADSIGN),
+                        tripShortName = rs.getStringOrNull(TripSQL.T_TRIP_K_TRIP_SHORT_NAME),
+                        directionId = rs.getIntOrNull(TripSQL.T_TRIP_K_DIRECTION_ID),
+                        blockId = rs.getStringOrNull(TripSQL.T_TRIP_K_BLOCK_ID),
+                        shapeId = rs.getStringOrNull(TripSQL.T_TRIP_K_SHAPE_ID),
+                        wheelchairAccessible = rs.getIntOrNull(TripSQL.T_TRIP_K_WHEELCHAIR_ACCESSIBLE),
+                        bikesAllowed = rs.getIntOrNull(TripSQL.T_TRIP_K_BIKES_ALLOWED)?.let { it == 1 },
+                    )
+                } else null
+            }
+        }
+    }
 
     @JvmOverloads
     @JvmStatic
@@ -344,10 +374,21 @@ object GTFSDataBase {
     @JvmStatic
     fun insertFrequency(frequency: Frequency, preparedStatement: PreparedStatement? = null) {
         connection.createStatement().use { statement ->
-            FrequencySQL.insertIntoMainTable(frequency, statement, preparedStatement)
+            if (preparedStatement != null) {
+                FrequencySQL.insertIntoMainTable(frequency, statement, preparedStatement)
+            } else {
+                statementCache.use(insertFrequencyQuery) { insertFrequencyPrepared ->
+                    FrequencySQL.insertIntoMainTable(frequency, statement, insertFrequencyPrepared) // bound
+                    insertFrequencyPrepared.executeBatch()
+                }
+            }
         }
     }
 
+    private val insertFrequencyQuery: String by lazy {
+        FrequencySQL.getMainTableInsertPreparedStatement(false)
+    }
+
     @JvmOverloads
     @JvmStatic
     fun selectFrequencies(tripId: TripId? = null): List<Frequency> {
@@ -396,7 +437,7 @@ object GTFSDataBase {
     fun updateStopTime(
         stopTime: StopTime,
         pickupType: Int? = null, dropOffType: Int? = null,
-        orderByDesc: Boolean? = null, // true = ASC, false = DESC
+        orderByDesc: Boolean? = null, // true = DESC, false = ASC
         limit: Int? = null,
     ) = updateStopTime(
         stopTime.tripId,
@@ -410,12 +451,89 @@ object GTFSDataBase {
     fun updateStopTime(
         tripId: TripId, stopId: StopId? = null, stopSequence: Int? = null,
         pickupType: Int? = null, dropOffType: Int? = null,
-        orderByDesc: Boolean? = null, // true = ASC, false = DESC
+        orderByDesc: Boolean? = null, // true = DESC, false = ASC
         limit: Int? = null,
     ): Boolean {
-        connection.createStatement().use { statement ->
-            return StopTimeSQL.update(statement, tripId, stopId, stopSequence, pickupType, dropOffType, orderByDesc, limit)
+        if (pickupType == null && dropOffType == null) {
+            return false
+        }
+        val args = mutableListOf<Any>()
+        val query = buildString { // 1 query shape per provided arguments
+            append("UPDATE ${StopTimeSQL.T_STOP_TIME} SET ")
+            append(
+                buildList {
+                    pickupType?.let {
+                        add("${StopTimeSQL.T_STOP_TIME_K_PICKUP_TYPE} = ?")
+                        args.add(it)
+                    }
+                    dropOffType?.let {
+                        add("${StopTimeSQL.T_STOP_TIME_K_DROP_OFF_TYPE} = ?")
+                        args.add(it)
+                    }
+                }.joinToString(separator = SQLUtils.COLUMN_SEPARATOR)
+            )
+            append(" WHERE (${StopTimeSQL.T_STOP_TIME_K_TRIP_ID_INT}, ${StopTimeSQL.T_STOP_TIME_K_STOP_SEQUENCE}) IN (")
+            append("SELECT ${StopTimeSQL.T_STOP_TIME_K_TRIP_ID_INT}, ${StopTimeSQL.T_STOP_TIME_K_STOP_SEQUENCE}")
+            append(" FROM ${StopTimeSQL.T_STOP_TIME}")
+            append(" WHERE ${StopTimeSQL.T_STOP_TIME_K_TRIP_ID_INT} = $tripIdIntQuery")
+            args.add(tripId)
+            stopId?.let {
+                append(" AND ${StopTimeSQL.T_STOP_TIME_K_STOP_ID_INT} = $stopIdIntQuery")
+                args.add(it)
+            }
+            stopSequence?.let {
+                append(" AND ${StopTimeSQL.T_STOP_TIME_K_STOP_SEQUENCE} = ?")
+                args.add(it)
+            }
+            orderByDesc?.let {
+                append(" ORDER BY ${StopTimeSQL.T_STOP_TIME_K_STOP_SEQUENCE} ${if (it) "DESC" else "ASC"}")
+            }
+            limit?.let {
+                append(" LIMIT ?")
+                args.add(it)
+            }
+            append(")")
         }
+        return statementCache.use(query, args) { SQLUtils.executeUpdate(it, query) } > 0
+    }
+
+    /**
+     * Set-based: 1 update of the 1st (MIN stop sequence) or last (MAX stop sequence) stop time of every trip.
+     */
+    private fun getUpdateFirstOrLastStopTimesQuery(column: String, last: Boolean) = buildString {
+        append("UPDATE ${StopTimeSQL.T_STOP_TIME} SET $column = ?")
+        append(" WHERE $column != ?") // only changed stop times
+        append(" AND (${StopTimeSQL.T_STOP_TIME_K_TRIP_ID_INT}, ${StopTimeSQL.T_STOP_TIME_K_STOP_SEQUENCE}) IN (")
+        append("SELECT ${StopTimeSQL.T_STOP_TIME_K_TRIP_ID_INT}, ${if (last) "MAX" else "MIN"}(${StopTimeSQL.T_STOP_TIME_K_STOP_SEQUENCE})")
+        append(" FROM ${StopTimeSQL.T_STOP_TIME}")
+        append(" GROUP BY ${StopTimeSQL.T_STOP_TIME_K_TRIP_ID_INT}")
+        append(")")
+    }
+
+    private val updateLastStopTimesPickupTypeQuery: String by lazy {
+        getUpdateFirstOrLastStopTimesQuery(StopTimeSQL.T_STOP_TIME_K_PICKUP_TYPE, last = true)
+    }
+
+    private val updateFirstStopTimesDropOffTypeQuery: String by lazy {
+        getUpdateFirstOrLastStopTimesQuery(StopTimeSQL.T_STOP_TIME_K_DROP_OFF_TYPE, last = false)
+    }
+
+    /**
+     * @return updated stop times count (last stop times of all trips with another pickup type)
+     */
+    @JvmStatic
+    fun updateLastStopTimesPickupType(pickupType: Int): Int {
+        val query = updateLastStopTimesPickupTypeQuery
+        return statementCache.use(query, listOf(pickupType, pickupType)) { SQLUtils.executeUpdate(it, query) }
+    }
+
+    /**
+     * @return updated stop times count (1st stop times of all trips with another drop-off type)
+     */
+    @JvmStatic
+    fun updateFirstStopTimesDropOffType(dropOffType: Int): Int {
+        val query = updateFirstStopTimesDropOffTypeQuery
+        return statementCache.use(query, listOf(dropOffType, dropOffType)) { SQLUtils.executeUpdate(it, query) }
     }
 
     @JvmOverloads
@@ -426,11 +544,26 @@ object GTFSDataBase {
         }
     }
 
+    private val deleteStopTimesQuery: String by lazy {
+        "DELETE FROM ${StopTimeSQL.T_STOP_TIME} WHERE ${StopTimeSQL.T_STOP_TIME_K_TRIP_ID_INT} = $tripIdIntQuery"
+    }
+
     @JvmStatic
     fun deleteStopTimes(tripId: TripId): Int {
+        val query = deleteStopTimesQuery
+        return statementCache.use(query, listOf(tripId)) { SQLUtils.executeUpdate(it, query) }
+    }
+
+    /**
+     * Once loaded in route store (NOT in memory twice): table emptied & free pages released.
+     */
+    @JvmStatic
+    fun deleteAllStopTimes() {
         connection.createStatement().use { statement ->
-            return StopTimeSQL.delete(statement, tripId)
+            StopTimeSQL.getSQLDropIfExistsQueries().forEach { SQLUtils.execute(statement, it) }
+            StopTimeSQL.getSQLCreateTablesQueries().forEach { SQLUtils.execute(statement, it) }
         }
+        storage.vacuum()
     }
 
     @JvmStatic
@@ -439,4 +572,11 @@ object GTFSDataBase {
             return StopTimeSQL.count(statement)
         }
     }
+
+    private fun ResultSet.getIntOrNull(columnLabel: String) = getInt(columnLabel).takeUnless { wasNull() }
+
+    @JvmStatic
+    fun printStats() {
+        MTLog.log("$LOG_TAG: SQL: $statementCache (hit|miss), $storage.")
+    }
 }
\ No newline at end of file
@@ -0,0 +1,86 @@
+package org.mtransit.parser.db
+
+import org.mtransit.parser.MTLog
+import java.sql.Connection
+import java.sql.PreparedStatement
+import java.sql.SQLException
+
+/**
+ * 1 [PreparedStatement] per query shape (SQL with `?` placeholders) on the connection:
+ * SQLite parses & plans each query shape once, then only binds parameters & steps.
+ *
+ * Thread-safe: statements are used one at a time (the SQLite connection is serialized anyway).
+ */
+class SQLStatementCache @JvmOverloads constructor(
+    private val connection: Connection,
+    private val maxSize: Int = DEFAULT_MAX_SIZE,
+) {
+
+    companion object {
+        private const val DEFAULT_MAX_SIZE = 128 // IN (?,?...) lists = 1 shape per size
+    }
+
+    private val statements = object : LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) { // access order (LRU)
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, PreparedStatement>?): Boolean {
+            if (size <= maxSize) return false
+            eldest?.value?.close()
+            return true
+        }
+    }
+
+    var hitCount = 0
+        private set
+
+    var missCount = 0
+        private set
+
+    val size: Int
+        get() = synchronized(this) { statements.size }
+
+    /**
+     * @param sql query shape with `?` placeholders
+     * @param args values bound to placeholders, in order
+     * @param cached `false` for one-off query shapes (ex: inlined IN list)
+     * @param block using the bound statement (result set must be consumed inside the block)
+     */
+    fun <R> use(sql: String, args: List<Any?> = emptyList(), cached: Boolean = true, block: (PreparedStatement) -> R): R {
+        if (!cached) {
+            connection.prepareStatement(sql).use { preparedStatement ->
+                bind(preparedStatement, sql, args)
+                return block(preparedStatement)
+            }
+        }
+        synchronized(this) {
+            val preparedStatement = statements[sql]?.also { hitCount++ }
+                ?: connection.prepareStatement(sql).also {
+                    missCount++
+                    statements[sql] = it
+                }
+            bind(preparedStatement, sql, args)
+            return block(preparedStatement)
+        }
+    }
+
+    /**
+     * Binds (again) a statement provided by [use], ex: before [PreparedStatement.addBatch].
+     */
+    fun bind(preparedStatement: PreparedStatement, sql: String, args: List<Any?>) {
+        try {
+            preparedStatement.clearParameters()
+            args.forEachIndexed { idx, arg ->
+                preparedStatement.setObject(idx + 1, arg)
+            }
+        } catch (e: SQLException) {
+            throw MTLog.Fatal(e, "SQL error while binding $args to '$sql'!")
+        }
+    }
+
+    fun clear() {
+        synchronized(this) {
+            statements.values.forEach { it.close() }
+            statements.clear()
+        }
+    }
+
+    override fun toString() = "statements [${hitCount}|${missCount}]"
+}
@@ -0,0 +1,143 @@
+package org.mtransit.parser.db
+
+import org.mtransit.parser.FileUtils
+import org.mtransit.parser.MTLog
+import org.mtransit.parser.Utils
+import java.io.File
+import java.sql.Connection
+import java.sql.DriverManager
+import org.mtransit.commons.sql.SQLUtils as SQLUtilsCommons
+
+/**
+ * Intermediate SQLite database storage (connection & statement cache):
+ * - in-memory (faster) until larger than memory budget, then spilled to file (SQLite backup API) by [spillToFileIfNeeded]
+ * - file from the start if [useFile] (ex: CI)
+ *
+ * [spillToFileIfNeeded] replaces the connection: only call it between steps (no pending transaction, no concurrent reader).
+ */
+class SQLStorage(
+    private val name: String,
+    private val filePath: String,
+    useFile: Boolean,
+    private val memoryBudgetInBytes: Long, // 0 = no limit
+) {
+
+    companion object {
+        private const val CACHE_SIZE_IN_KIB = 256L * 1024L // 256 MB (page cache, file only)
+        private const val MMAP_SIZE_IN_BYTES = 1024L * 1024L * 1024L // 1 GB (file only)
+
+        private const val BACKUP_TO = "backup to "
+
+        private const val VACUUM = "VACUUM"
+    }
+
+    var isFile: Boolean = useFile
+        private set
+
+    val url: String
+        get() = if (isFile) {
+            SQLUtils.getJDBCSQLiteFile(filePath)
+        } else {
+            SQLUtils.JDBC_SQLITE_MEMORY // faster
+        }
+
+    private val pragmas: List<String>
+        get() = buildList {
+            add("PRAGMA synchronous = OFF")
+            add("PRAGMA journal_mode = MEMORY")
+            add("PRAGMA temp_store = MEMORY") // sorts & indexes of bulk loading
+            if (isFile) {
+                add("PRAGMA cache_size = -$CACHE_SIZE_IN_KIB")
+                add("PRAGMA mmap_size = $MMAP_SIZE_IN_BYTES")
+            }
+        }
+
+    var connection: Connection = openConnection(deletePrevious = true)
+        private set
+
+    private var _statementCache: SQLStatementCache? = null
+
+    val statementCache: SQLStatementCache
+        @Synchronized get() = _statementCache ?: SQLStatementCache(connection).also { _statementCache = it }
+
+    init {
+        MTLog.log("$name: storage: ${if (isFile) "file" else "memory"} (memory budget: ${if (memoryBudgetInBytes > 0L) FileUtils.sizeToDiplayString(memoryBudgetInBytes) else "none"}).")
+    }
+
+    private fun openConnection(deletePrevious: Boolean): Connection {
+        if (deletePrevious) {
+            FileUtils.deleteIfExist(File(filePath)) // delete previous
+        }
+        return DriverManager.getConnection(
+            url.also {
+                MTLog.log("$name: connection: $it")
+            }
+        ).also { connection ->
+            connection.createStatement().use { statement ->
+                pragmas.forEach { SQLUtils.execute(statement, it) }
+                if (deletePrevious) {
+                    SQLUtils.execute(statement, SQLUtilsCommons.PRAGMA_AUTO_VACUUM_NONE) // before creating tables
+                }
+            }
+        }
+    }
+
+    /**
+     * @return database size in bytes (file or in-memory pages)
+     */
+    fun getSize(): Long? {
+        if (isFile) {
+            return FileUtils.size(File(filePath))
+        }
+        connection.createStatement().use { statement ->
+            val pageCount = SQLUtils.executeQuery(statement, "PRAGMA page_count").use { if (it.next()) it.getLong(1) else null }
+            val pageSize = SQLUtils.executeQuery(statement, "PRAGMA page_size").use { if (it.next()) it.getLong(1) else null }
+            return if (pageCount != null && pageSize != null) pageCount * pageSize else null
+        }
+    }
+
+    /**
+     * Release free pages (after large deletes): in-memory database memory or file size.
+     */
+    @Synchronized
+    fun vacuum() {
+        val sizeBefore = getSize()
+        connection.createStatement().use { statement ->
+            SQLUtils.execute(statement, VACUUM)
+        }
+        MTLog.log("$name: vacuum: ${FileUtils.sizeToDiplayString(sizeBefore)} -> ${FileUtils.sizeToDiplayString(getSize())}.")
+    }
+
+    /**
+     * @return `true` if in-memory database was larger than memory budget and is now a file
+     */
+    @Synchronized
+    fun spillToFileIfNeeded(): Boolean {
+        if (isFile) return false
+        if (memoryBudgetInBytes <= 0L) return false
+        val size = getSize() ?: return false
+        if (size <= memoryBudgetInBytes) return false
+        if (!connection.autoCommit) {
+            MTLog.log("$name: in-memory size (${FileUtils.sizeToDiplayString(size)}) > budget but transaction pending, NOT spilling to file yet.")
+            return false
+        }
+        MTLog.log("$name: in-memory size (${FileUtils.sizeToDiplayString(size)}) > budget (${FileUtils.sizeToDiplayString(memoryBudgetInBytes)}), spilling to file '$filePath'...")
+        val start = System.currentTimeMillis()
+        FileUtils.deleteIfExist(File(filePath))
+        connection.createStatement().use { statement ->
+            SQLUtils.execute(statement, BACKUP_TO + filePath) // SQLite online backup API (sqlite-jdbc command)
+        }
+        _statementCache?.clear()
+        _statementCache = null
+        val memoryConnection = connection
+        isFile = true
+        connection = openConnection(deletePrevious = false)
+        memoryConnection.close() // last connection: in-memory database released
+        MTLog.log(
+            "$name: in-memory size (${FileUtils.sizeToDiplayString(size)}) > budget, spilling to file '$filePath'... DONE in ${Utils.getPrettyDuration(System.currentTimeMillis() - start)} (file: ${FileUtils.sizeToDiplayString(getSize())})."
+        )
+        return true
+    }
+
+    override fun toString() = "$name storage [${if (isFile) "file" else "memory"}]"
+}
@@ -8,6 +8,7 @@ import org.mtransit.commons.Constants.EMPTY
 import org.mtransit.parser.MTLog
 import org.sqlite.SQLiteException
 import java.sql.Connection
+import java.sql.PreparedStatement
 import java.sql.ResultSet
 import java.sql.SQLException
 import java.sql.Statement
@@ -71,8 +72,25 @@ object SQLUtils {
 
     fun String.quotesEscape() = escape(this).quotes()
 
+    /**
+     * @return value stored by SQLite for the [quotesEscape] literal, to bind as a parameter (same stored value)
+     */
+    fun String.quotesEscapeValue(): String {
+        val literal = quotesEscape()
+        if (literal.length < 2 || literal.first() != QUOTE_ || literal.last() != QUOTE_) {
+            return literal
+        }
+        return literal.substring(1, literal.length - 1).replace("$QUOTE_$QUOTE_", QUOTE_.toString())
+    }
+
     fun String.quotesEscapeId() = escapeId(this).quotes()
 
+    /**
+     * @return `?,?,...` for prepared statement parameters
+     */
+    @JvmStatic
+    fun placeholders(count: Int) = List(count) { "?" }.joinToString(separator = ",")
+
     @JvmStatic
     fun unquotes(string: String): String {
         return string.trim { it == QUOTE_ }
@@ -123,6 +141,34 @@ object SQLUtils {
         }
     }
 
+    @JvmStatic
+    fun executeQuery(preparedStatement: PreparedStatement, query: String): ResultSet {
+        if (org.mtransit.parser.Constants.LOG_SQL_QUERY) {
+            MTLog.logDebug("SQL > $query.")
+        }
+        try {
+            return preparedStatement.executeQuery()
+        } catch (e: SQLiteException) {
+            throw MTLog.Fatal(e, "SQL lite error while executing '$query'!")
+        } catch (e: SQLException) {
+            throw MTLog.Fatal(e, "SQL error while executing '$query'!")
+        }
+    }
+
+    @JvmStatic
+    fun executeUpdate(preparedStatement: PreparedStatement, query: String): Int {
+        if (org.mtransit.parser.Constants.LOG_SQL_UPDATE) {
+            MTLog.logDebug("SQL > $query.")
+        }
+        try {
+            return preparedStatement.executeUpdate()
+        } catch (e: SQLiteException) {
+            throw MTLog.Fatal(e, "SQL lite error while executing '$query'!")
+        } catch (e: SQLException) {
+            throw MTLog.Fatal(e, "SQL error while executing '$query'!")
+        }
+    }
+
     @JvmStatic
     fun beginTransaction(connection: Connection) {
         connection.createStatement().use { statement ->
@@ -37,6 +37,17 @@ public interface GAgencyTools {
 
 	int getThreadPoolSize();
 
+	/**
+	 * @return {@code true} to parse stop times in chunks on {@link #getThreadPoolSize()} threads (same result)
+	 */
+	boolean parallelStopTimesParsingEnabled();
+
+	/**
+	 * @return agency part of the GTFS ingest snapshot key (config, useful service IDs...) or {@code null} if ingest snapshot disabled
+	 */
+	@Nullable
+	String getIngestSnapshotKey();
+
 	@Deprecated
 	boolean defaultExcludeEnabled(); // TO BE REMOVED
 
@@ -0,0 +1,76 @@
+package org.mtransit.parser.gtfs
+
+import java.io.Closeable
+import java.io.InputStream
+import java.nio.ByteBuffer
+
+/**
+ * Splits a GTFS CSV byte stream in chunks of whole lines (ending on `\n`) to be decoded & tokenized independently.
+ *
+ * UTF-8 multi-byte sequences never contain `\n` and `\r\n` is never split.
+ * Like [GCsvTokenizer], a record never spans multiple lines (even quoted),
+ * so chunks contain exactly the same lines as the sequential reading.
+ */
+class GCsvChunkSplitter @JvmOverloads constructor(
+    private val input: InputStream,
+    private val chunkSize: Int = DEFAULT_CHUNK_SIZE,
+) : Closeable {
+
+    companion object {
+        const val DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024 // 4 MB
+
+        private const val LINE_FEED = '\n'.code.toByte()
+    }
+
+    // bytes after the last line feed of the previous chunk (never contains a line feed)
+    private var pending = ByteArray(0)
+    private var pendingLength = 0
+
+    private var endOfStream = false
+
+    /**
+     * @return next chunk of whole lines (last one may NOT end with a line feed) or `null` if end of stream reached
+     */
+    fun nextChunk(): ByteBuffer? {
+        var chunk = ByteArray(maxOf(chunkSize, pendingLength + 1))
+        System.arraycopy(pending, 0, chunk, 0, pendingLength)
+        var length = pendingLength
+        var searchStart = pendingLength
+        pendingLength = 0
+        while (true) {
+            if (length == chunk.size) { // line longer than chunk
+                chunk = chunk.copyOf(chunk.size * 2)
+            }
+            val read = if (endOfStream) -1 else input.read(chunk, length, chunk.size - length)
+            if (read < 0) {
+                endOfStream = true
+                return if (length == 0) null else ByteBuffer.wrap(chunk, 0, length)
+            }
+            length += read
+            if (length < chunk.size) continue // fill chunk 1st
+            val lastLineFeed = lastIndexOfLineFeed(chunk, searchStart, length)
+            if (lastLineFeed < 0) {
+                searchStart = length
+                continue
+            }
+            val end = lastLineFeed + 1
+            pendingLength = length - end
+            if (pending.size < pendingLength) {
+                pending = ByteArray(pendingLength)
+            }
+            System.arraycopy(chunk, end, pending, 0, pendingLength)
+            return ByteBuffer.wrap(chunk, 0, end)
+        }
+    }
+
+    private fun lastIndexOfLineFeed(bytes: ByteArray, start: Int, end: Int): Int {
+        for (i in end - 1 downTo start) {
+            if (bytes[i] == LINE_FEED) return i
+        }
+        return -1
+    }
+
+    override fun close() {
+        input.close()
+    }
+}
@@ -0,0 +1,23 @@
+package org.mtransit.parser.gtfs
+
+/**
+ * Fields of the current GTFS CSV line.
+ */
+interface GCsvFields {
+
+    val fieldCount: Int
+
+    /**
+     * @return 0 if the current line doesn't have this field
+     */
+    fun getLength(index: Int): Int
+
+    fun getChar(index: Int, position: Int): Char
+
+    /**
+     * @return field value or [org.mtransit.commons.Constants.EMPTY] if the current line doesn't have this field
+     */
+    fun getString(index: Int): String
+
+    fun lineToString(): String
+}
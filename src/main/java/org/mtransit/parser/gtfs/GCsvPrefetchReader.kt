@@ -0,0 +1,125 @@
+package org.mtransit.parser.gtfs
+
+import java.io.IOException
+import java.io.Reader
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.TimeUnit
+
+/**
+ * Reads & tokenizes GTFS CSV lines ahead of time on an [ExecutorService] thread (bounded queue of [GCsvRowBatch]).
+ */
+class GCsvPrefetchReader(
+    override val fileName: String,
+    private val reader: Reader,
+    executor: ExecutorService,
+    maxQueuedBatches: Int = DEFAULT_MAX_QUEUED_BATCHES,
+) : GCsvReader {
+
+    companion object {
+        const val DEFAULT_MAX_QUEUED_BATCHES = 8
+
+        private const val OFFER_TIMEOUT_IN_MS = 100L
+
+        private val END_OF_FILE = Any()
+    }
+
+    private class Header(val columnNames: List<String>)
+
+    private class Failure(val throwable: Throwable)
+
+    private val queue = ArrayBlockingQueue<Any>(maxQueuedBatches)
+
+    @Volatile
+    private var closed = false
+
+    private var batch: GCsvRowBatch? = null
+
+    private var endOfFile = false
+
+    init {
+        executor.execute { prefetch() }
+    }
+
+    private fun prefetch() {
+        try {
+            reader.use {
+                val tokenizer = GCsvTokenizer(reader)
+                val columnNames = GCsvReader.readColumnNames(fileName, tokenizer)
+                if (!put(Header(columnNames))) return
+                if (columnNames.isNotEmpty()) {
+                    var batch = GCsvRowBatch()
+                    while (GCsvReader.nextRow(tokenizer)) {
+                        batch.add(tokenizer)
+                        if (batch.isFull()) {
+                            if (!put(batch)) return
+                            batch = GCsvRowBatch()
+                        }
+                    }
+                    if (!batch.isEmpty() && !put(batch)) return
+                }
+                put(END_OF_FILE)
+            }
+        } catch (t: Throwable) {
+            put(Failure(t))
+        }
+    }
+
+    /**
+     * @return `false` if closed by the consumer
+     */
+    private fun put(element: Any): Boolean {
+        while (!closed) {
+            if (queue.offer(element, OFFER_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS)) {
+                return true
+            }
+        }
+        return false
+    }
+
+    private fun take(): Any {
+        val element = queue.take()
+        if (element is Failure) {
+            throw IOException("Error while reading '$fileName'!", element.throwable)
+        }
+        return element
+    }
+
+    override val columnNames: List<String> by lazy {
+        (take() as Header).columnNames
+    }
+
+    override fun nextRow(): Boolean {
+        if (columnNames.isEmpty()) return false // header 1st
+        while (!endOfFile) {
+            if (batch?.nextRow() == true) return true
+            val element = take()
+            if (element === END_OF_FILE) {
+                endOfFile = true
+                batch = null
+            } else {
+                batch = element as GCsvRowBatch
+            }
+        }
+        return false
+    }
+
+    private val currentBatch: GCsvRowBatch
+        get() = batch ?: throw IllegalStateException("No current row in '$fileName'!")
+
+    override val fieldCount: Int
+        get() = currentBatch.fieldCount
+
+    override fun getLength(index: Int) = currentBatch.getLength(index)
+
+    override fun getChar(index: Int, position: Int) = currentBatch.getChar(index, position)
+
+    override fun getString(index: Int) = currentBatch.getString(index)
+
+    override fun lineToString() = currentBatch.lineToString()
+
+    override fun close() {
+        closed = true
+        queue.clear()
+    }
+}
@@ -0,0 +1,48 @@
+package org.mtransit.parser.gtfs
+
+import org.mtransit.parser.MTLog
+import java.io.Closeable
+import java.io.IOException
+
+/**
+ * GTFS CSV file reader: header column names & non-empty lines (tokenized).
+ */
+interface GCsvReader : GCsvFields, Closeable {
+
+    val fileName: String
+
+    /**
+     * @return column names or empty if empty file
+     */
+    val columnNames: List<String>
+
+    /**
+     * @return `false` if end of file reached
+     */
+    fun nextRow(): Boolean
+
+    companion object {
+
+        @JvmStatic
+        fun readColumnNames(fileName: String, tokenizer: GCsvTokenizer): List<String> {
+            if (!tokenizer.nextLine() || tokenizer.lineLength == 0) return emptyList()
+            if (tokenizer.removeByteOrderMark()) { // remove 1st empty char
+                MTLog.log("Reading file '%s'... > remove 1st empty car", fileName)
+            }
+            if (!tokenizer.tokenizeLine()) {
+                throw IOException("Invalid CSV header: ${tokenizer.lineToString()}")
+            }
+            return List(tokenizer.fieldCount) { tokenizer.getString(it) }
+        }
+
+        @JvmStatic
+        fun nextRow(tokenizer: GCsvTokenizer): Boolean {
+            while (tokenizer.nextLine()) {
+                if (tokenizer.lineLength == 0) continue // empty line
+                tokenizer.tokenizeLine()
+                return true
+            }
+            return false
+        }
+    }
+}
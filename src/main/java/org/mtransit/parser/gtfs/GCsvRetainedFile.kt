@@ -0,0 +1,84 @@
+package org.mtransit.parser.gtfs
+
+/**
+ * Tokenized GTFS CSV file kept in memory (header & [GCsvRowBatch] rows) to be read again without parsing the file:
+ * - rows copied while read once by [record]
+ * - rows read again (any number of times, 1 reader at a time) by [newReader]
+ */
+class GCsvRetainedFile(
+    val fileName: String,
+) {
+
+    var columnNames: List<String> = emptyList()
+        private set
+
+    private val batches = mutableListOf<GCsvRowBatch>()
+
+    val rowCount: Int
+        get() = batches.sumOf { it.rowCount }
+
+    /**
+     * @return reader copying rows read from [reader] (must be read until the end)
+     */
+    fun record(reader: GCsvReader): GCsvReader = RecordingReader(reader)
+
+    /**
+     * @return reader of recorded rows
+     */
+    fun newReader(): GCsvReader = ReplayReader()
+
+    private inner class RecordingReader(
+        private val reader: GCsvReader,
+    ) : GCsvReader by reader {
+
+        override val columnNames: List<String>
+            get() = reader.columnNames.also { this@GCsvRetainedFile.columnNames = it }
+
+        override fun nextRow(): Boolean {
+            if (!reader.nextRow()) return false
+            val batch = batches.lastOrNull()?.takeUnless { it.isFull() }
+                ?: GCsvRowBatch().also { batches.add(it) }
+            batch.add(reader)
+            return true
+        }
+    }
+
+    private inner class ReplayReader : GCsvReader {
+
+        override val fileName: String
+            get() = this@GCsvRetainedFile.fileName
+
+        override val columnNames: List<String>
+            get() = this@GCsvRetainedFile.columnNames
+
+        private var batchIndex = -1
+
+        private var batch: GCsvRowBatch? = null
+
+        private val currentBatch: GCsvRowBatch
+            get() = batch ?: throw IllegalStateException("No current row in '$fileName'!")
+
+        override fun nextRow(): Boolean {
+            while (true) {
+                if (batch?.nextRow() == true) return true
+                if (batchIndex + 1 >= batches.size) return false
+                batch = batches[++batchIndex].also { it.rewind() }
+            }
+        }
+
+        override val fieldCount: Int
+            get() = currentBatch.fieldCount
+
+        override fun getLength(index: Int) = currentBatch.getLength(index)
+
+        override fun getChar(index: Int, position: Int) = currentBatch.getChar(index, position)
+
+        override fun getString(index: Int) = currentBatch.getString(index)
+
+        override fun lineToString() = currentBatch.lineToString()
+
+        override fun close() {
+            // nothing to release (rows kept for next reader)
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.mtransit.parser.gtfs
+
+/**
+ * Current row of a GTFS CSV file, read by column index (resolved once from the header).
+ *
+ * Same values as the previous `Map<String, String>` row:
+ * - `null` if the column is NOT in the header ([NO_COLUMN])
+ * - [org.mtransit.commons.Constants.EMPTY] if the column is in the header but missing from the row
+ */
+class GCsvRow(
+    private val fields: GCsvFields,
+    val columnNames: List<String>,
+) {
+
+    companion object {
+        const val NO_COLUMN = -1
+
+        private const val MAX_FAST_PARSE_INT_LENGTH = 9 // no overflow
+    }
+
+    private val columnIndexes: Map<String, Int> = buildMap {
+        columnNames.forEachIndexed { index, columnName ->
+            putIfAbsent(columnName, index)
+        }
+    }
+
+    private val columnsKeys = arrayOfNulls<Any>(4)
+    private val columnsValues = arrayOfNulls<Any>(4)
+
+    fun getColumnIndex(columnName: String) = columnIndexes[columnName] ?: NO_COLUMN
+
+    /**
+     * @return columns indexes holder created once per file by [resolver] & cached by [key] (class)
+     */
+    @Suppress("UNCHECKED_CAST")
+    fun <C : Any> getColumns(key: Class<C>, resolver: (GCsvRow) -> C): C {
+        for (i in columnsKeys.indices) {
+            val cachedKey = columnsKeys[i] ?: break
+            if (cachedKey === key) {
+                return columnsValues[i] as C
+            }
+        }
+        val columns = resolver(this)
+        val freeIndex = columnsKeys.indexOfFirst { it == null }
+        if (freeIndex >= 0) {
+            columnsKeys[freeIndex] = key
+            columnsValues[freeIndex] = columns
+        }
+        return columns
+    }
+
+    operator fun get(index: Int): String? {
+        if (index == NO_COLUMN) return null
+        return fields.getString(index)
+    }
+
+    /**
+     * Not pre-resolved: only for rare cases (exclusion, logs...)
+     */
+    operator fun get(columnName: String): String? = get(getColumnIndex(columnName))
+
+    fun getString(index: Int) = get(index)
+
+    fun isBlank(index: Int): Boolean {
+        for (p in 0 until fields.getLength(index)) {
+            if (!fields.getChar(index, p).isWhitespace()) return false
+        }
+        return true
+    }
+
+    /**
+     * @return `null` if blank (or column NOT in header)
+     */
+    fun getOptionalString(index: Int): String? {
+        if (index == NO_COLUMN || isBlank(index)) return null
+        return fields.getString(index)
+    }
+
+    /**
+     * @return `null` if column NOT in header
+     * @throws NumberFormatException if NOT an integer (even after trim)
+     */
+    fun getInt(index: Int): Int? {
+        if (index == NO_COLUMN) return null
+        return parseInt(index) ?: fields.getString(index).trim().toInt()
+    }
+
+    /**
+     * @return `null` if blank (or column NOT in header)
+     * @throws NumberFormatException if NOT an integer
+     */
+    fun getOptionalInt(index: Int): Int? {
+        if (index == NO_COLUMN || isBlank(index)) return null
+        return parseInt(index) ?: fields.getString(index).toInt()
+    }
+
+    /**
+     * @return `null` if NOT digits only (optional sign), without allocating a [String]
+     */
+    private fun parseInt(index: Int): Int? {
+        val length = fields.getLength(index)
+        if (length == 0 || length > MAX_FAST_PARSE_INT_LENGTH) return null
+        var p = 0
+        val negative = fields.getChar(index, 0) == '-'
+        if (negative || fields.getChar(index, 0) == '+') {
+            if (length == 1) return null
+            p++
+        }
+        var result = 0
+        while (p < length) {
+            val digit = fields.getChar(index, p++) - '0'
+            if (digit < 0 || digit > 9) return null
+            result = result * 10 + digit
+        }
+        return if (negative) -result else result
+    }
+
+    override fun toString(): String {
+        return columnNames.indices.joinToString(prefix = "{", postfix = "}") { index ->
+            "${columnNames[index]}=${fields.getString(index)}"
+        }
+    }
+}
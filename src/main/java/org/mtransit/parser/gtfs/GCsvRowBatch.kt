@@ -0,0 +1,140 @@
+package org.mtransit.parser.gtfs
+
+import org.mtransit.commons.Constants.EMPTY
+
+/**
+ * Tokenized GTFS CSV lines copied from [GCsvTokenizer] (line & fields values) to be read later, by another thread.
+ */
+class GCsvRowBatch(
+    private val maxRowCount: Int = DEFAULT_MAX_ROW_COUNT,
+) : GCsvFields {
+
+    companion object {
+        const val DEFAULT_MAX_ROW_COUNT = 10_000
+
+        private const val INITIAL_CHARS_CAPACITY = 256 * 1024
+        private const val INITIAL_FIELDS_CAPACITY = 16 * 1024
+    }
+
+    private var chars = CharArray(INITIAL_CHARS_CAPACITY)
+    private var charsLength = 0
+
+    private val lineStarts = IntArray(maxRowCount)
+    private val lineEnds = IntArray(maxRowCount)
+    private val rowFirstField = IntArray(maxRowCount + 1)
+
+    private var fieldStarts = IntArray(INITIAL_FIELDS_CAPACITY)
+    private var fieldEnds = IntArray(INITIAL_FIELDS_CAPACITY)
+    private var fieldsLength = 0
+
+    var rowCount = 0
+        private set
+
+    private var rowIndex = -1
+
+    fun isFull() = rowCount >= maxRowCount
+
+    fun isEmpty() = rowCount == 0
+
+    fun add(tokenizer: GCsvTokenizer) {
+        val lineLength = tokenizer.lineLength
+        ensureCharsCapacity(lineLength * 2)
+        lineStarts[rowCount] = charsLength
+        tokenizer.copyLine(chars, charsLength)
+        charsLength += lineLength
+        lineEnds[rowCount] = charsLength
+        val fieldCount = tokenizer.fieldCount
+        ensureFieldsCapacity(fieldCount)
+        rowFirstField[rowCount] = fieldsLength
+        for (i in 0 until fieldCount) {
+            fieldStarts[fieldsLength] = charsLength
+            tokenizer.copyField(i, chars, charsLength)
+            charsLength += tokenizer.getLength(i)
+            fieldEnds[fieldsLength] = charsLength
+            fieldsLength++
+        }
+        rowCount++
+        rowFirstField[rowCount] = fieldsLength
+    }
+
+    /**
+     * Copies the current line of any [GCsvFields] (slower than [add] from the [GCsvTokenizer]).
+     */
+    fun add(fields: GCsvFields) {
+        val line = fields.lineToString()
+        ensureCharsCapacity(line.length * 2)
+        lineStarts[rowCount] = charsLength
+        line.toCharArray(chars, charsLength)
+        charsLength += line.length
+        lineEnds[rowCount] = charsLength
+        val fieldCount = fields.fieldCount
+        ensureFieldsCapacity(fieldCount)
+        rowFirstField[rowCount] = fieldsLength
+        for (i in 0 until fieldCount) {
+            val length = fields.getLength(i)
+            ensureCharsCapacity(length)
+            fieldStarts[fieldsLength] = charsLength
+            for (p in 0 until length) {
+                chars[charsLength++] = fields.getChar(i, p)
+            }
+            fieldEnds[fieldsLength] = charsLength
+            fieldsLength++
+        }
+        rowCount++
+        rowFirstField[rowCount] = fieldsLength
+    }
+
+    private fun ensureCharsCapacity(additionalLength: Int) {
+        if (charsLength + additionalLength > chars.size) {
+            chars = chars.copyOf(maxOf(chars.size * 2, charsLength + additionalLength))
+        }
+    }
+
+    private fun ensureFieldsCapacity(fieldCount: Int) {
+        if (fieldsLength + fieldCount > fieldStarts.size) {
+            val newSize = maxOf(fieldStarts.size * 2, fieldsLength + fieldCount)
+            fieldStarts = fieldStarts.copyOf(newSize)
+            fieldEnds = fieldEnds.copyOf(newSize)
+        }
+    }
+
+    /**
+     * Read rows again from the 1st one.
+     */
+    fun rewind() {
+        rowIndex = -1
+    }
+
+    /**
+     * @return `false` if no more rows in this batch
+     */
+    fun nextRow(): Boolean {
+        if (rowIndex + 1 >= rowCount) return false
+        rowIndex++
+        return true
+    }
+
+    override val fieldCount: Int
+        get() = rowFirstField[rowIndex + 1] - rowFirstField[rowIndex]
+
+    override fun getLength(index: Int): Int {
+        if (index < 0 || index >= fieldCount) return 0
+        val field = rowFirstField[rowIndex] + index
+        return fieldEnds[field] - fieldStarts[field]
+    }
+
+    override fun getChar(index: Int, position: Int): Char {
+        return chars[fieldStarts[rowFirstField[rowIndex] + index] + position]
+    }
+
+    override fun getString(index: Int): String {
+        if (index < 0 || index >= fieldCount) return EMPTY
+        val field = rowFirstField[rowIndex] + index
+        val start = fieldStarts[field]
+        val end = fieldEnds[field]
+        if (start == end) return EMPTY
+        return String(chars, start, end - start)
+    }
+
+    override fun lineToString() = String(chars, lineStarts[rowIndex], lineEnds[rowIndex] - lineStarts[rowIndex])
+}
@@ -0,0 +1,38 @@
+package org.mtransit.parser.gtfs
+
+import java.io.Reader
+
+/**
+ * Reads & tokenizes GTFS CSV lines on the caller thread.
+ */
+class GCsvStreamReader(
+    override val fileName: String,
+    private val reader: Reader,
+) : GCsvReader {
+
+    private val tokenizer = GCsvTokenizer(reader)
+
+    override val columnNames: List<String> by lazy {
+        GCsvReader.readColumnNames(fileName, tokenizer)
+    }
+
+    override fun nextRow(): Boolean {
+        if (columnNames.isEmpty()) return false // header 1st
+        return GCsvReader.nextRow(tokenizer)
+    }
+
+    override val fieldCount: Int
+        get() = tokenizer.fieldCount
+
+    override fun getLength(index: Int) = tokenizer.getLength(index)
+
+    override fun getChar(index: Int, position: Int) = tokenizer.getChar(index, position)
+
+    override fun getString(index: Int) = tokenizer.getString(index)
+
+    override fun lineToString() = tokenizer.lineToString()
+
+    override fun close() {
+        reader.close()
+    }
+}
@@ -0,0 +1,249 @@
+package org.mtransit.parser.gtfs
+
+import org.mtransit.commons.Constants.EMPTY
+import java.io.Reader
+
+/**
+ * Streaming GTFS CSV tokenizer reading the file once through a reusable char buffer.
+ *
+ * Each line is split into fields in a single pass, without allocating per line:
+ * - RFC 4180 quotes (escaped `""`) with surrounding spaces ignored (same as previous `CSVFormat.RFC4180` + `ignoreSurroundingSpaces`)
+ * - lenient fallback for invalid lines (unterminated quote, text after closing quote): split on commas & remove all quotes
+ *
+ * Like [java.io.BufferedReader.readLine], a record never spans multiple lines (`\n`, `\r` or `\r\n`).
+ */
+class GCsvTokenizer @JvmOverloads constructor(
+    private val reader: Reader,
+    bufferSize: Int = DEFAULT_BUFFER_SIZE,
+) : GCsvFields {
+
+    companion object {
+        private const val DELIMITER = ','
+        private const val QUOTE = '"'
+        private const val BYTE_ORDER_MARK = '\uFEFF'
+
+        private const val INITIAL_LINE_CAPACITY = 256
+        private const val INITIAL_FIELD_CAPACITY = 16
+
+        // same as commons-csv (NOT Kotlin [Char.isWhitespace] which includes no-break space)
+        private fun isWhitespace(c: Char) = Character.isWhitespace(c)
+    }
+
+    private val buffer = CharArray(bufferSize)
+    private var bufferPosition = 0
+    private var bufferLength = 0
+    private var skipLineFeed = false
+
+    private var line = CharArray(INITIAL_LINE_CAPACITY)
+
+    var lineLength = 0
+        private set
+
+    var lineNumber = 0
+        private set
+
+    private var values = CharArray(INITIAL_LINE_CAPACITY)
+    private var fieldStarts = IntArray(INITIAL_FIELD_CAPACITY)
+    private var fieldEnds = IntArray(INITIAL_FIELD_CAPACITY)
+
+    override var fieldCount = 0
+        private set
+
+    /**
+     * @return `false` if the last line was NOT valid RFC 4180 and the lenient (no quote) parsing was used
+     */
+    var withQuotes = true
+        private set
+
+    /**
+     * @return `false` if end of stream reached
+     */
+    fun nextLine(): Boolean {
+        lineLength = 0
+        fieldCount = 0
+        var anyChar = false
+        while (true) {
+            if (bufferPosition >= bufferLength && !fillBuffer()) {
+                if (anyChar) lineNumber++
+                return anyChar
+            }
+            if (skipLineFeed) {
+                skipLineFeed = false
+                if (buffer[bufferPosition] == '\n') {
+                    bufferPosition++
+                    continue
+                }
+            }
+            anyChar = true
+            val start = bufferPosition
+            var i = start
+            var c = ' '
+            while (i < bufferLength) {
+                c = buffer[i]
+                if (c == '\n' || c == '\r') break
+                i++
+            }
+            appendToLine(start, i - start)
+            if (i < bufferLength) { // end of line
+                bufferPosition = i + 1
+                skipLineFeed = c == '\r'
+                lineNumber++
+                return true
+            }
+            bufferPosition = i
+        }
+    }
+
+    private fun fillBuffer(): Boolean {
+        val read = reader.read(buffer, 0, buffer.size)
+        if (read <= 0) {
+            return false
+        }
+        bufferPosition = 0
+        bufferLength = read
+        return true
+    }
+
+    private fun appendToLine(start: Int, length: Int) {
+        if (length == 0) return
+        if (lineLength + length > line.size) {
+            line = line.copyOf(maxOf(line.size * 2, lineLength + length))
+        }
+        System.arraycopy(buffer, start, line, lineLength, length)
+        lineLength += length
+    }
+
+    /**
+     * @return `true` if the 1st char of the current line was a byte order mark (removed)
+     */
+    fun removeByteOrderMark(): Boolean {
+        if (lineLength == 0 || line[0] != BYTE_ORDER_MARK) return false
+        System.arraycopy(line, 1, line, 0, lineLength - 1)
+        lineLength--
+        return true
+    }
+
+    /**
+     * Split current line into fields.
+     * @return [withQuotes]
+     */
+    fun tokenizeLine(): Boolean {
+        if (values.size < lineLength) {
+            values = CharArray(maxOf(values.size * 2, lineLength))
+        }
+        withQuotes = tokenizeWithQuotes()
+        if (!withQuotes) {
+            tokenizeWithoutQuotes()
+        }
+        return withQuotes
+    }
+
+    private fun tokenizeWithQuotes(): Boolean {
+        fieldCount = 0
+        val end = lineLength
+        var valuesLength = 0
+        var i = 0
+        while (true) {
+            while (i < end && isWhitespace(line[i])) i++
+            val fieldStart = valuesLength
+            if (i < end && line[i] == QUOTE) {
+                i++
+                var closed = false
+                while (i < end) {
+                    val c = line[i++]
+                    if (c == QUOTE) {
+                        if (i < end && line[i] == QUOTE) { // escaped quote
+                            values[valuesLength++] = QUOTE
+                            i++
+                        } else {
+                            closed = true
+                            break
+                        }
+                    } else {
+                        values[valuesLength++] = c
+                    }
+                }
+                if (!closed) {
+                    return false // end of line reached before encapsulated token finished
+                }
+                while (i < end && line[i] != DELIMITER) {
+                    if (!isWhitespace(line[i])) {
+                        return false // invalid char between encapsulated token and delimiter
+                    }
+                    i++
+                }
+            } else {
+                while (i < end && line[i] != DELIMITER) {
+                    values[valuesLength++] = line[i++]
+                }
+                while (valuesLength > fieldStart && isWhitespace(values[valuesLength - 1])) valuesLength--
+            }
+            addField(fieldStart, valuesLength)
+            if (i >= end) return true
+            i++ // delimiter
+        }
+    }
+
+    private fun tokenizeWithoutQuotes() {
+        fieldCount = 0
+        val end = lineLength
+        var valuesLength = 0
+        var i = 0
+        while (true) {
+            while (i < end && isWhitespace(line[i])) i++
+            val fieldStart = valuesLength
+            while (i < end && line[i] != DELIMITER) {
+                values[valuesLength++] = line[i++]
+            }
+            while (valuesLength > fieldStart && isWhitespace(values[valuesLength - 1])) valuesLength--
+            var w = fieldStart // remove quotes (after trim)
+            for (r in fieldStart until valuesLength) {
+                val c = values[r]
+                if (c != QUOTE) {
+                    values[w++] = c
+                }
+            }
+            valuesLength = w
+            addField(fieldStart, valuesLength)
+            if (i >= end) return
+            i++ // delimiter
+        }
+    }
+
+    private fun addField(start: Int, end: Int) {
+        if (fieldCount == fieldStarts.size) {
+            fieldStarts = fieldStarts.copyOf(fieldCount * 2)
+            fieldEnds = fieldEnds.copyOf(fieldCount * 2)
+        }
+        fieldStarts[fieldCount] = start
+        fieldEnds[fieldCount] = end
+        fieldCount++
+    }
+
+    override fun getLength(index: Int): Int {
+        if (index < 0 || index >= fieldCount) return 0
+        return fieldEnds[index] - fieldStarts[index]
+    }
+
+    override fun getChar(index: Int, position: Int): Char {
+        return values[fieldStarts[index] + position]
+    }
+
+    override fun getString(index: Int): String {
+        if (index < 0 || index >= fieldCount) return EMPTY
+        val start = fieldStarts[index]
+        val end = fieldEnds[index]
+        if (start == end) return EMPTY
+        return String(values, start, end - start)
+    }
+
+    override fun lineToString() = String(line, 0, lineLength)
+
+    internal fun copyLine(destination: CharArray, destinationPosition: Int) {
+        System.arraycopy(line, 0, destination, destinationPosition, lineLength)
+    }
+
+    internal fun copyField(index: Int, destination: CharArray, destinationPosition: Int) {
+        System.arraycopy(values, fieldStarts[index], destination, destinationPosition, getLength(index))
+    }
+}
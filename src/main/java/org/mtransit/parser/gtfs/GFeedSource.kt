@@ -0,0 +1,126 @@
+package org.mtransit.parser.gtfs
+
+import org.mtransit.parser.FileUtils
+import org.mtransit.parser.MTLog
+import java.io.Closeable
+import java.io.File
+import java.io.InputStream
+import java.io.InputStreamReader
+import java.io.Reader
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+
+/**
+ * GTFS files source: extracted directory or `.zip` file (entries streamed, NOT extracted).
+ */
+sealed class GFeedSource(
+    val path: String,
+) : Closeable {
+
+    companion object {
+        @JvmStatic
+        fun open(gtfsPath: String): GFeedSource {
+            val gtfsFile = File(gtfsPath)
+            if (!gtfsFile.exists()) {
+                throw MTLog.Fatal("'%s' GTFS directory does not exist!", gtfsFile)
+            }
+            return if (gtfsFile.isFile) ZipSource(gtfsPath) else DirectorySource(gtfsPath)
+        }
+    }
+
+    /**
+     * @return the 1st file name found (case-insensitive, in [fileNames] order) or `null`
+     */
+    abstract fun findFile(fileNames: List<String>): String?
+
+    /**
+     * @return strict UTF-8 reader (byte order mark NOT removed)
+     */
+    abstract fun openReader(fileName: String): Reader
+
+    /**
+     * @return raw bytes (byte order mark NOT removed)
+     */
+    abstract fun openInputStream(fileName: String): InputStream
+
+    /**
+     * @return 1 identity per file (name, size & CRC or last modified), sorted by name (NOT reading files content)
+     */
+    abstract fun fingerprints(): List<String>
+
+    override fun close() {
+        // DO NOTHING
+    }
+
+    class DirectorySource(path: String) : GFeedSource(path) {
+
+        override fun findFile(fileNames: List<String>): String? {
+            return FileUtils.findFileCaseInsensitive(path, fileNames)
+                ?.takeIf { it.exists() }
+                ?.name
+        }
+
+        override fun openReader(fileName: String): Reader {
+            return Files.newBufferedReader(File(path, fileName).toPath())
+        }
+
+        override fun openInputStream(fileName: String): InputStream {
+            return Files.newInputStream(File(path, fileName).toPath())
+        }
+
+        override fun fingerprints(): List<String> {
+            return File(path).listFiles()
+                ?.filter { it.isFile }
+                ?.sortedBy { it.name }
+                ?.map { "${it.name}:${it.length()}:${it.lastModified()}" }
+                .orEmpty()
+        }
+    }
+
+    class ZipSource(path: String) : GFeedSource(path) {
+
+        companion object {
+            private const val MAC_OS_X_DIR = "__MACOSX/"
+        }
+
+        private val zipFile = ZipFile(path, StandardCharsets.UTF_8)
+
+        private val entries: Map<String, ZipEntry> = buildMap {
+            zipFile.entries().asSequence()
+                .filterNot { it.isDirectory || it.name.startsWith(MAC_OS_X_DIR) }
+                .sortedBy { it.name.count { c -> c == '/' } } // root entries 1st
+                .forEach { entry ->
+                    putIfAbsent(entry.name.substringAfterLast('/').lowercase(), entry)
+                }
+        }
+
+        override fun findFile(fileNames: List<String>): String? {
+            return fileNames.firstNotNullOfOrNull { fileName ->
+                entries[fileName.lowercase()]?.name
+            }
+        }
+
+        override fun openReader(fileName: String): Reader {
+            return InputStreamReader(openInputStream(fileName), StandardCharsets.UTF_8.newDecoder())
+        }
+
+        override fun openInputStream(fileName: String): InputStream {
+            val entry = zipFile.getEntry(fileName) ?: throw MTLog.Fatal("'%s' entry does not exist in '%s'!", fileName, path)
+            return zipFile.getInputStream(entry)
+        }
+
+        override fun fingerprints(): List<String> {
+            return zipFile.entries().asSequence()
+                .filterNot { it.isDirectory }
+                .sortedBy { it.name }
+                .map { "${it.name}:${it.size}:${it.crc}" }
+                .toList()
+        }
+
+        override fun close() {
+            zipFile.close()
+        }
+    }
+}
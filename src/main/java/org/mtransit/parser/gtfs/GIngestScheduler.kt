@@ -0,0 +1,165 @@
+package org.mtransit.parser.gtfs
+
+import org.mtransit.parser.MTLog
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+/**
+ * Schedules GTFS files ingestion steps following their dependencies (DAG).
+ *
+ * Files of all steps are read & tokenized concurrently ahead of time ([GCsvPrefetchReader]) while steps are applied
+ * one at a time on the caller thread, in dependency order (declaration order for independent steps).
+ * GIDs, GSpec, GTFS DB & agency tools are only updated by one thread: the result is identical to sequential reading.
+ *
+ * Files read by a scheduler can be retained in memory ([retainFiles]) & replayed by the next one ([replayFiles]).
+ */
+class GIngestScheduler(
+    private val source: GFeedSource,
+    private val threadPoolSize: Int,
+    private val prefetch: Boolean = true,
+) {
+
+    fun interface StepAction {
+        /**
+         * @param reader `null` if file NOT found (and NOT required)
+         */
+        fun apply(reader: GCsvReader?)
+    }
+
+    fun interface FileStepAction {
+        /**
+         * @param fileName `null` if file NOT found (and NOT required)
+         */
+        fun apply(source: GFeedSource, fileName: String?)
+    }
+
+    private class Step(
+        val name: String,
+        val fileNames: List<String>,
+        val fileRequired: Boolean,
+        val dependsOn: Collection<String>,
+        val action: StepAction?,
+        val fileAction: FileStepAction? = null, // reads the file itself (NOT prefetched)
+    ) {
+        var fileName: String? = null
+        var reader: GCsvReader? = null
+    }
+
+    private val steps = LinkedHashMap<String, Step>()
+
+    private var retainFiles = false
+
+    private val retainedFiles = LinkedHashMap<String, GCsvRetainedFile>() // step name -> file
+
+    private var replayedFiles: Map<String, GCsvRetainedFile> = emptyMap() // step name -> file
+
+    @JvmOverloads
+    fun add(name: String, fileName: String, fileRequired: Boolean, dependsOn: Collection<String> = emptyList(), action: StepAction) =
+        add(name, listOf(fileName), fileRequired, dependsOn, action)
+
+    fun add(name: String, fileNames: List<String>, fileRequired: Boolean, dependsOn: Collection<String>, action: StepAction) =
+        add(Step(name, fileNames, fileRequired, dependsOn, action))
+
+    fun addFileStep(name: String, fileName: String, fileRequired: Boolean, dependsOn: Collection<String>, fileAction: FileStepAction) =
+        add(Step(name, listOf(fileName), fileRequired, dependsOn, null, fileAction))
+
+    private fun add(step: Step) {
+        if (steps.containsKey(step.name)) {
+            throw MTLog.Fatal("Duplicate ingest step '%s'!", step.name)
+        }
+        steps[step.name] = step
+    }
+
+    fun isFileFound(name: String) = steps[name]?.fileName != null
+
+    /**
+     * Keep rows of files read by steps in memory (NOT file steps), available after [run] from [getRetainedFiles].
+     */
+    fun retainFiles() {
+        this.retainFiles = true
+    }
+
+    /**
+     * @return step name -> file retained during [run] (only found files)
+     */
+    fun getRetainedFiles(): Map<String, GCsvRetainedFile> = retainedFiles
+
+    /**
+     * Read files of these steps from memory (retained by a previous scheduler) instead of the source.
+     * @param files step name -> file
+     */
+    fun replayFiles(files: Map<String, GCsvRetainedFile>) {
+        this.replayedFiles = files
+    }
+
+    fun run() {
+        val orderedSteps = sortSteps()
+        MTLog.log("Ingest steps: %s.", orderedSteps.map { it.name })
+        val executor: ExecutorService? = if (prefetch) {
+            Executors.newFixedThreadPool(threadPoolSize.coerceIn(1, orderedSteps.size.coerceAtLeast(1))) { runnable ->
+                Thread(runnable, "gtfs-prefetch").apply { isDaemon = true }
+            }
+        } else null
+        try {
+            orderedSteps.forEach { step -> // submitted in apply order (no deadlock with bounded queues)
+                replayedFiles[step.name]?.takeIf { step.fileAction == null && it.fileName in step.fileNames }?.let { retainedFile ->
+                    MTLog.log("Reading file '%s'... from memory (lines: %s).", retainedFile.fileName, retainedFile.rowCount)
+                    step.fileName = retainedFile.fileName
+                    step.reader = retainedFile.newReader()
+                    return@forEach
+                }
+                step.fileName = source.findFile(step.fileNames)
+                step.fileName?.takeIf { step.fileAction == null }?.let { fileName ->
+                    step.reader = executor?.let { GCsvPrefetchReader(fileName, source.openReader(fileName), it) }
+                }
+            }
+            orderedSteps.forEach { step ->
+                val fileName = step.fileName
+                if (fileName == null) {
+                    if (step.fileRequired) {
+                        throw MTLog.Fatal("'%s' file does not exist!", step.fileNames)
+                    }
+                    MTLog.log("Reading file(s) '%s'... SKIP (non-existing).", step.fileNames)
+                }
+                step.fileAction?.let { fileAction ->
+                    fileAction.apply(source, fileName)
+                    return@forEach
+                }
+                val action = step.action ?: return@forEach
+                if (fileName == null) {
+                    action.apply(null)
+                    return@forEach
+                }
+                (step.reader ?: GCsvStreamReader(fileName, source.openReader(fileName))).let { reader ->
+                    if (retainFiles && step.name !in replayedFiles) {
+                        GCsvRetainedFile(fileName).also { retainedFiles[step.name] = it }.record(reader)
+                    } else reader
+                }.use { reader ->
+                    action.apply(reader)
+                }
+            }
+        } finally {
+            steps.values.forEach { it.reader?.close() }
+            executor?.shutdownNow()
+        }
+    }
+
+    /**
+     * Topological sort (Kahn), independent steps kept in declaration order.
+     * Dependencies on steps NOT added (skipped) are ignored.
+     */
+    private fun sortSteps(): List<Step> {
+        val remaining = steps.values.toMutableList()
+        val done = mutableSetOf<String>()
+        val sorted = mutableListOf<Step>()
+        while (remaining.isNotEmpty()) {
+            val next = remaining.firstOrNull { step ->
+                step.dependsOn.all { it in done || it !in steps }
+            } ?: throw MTLog.Fatal("Ingest steps dependencies cycle: %s!", remaining.map { it.name })
+            remaining.remove(next)
+            done.add(next.name)
+            sorted.add(next)
+        }
+        return sorted
+    }
+}
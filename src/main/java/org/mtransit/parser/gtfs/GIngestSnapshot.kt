@@ -0,0 +1,329 @@
+package org.mtransit.parser.gtfs
+
+import androidx.annotation.VisibleForTesting
+import org.mtransit.parser.FileUtils
+import org.mtransit.parser.MTLog
+import org.mtransit.parser.Utils
+import org.mtransit.parser.db.SQLUtils
+import org.mtransit.parser.gtfs.data.GIDs
+import org.mtransit.parser.gtfs.data.GStopTime
+import java.io.File
+import java.security.MessageDigest
+import java.sql.Connection
+import java.sql.DriverManager
+import java.sql.PreparedStatement
+import java.util.function.Consumer
+
+/**
+ * Stop times ingest snapshot (most expensive GTFS file to parse & clean), keyed by a hash of:
+ * - GTFS files (name, size & CRC or last modified)
+ * - agency tools code (class hierarchy & nested classes bytecode, agency & parser builds)
+ * - agency tools config ([GAgencyTools.getIngestSnapshotKey]: config, useful service IDs...)
+ *
+ * Contains stop times kept after cleanup & exclusion (original string IDs: independent of [GIDs] integers order),
+ * stop IDs with stop times, original IDs forgotten by excluded stop times and agency tools stop times flags.
+ * Re-runs with identical inputs restore stop times from the snapshot instead of parsing `stop_times.txt`.
+ */
+class GIngestSnapshot @VisibleForTesting internal constructor(
+    val key: String,
+    private val dir: File = File(DIR_PATH),
+) {
+
+    companion object {
+        private const val VERSION = 2 // increment when stop times parsing/cleaning changes
+
+        private const val DIR_PATH = "input/gtfs_snapshot"
+        private const val FILE_EXTENSION = ".db"
+        private const val TMP_FILE_EXTENSION = ".tmp"
+
+        private const val STOP_TIMES_TABLE_NAME = "stop_times"
+        private const val STOP_IDS_TABLE_NAME = "stop_ids"
+        private const val FLAGS_TABLE_NAME = "flags"
+        private const val FORGOTTEN_TRIP_IDS_TABLE_NAME = "forgotten_trip_ids"
+        private const val FORGOTTEN_STOP_IDS_TABLE_NAME = "forgotten_stop_ids"
+
+        private const val FLAG_STOP_TIMES_HAS_PICKUP_TYPE_NOT_REGULAR = "stop_times_has_pickup_type_not_regular"
+        private const val FLAG_STOP_TIMES_HAS_DROP_OFF_TYPE_NOT_REGULAR = "stop_times_has_drop_off_type_not_regular"
+        private const val FLAG_FORCE_STOP_TIME_LAST_NO_PICKUP_TYPE = "force_stop_time_last_no_pickup_type"
+        private const val FLAG_FORCE_STOP_TIME_FIRST_NO_DROP_OFF_TYPE = "force_stop_time_first_no_drop_off_type"
+
+        private const val BATCH_SIZE = 10_000
+
+        /**
+         * @return snapshot for these inputs or `null` if disabled by agency tools
+         */
+        @JvmStatic
+        fun of(source: GFeedSource, agencyTools: GAgencyTools): GIngestSnapshot? {
+            val agencyKey = agencyTools.ingestSnapshotKey ?: return null
+            val digest = MessageDigest.getInstance("SHA-256")
+            digest.update("v$VERSION".toByteArray())
+            digest.updateCode(agencyTools.javaClass) // agency or parser code changes
+            digest.update(agencyKey.toByteArray())
+            source.fingerprints().forEach { digest.update(it.toByteArray()) }
+            return GIngestSnapshot(digest.digest().joinToString(separator = "") { "%02x".format(it) })
+        }
+
+        /**
+         * Agency tools class hierarchy (until parser classes) & code sources (agency & parser builds: jar or classes directory).
+         */
+        private fun MessageDigest.updateCode(agencyToolsClass: Class<*>) {
+            val codeSources = LinkedHashSet<File>()
+            generateSequence<Class<*>>(agencyToolsClass) { it.superclass }
+                .takeWhile { it != Any::class.java }
+                .forEach { clazz ->
+                    updateClass(clazz)
+                    clazz.protectionDomain?.codeSource?.location
+                        ?.let { location -> runCatching { File(location.toURI()) }.getOrNull() }
+                        ?.let { codeSources.add(it) }
+                }
+            codeSources.forEach { updateFile(it) }
+        }
+
+        /**
+         * Class, nested & anonymous classes bytecode (lambdas compiled in their declaring class).
+         */
+        private fun MessageDigest.updateClass(clazz: Class<*>) {
+            val classFileName = clazz.name.substringAfterLast('.') // Outer$Nested
+            update(clazz.name.toByteArray())
+            clazz.getResourceAsStream("$classFileName.class")?.use { update(it.readBytes()) }
+            clazz.declaredClasses.forEach { updateClass(it) }
+            var anonymousIndex = 1
+            while (true) {
+                val anonymousClassStream = clazz.getResourceAsStream("$classFileName\$${anonymousIndex++}.class") ?: break
+                anonymousClassStream.use { update(it.readBytes()) }
+            }
+        }
+
+        private fun MessageDigest.updateFile(file: File) {
+            if (file.isDirectory) {
+                file.walkTopDown()
+                    .filter { it.isFile }
+                    .sortedBy { it.relativeTo(file).path }
+                    .forEach { classFile ->
+                        update(classFile.relativeTo(file).path.toByteArray())
+                        update(classFile.readBytes())
+                    }
+            } else if (file.isFile) {
+                file.inputStream().use { inputStream ->
+                    val buffer = ByteArray(DEFAULT_BUFFER_SIZE)
+                    var read: Int
+                    while (inputStream.read(buffer).also { read = it } >= 0) {
+                        update(buffer, 0, read)
+                    }
+                }
+            }
+        }
+    }
+
+    private val file = File(dir, key + FILE_EXTENSION)
+
+    fun exists() = file.exists()
+
+    /**
+     * Replays agency tools side effects of reading stop times: flags & original IDs (kept & forgotten).
+     *
+     * @param onStopTime stop time restored (in snapshot order)
+     * @return stop IDs (original) with stop times
+     */
+    fun restore(agencyTools: GAgencyTools, onStopTime: Consumer<GStopTime>): Set<String> {
+        MTLog.log("Restoring stop times from ingest snapshot '%s'...", file)
+        val start = System.currentTimeMillis()
+        val stopOriginalIds = HashSet<String>()
+        var count = 0
+        DriverManager.getConnection(SQLUtils.getJDBCSQLiteFile(file.path)).use { connection ->
+            connection.createStatement().use { statement ->
+                SQLUtils.executeQuery(statement, "SELECT * FROM $STOP_TIMES_TABLE_NAME").use { rs ->
+                    while (rs.next()) {
+                        onStopTime.accept(
+                            GStopTime(
+                                GIDs.getInt(rs.getString(GStopTime.TRIP_ID)),
+                                rs.getInt(GStopTime.ARRIVAL_TIME),
+                                rs.getInt(GStopTime.DEPARTURE_TIME),
+                                GIDs.getInt(rs.getString(GStopTime.STOP_ID)),
+                                rs.getInt(GStopTime.STOP_SEQUENCE),
+                                rs.getString(GStopTime.STOP_HEADSIGN),
+                                rs.getInt(GStopTime.PICKUP_TYPE),
+                                rs.getInt(GStopTime.DROP_OFF_TYPE),
+                                rs.getInt(GStopTime.TIME_POINT),
+                            )
+                        )
+                        if (count++ % 100_000 == 0) { // LOG
+                            MTLog.logPOINT() // LOG
+                        } // LOG
+                    }
+                }
+                SQLUtils.executeQuery(statement, "SELECT * FROM $STOP_IDS_TABLE_NAME").use { rs ->
+                    while (rs.next()) {
+                        stopOriginalIds.add(rs.getString(1))
+                    }
+                }
+                stopOriginalIds.forEach { agencyTools.cleanStopOriginalId(it) } // kept (before forgotten)
+                SQLUtils.executeQuery(statement, "SELECT * FROM $FORGOTTEN_TRIP_IDS_TABLE_NAME").use { rs ->
+                    while (rs.next()) {
+                        agencyTools.forgetOriginalTripId(rs.getString(1))
+                    }
+                }
+                SQLUtils.executeQuery(statement, "SELECT * FROM $FORGOTTEN_STOP_IDS_TABLE_NAME").use { rs ->
+                    while (rs.next()) {
+                        agencyTools.forgetOriginalStopId(rs.getString(1))
+                    }
+                }
+                SQLUtils.executeQuery(statement, "SELECT * FROM $FLAGS_TABLE_NAME").use { rs ->
+                    while (rs.next()) {
+                        if (rs.getInt(2) != 1) continue // only TRUE flags are set
+                        when (rs.getString(1)) {
+                            FLAG_STOP_TIMES_HAS_PICKUP_TYPE_NOT_REGULAR -> agencyTools.setStopTimesHasPickupTypeNotRegular(true)
+                            FLAG_STOP_TIMES_HAS_DROP_OFF_TYPE_NOT_REGULAR -> agencyTools.setStopTimesHasDropOffTypeNotRegular(true)
+                            FLAG_FORCE_STOP_TIME_LAST_NO_PICKUP_TYPE -> agencyTools.setForceStopTimeLastNoPickupType(true)
+                            FLAG_FORCE_STOP_TIME_FIRST_NO_DROP_OFF_TYPE -> agencyTools.setForceStopTimeFirstNoDropOffType(true)
+                        }
+                    }
+                }
+            }
+        }
+        MTLog.log(
+            "Restoring stop times from ingest snapshot '%s'... DONE in %s (%d stop times, %d stops).",
+            file, Utils.getPrettyDuration(System.currentTimeMillis() - start), count, stopOriginalIds.size
+        )
+        return stopOriginalIds
+    }
+
+    fun newWriter() = Writer()
+
+    /**
+     * Written to a temporary file, renamed on [Writer.commit] (incomplete snapshot never used).
+     * NOT thread-safe.
+     */
+    inner class Writer internal constructor() {
+
+        private val tmpFile = File(dir, key + TMP_FILE_EXTENSION)
+
+        private val connection: Connection
+
+        private val insertStopTimePrepared: PreparedStatement
+
+        private var batchCount = 0
+
+        // forgotten by excluded stop times & NOT kept by a later stop time (same agency tools state after reading)
+        private val forgottenTripOriginalIds = LinkedHashSet<String>()
+        private val forgottenStopOriginalIds = LinkedHashSet<String>()
+
+        init {
+            dir.mkdirs()
+            FileUtils.deleteIfExist(tmpFile)
+            connection = DriverManager.getConnection(SQLUtils.getJDBCSQLiteFile(tmpFile.path))
+            connection.createStatement().use { statement ->
+                SQLUtils.execute(statement, "PRAGMA synchronous = OFF")
+                SQLUtils.execute(statement, "PRAGMA journal_mode = OFF")
+                SQLUtils.execute(
+                    statement,
+                    "CREATE TABLE $STOP_TIMES_TABLE_NAME (" +
+                            "${GStopTime.TRIP_ID} TEXT, " +
+                            "${GStopTime.STOP_ID} TEXT, " +
+                            "${GStopTime.STOP_SEQUENCE} INTEGER, " +
+                            "${GStopTime.ARRIVAL_TIME} INTEGER, " +
+                            "${GStopTime.DEPARTURE_TIME} INTEGER, " +
+                            "${GStopTime.STOP_HEADSIGN} TEXT, " +
+                            "${GStopTime.PICKUP_TYPE} INTEGER, " +
+                            "${GStopTime.DROP_OFF_TYPE} INTEGER, " +
+                            "${GStopTime.TIME_POINT} INTEGER" +
+                            ")"
+                )
+                SQLUtils.execute(statement, "CREATE TABLE $STOP_IDS_TABLE_NAME (stop_id TEXT)")
+                SQLUtils.execute(statement, "CREATE TABLE $FLAGS_TABLE_NAME (name TEXT PRIMARY KEY, value INTEGER)")
+                SQLUtils.execute(statement, "CREATE TABLE $FORGOTTEN_TRIP_IDS_TABLE_NAME (trip_id TEXT)")
+                SQLUtils.execute(statement, "CREATE TABLE $FORGOTTEN_STOP_IDS_TABLE_NAME (stop_id TEXT)")
+            }
+            connection.autoCommit = false
+            insertStopTimePrepared = connection.prepareStatement(
+                "INSERT INTO $STOP_TIMES_TABLE_NAME VALUES (${SQLUtils.placeholders(9)})"
+            )
+        }
+
+        /**
+         * @param originalTripId original trip ID (kept: NOT forgotten anymore)
+         * @param originalStopId original stop ID (kept: NOT forgotten anymore)
+         */
+        fun addStopTime(gStopTime: GStopTime, originalTripId: String, originalStopId: String) {
+            forgottenTripOriginalIds.remove(originalTripId)
+            forgottenStopOriginalIds.remove(originalStopId)
+            insertStopTimePrepared.setString(1, GIDs.getString(gStopTime.tripIdInt))
+            insertStopTimePrepared.setString(2, GIDs.getString(gStopTime.stopIdInt))
+            insertStopTimePrepared.setInt(3, gStopTime.stopSequence)
+            insertStopTimePrepared.setInt(4, gStopTime.arrivalTime)
+            insertStopTimePrepared.setInt(5, gStopTime.departureTime)
+            insertStopTimePrepared.setString(6, gStopTime.stopHeadsign)
+            insertStopTimePrepared.setInt(7, gStopTime.pickupType.id)
+            insertStopTimePrepared.setInt(8, gStopTime.dropOffType.id)
+            insertStopTimePrepared.setInt(9, gStopTime.timePoint.id)
+            insertStopTimePrepared.addBatch()
+            if (++batchCount >= BATCH_SIZE) {
+                insertStopTimePrepared.executeBatch()
+                batchCount = 0
+            }
+        }
+
+        /**
+         * Original IDs forgotten by an excluded stop time.
+         */
+        fun forgetOriginalIds(originalTripId: String, originalStopId: String) {
+            forgottenTripOriginalIds.add(originalTripId)
+            forgottenStopOriginalIds.add(originalStopId)
+        }
+
+        /**
+         * @param stopOriginalIds stop IDs (original) with stop times
+         */
+        fun commit(stopOriginalIds: Collection<String>, agencyTools: GAgencyTools) {
+            if (batchCount > 0) {
+                insertStopTimePrepared.executeBatch()
+                batchCount = 0
+            }
+            insertStopTimePrepared.close()
+            connection.prepareStatement("INSERT INTO $STOP_IDS_TABLE_NAME VALUES (?)").use { preparedStatement ->
+                stopOriginalIds.forEach {
+                    preparedStatement.setString(1, it)
+                    preparedStatement.addBatch()
+                }
+                preparedStatement.executeBatch()
+            }
+            mapOf(
+                FORGOTTEN_TRIP_IDS_TABLE_NAME to forgottenTripOriginalIds,
+                FORGOTTEN_STOP_IDS_TABLE_NAME to forgottenStopOriginalIds,
+            ).forEach { (tableName, originalIds) ->
+                connection.prepareStatement("INSERT INTO $tableName VALUES (?)").use { preparedStatement ->
+                    originalIds.forEach {
+                        preparedStatement.setString(1, it)
+                        preparedStatement.addBatch()
+                    }
+                    preparedStatement.executeBatch()
+                }
+            }
+            connection.prepareStatement("INSERT INTO $FLAGS_TABLE_NAME VALUES (?, ?)").use { preparedStatement ->
+                mapOf(
+                    FLAG_STOP_TIMES_HAS_PICKUP_TYPE_NOT_REGULAR to agencyTools.stopTimesHasPickupTypeNotRegular(),
+                    FLAG_STOP_TIMES_HAS_DROP_OFF_TYPE_NOT_REGULAR to agencyTools.stopTimesHasDropOffTypeNotRegular(),
+                    FLAG_FORCE_STOP_TIME_LAST_NO_PICKUP_TYPE to agencyTools.forceStopTimeLastNoPickupType(),
+                    FLAG_FORCE_STOP_TIME_FIRST_NO_DROP_OFF_TYPE to agencyTools.forceStopTimeFirstNoDropOffType(),
+                ).forEach { (name, value) ->
+                    preparedStatement.setString(1, name)
+                    preparedStatement.setInt(2, if (value) 1 else 0)
+                    preparedStatement.addBatch()
+                }
+                preparedStatement.executeBatch()
+            }
+            connection.commit()
+            connection.close()
+            dir.listFiles()?.forEach { oldFile -> // 1 snapshot (latest) per working directory
+                if (oldFile != tmpFile) {
+                    FileUtils.deleteIfExist(oldFile)
+                }
+            }
+            if (!tmpFile.renameTo(file)) {
+                MTLog.log("Ingest snapshot '%s' NOT saved (rename failed)!", file)
+                return
+            }
+            MTLog.log("Ingest snapshot '%s' saved (%s).", file, FileUtils.sizeToDiplayString(FileUtils.size(file)))
+        }
+    }
+}
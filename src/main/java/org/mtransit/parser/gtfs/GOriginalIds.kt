@@ -0,0 +1,79 @@
+package org.mtransit.parser.gtfs
+
+import org.mtransit.parser.gtfs.data.GStringDictionary
+import java.util.BitSet
+
+/**
+ * Set of GTFS original IDs (NOT cleaned) stored as integers of its own dictionary (dense) in a bitset:
+ * no [String] kept, strings only read/written at the edges ([add], [contains], [iterator]).
+ * Original IDs are NOT added to the global GIDs (cleaned IDs only).
+ *
+ * `null` IDs are never contained.
+ * NOT thread-safe for writes (concurrent reads OK).
+ */
+class GOriginalIds : java.util.AbstractSet<String?>() {
+
+    private var dictionary = GStringDictionary()
+
+    private val idInts = BitSet()
+
+    private var count = 0
+
+    override val size: Int
+        get() = count
+
+    override fun add(element: String?): Boolean {
+        if (element == null) return false
+        val idInt = dictionary.getOrAdd(element)
+        if (idInts.get(idInt)) return false
+        idInts.set(idInt)
+        count++
+        return true
+    }
+
+    override fun contains(element: String?): Boolean {
+        if (element == null) return false
+        val idInt = dictionary.getInt(element) // NOT added if unknown
+        return idInt != GStringDictionary.NOT_FOUND && idInts.get(idInt)
+    }
+
+    override fun remove(element: String?): Boolean {
+        if (element == null) return false
+        val idInt = dictionary.getInt(element) // NOT added if unknown
+        if (idInt == GStringDictionary.NOT_FOUND || !idInts.get(idInt)) return false
+        idInts.clear(idInt)
+        count--
+        return true
+    }
+
+    override fun clear() {
+        dictionary = GStringDictionary() // append-only
+        idInts.clear()
+        count = 0
+    }
+
+    override fun iterator(): MutableIterator<String?> {
+        return object : MutableIterator<String?> {
+
+            private var nextIdInt = idInts.nextSetBit(0)
+
+            private var lastIdInt = GStringDictionary.NOT_FOUND
+
+            override fun hasNext() = nextIdInt >= 0
+
+            override fun next(): String {
+                if (nextIdInt < 0) throw NoSuchElementException()
+                lastIdInt = nextIdInt
+                nextIdInt = idInts.nextSetBit(nextIdInt + 1)
+                return dictionary.getString(lastIdInt) ?: throw ConcurrentModificationException()
+            }
+
+            override fun remove() {
+                check(lastIdInt != GStringDictionary.NOT_FOUND) { "next() not called or already removed!" }
+                idInts.clear(lastIdInt)
+                count--
+                lastIdInt = GStringDictionary.NOT_FOUND
+            }
+        }
+    }
+}
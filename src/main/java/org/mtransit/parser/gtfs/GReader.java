@@ -2,14 +2,11 @@ package org.mtransit.parser.gtfs;
 
 import static org.mtransit.commons.Constants.EMPTY;
 
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVRecord;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.mtransit.commons.DateUtils;
 import org.mtransit.commons.StringUtils;
-import org.mtransit.parser.FileUtils;
+import org.mtransit.parser.DefaultAgencyTools;
 import org.mtransit.parser.MTLog;
 import org.mtransit.parser.Utils;
 import org.mtransit.parser.db.GTFSDataBase;
@@ -29,21 +26,14 @@ import org.mtransit.parser.gtfs.data.GStopTime;
 import org.mtransit.parser.gtfs.data.GTrip;
 import org.mtransit.parser.gtfs.data.GWheelchairBoardingType;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
 import java.sql.PreparedStatement;
 import java.text.DateFormat;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
 
 import kotlin.ranges.IntRange;
 
@@ -56,12 +46,39 @@ public class GReader {
 	private static final boolean USE_PREPARED_STATEMENT = true;
 	// private static final boolean USE_PREPARED_STATEMENT = false;
 
+	private static final int STOP_TIMES_COMMIT_SIZE = 500_000; // rows (DB memory budget checked after each commit)
+
+	private static final boolean PREFETCH_FILES = true;
+	// private static final boolean PREFETCH_FILES = false; // DEBUG
+
+	private static final boolean RETAIN_FILES = true; // route-trip-calendars only read -> full read (files parsed once)
+	// private static final boolean RETAIN_FILES = false; // DEBUG
+
+	private static final String STEP_AGENCY = "agency";
+	private static final String STEP_CALENDAR_DATES = "calendar_dates";
+	private static final String STEP_CALENDAR = "calendar";
+	private static final String STEP_TRIPS = "trips";
+	private static final String STEP_ROUTES = "routes";
+	private static final String STEP_DIRECTIONS = "directions";
+	private static final String STEP_FREQUENCIES = "frequencies";
+	private static final String STEP_STOP_TIMES = "stop_times";
+	private static final String STEP_STOPS = "stops";
+
 	@NotNull
-	private static final Set<String> serviceOriginalIds = new HashSet<>();
+	private static final GOriginalIds serviceOriginalIds = new GOriginalIds();
 	@NotNull
-	private static final Set<String> stopTimesOriginalStopIds = new HashSet<>();
+	private static final GOriginalIds stopTimesOriginalStopIds = new GOriginalIds();
 	@NotNull
-	private static final Set<String> tripOriginalIds = new HashSet<>();
+	private static final GOriginalIds tripOriginalIds = new GOriginalIds();
+	@Nullable
+	private static GIngestSnapshot.Writer stopTimesSnapshotWriter = null;
+	@Nullable
+	private static PreparedStatement stopTimesInsertPrepared = null; // replaced if DB spilled to file while reading
+	private static int stopTimesUncommittedCount = 0;
+	@Nullable
+	private static String retainedFilesGtfsDir = null;
+	@NotNull
+	private static Map<String, GCsvRetainedFile> retainedFiles = Collections.emptyMap();
 
 	@SuppressWarnings("ConstantValue")
 	@NotNull
@@ -78,103 +95,118 @@ public class GReader {
 		serviceOriginalIds.clear();
 		stopTimesOriginalStopIds.clear();
 		tripOriginalIds.clear();
-		File gtfsDirF = new File(gtfsDir);
-		if (!gtfsDirF.exists()) {
-			throw new MTLog.Fatal("'%s' GTFS directory does not exist!", gtfsDirF);
-		}
-		try {
+		try (GFeedSource source = GFeedSource.open(gtfsDir)) {
 			final boolean skipDataCleanup = calendarsOnly || routeTripCalendarsOnly;
+			final GIngestScheduler scheduler = new GIngestScheduler(source, agencyTools.getThreadPoolSize(), PREFETCH_FILES);
+			final boolean retainFiles = RETAIN_FILES && routeTripCalendarsOnly; // kept for the next full read
+			if (retainFiles) {
+				scheduler.retainFiles();
+			} else if (!skipDataCleanup && gtfsDir.equals(retainedFilesGtfsDir)) {
+				scheduler.replayFiles(retainedFiles); // same rows, processed again w/ useful service IDs & data cleanup
+			}
 			// AGENCY // 1st (setup supported language)
 			if (!calendarsOnly) {
-				readFile(gtfsDir, GAgency.FILENAME, true, line ->
-						processAgency(agencyTools, gSpec, line)
+				scheduler.add(STEP_AGENCY, GAgency.FILENAME, true, reader ->
+						readCsv(reader, line -> processAgency(agencyTools, gSpec, line))
 				);
 			}
 			// CALENDAR DATES (-> non-excluded service IDs)
-			boolean hasCalendarDates = readFile(gtfsDir, GCalendarDate.FILENAME, false, line ->
-					processCalendarDate(agencyTools, gSpec, line)
+			scheduler.add(STEP_CALENDAR_DATES, GCalendarDate.FILENAME, false, reader ->
+					readCsv(reader, line -> processCalendarDate(agencyTools, gSpec, line))
 			);
 			// CALENDAR (-> non-excluded service IDs)
-			boolean hasCalendars = readFile(gtfsDir, GCalendar.FILENAME, false, line ->
-					processCalendar(agencyTools, gSpec, line)
-			);
-			boolean hasCalendar = hasCalendarDates || hasCalendars;
-			if (!hasCalendar) {
-				throw new MTLog.Fatal("'%s' & '%s' file do not exist!", GCalendar.FILENAME, GCalendarDate.FILENAME);
-			}
+			scheduler.add(STEP_CALENDAR, GCalendar.FILENAME, false, Collections.singletonList(STEP_CALENDAR_DATES), reader -> {
+				readCsv(reader, line -> processCalendar(agencyTools, gSpec, line));
+				boolean hasCalendar = scheduler.isFileFound(STEP_CALENDAR_DATES) || scheduler.isFileFound(STEP_CALENDAR);
+				if (!hasCalendar) {
+					throw new MTLog.Fatal("'%s' & '%s' file do not exist!", GCalendar.FILENAME, GCalendarDate.FILENAME);
+				}
+			});
 			// TRIPS (after calendar* -> using service IDs)
 			if (!calendarsOnly) {
-				GTFSDataBase.setAutoCommit(false);
-				final PreparedStatement insertTripsPrepared = USE_PREPARED_STATEMENT ? GTFSDataBase.prepareInsertTrip(agencyTools.allowDuplicateKeyError()) : null;
-				readFile(gtfsDir, GTrip.FILENAME, true,
-						line -> processTrip(agencyTools, gSpec, line, insertTripsPrepared, skipDataCleanup),
-						columnNames -> {
-							if (!columnNames.contains(GTrip.DIRECTION_ID)) {
-								agencyTools.setDirectionSplitterUseful(true); // direction IDs not provided
+				scheduler.add(STEP_TRIPS, GTrip.FILENAME, true, Arrays.asList(STEP_AGENCY, STEP_CALENDAR_DATES, STEP_CALENDAR), reader -> {
+					GTFSDataBase.setAutoCommit(false);
+					final PreparedStatement insertTripsPrepared = USE_PREPARED_STATEMENT ? GTFSDataBase.prepareInsertTrip(agencyTools.allowDuplicateKeyError()) : null;
+					readCsv(reader,
+							line -> processTrip(agencyTools, gSpec, line, insertTripsPrepared, skipDataCleanup),
+							columnNames -> {
+								if (!columnNames.contains(GTrip.DIRECTION_ID)) {
+									agencyTools.setDirectionSplitterUseful(true); // direction IDs not provided
+								}
 							}
-						}
-				);
-				if (insertTripsPrepared != null) {
-					GTFSDataBase.executePreparedStatement(insertTripsPrepared);
-				}
-				GTFSDataBase.commit();
-				GTFSDataBase.setAutoCommit(true); // true => commit()
+					);
+					if (insertTripsPrepared != null) {
+						GTFSDataBase.executePreparedStatement(insertTripsPrepared);
+					}
+					GTFSDataBase.commit();
+					GTFSDataBase.setAutoCommit(true); // true => commit()
+				});
 			}
 			// ROUTES (after trips)
 			if (!calendarsOnly) {
-				final GAgency singleAgency = gSpec.getSingleAgency();
-				//noinspection DiscouragedApi
-				final String defaultAgencyId = singleAgency == null ? null : singleAgency.getAgencyId();
-				readFile(gtfsDir, GRoute.FILENAME, true, line ->
-						processRoute(agencyTools, gSpec, line, defaultAgencyId, skipDataCleanup)
-				);
+				scheduler.add(STEP_ROUTES, GRoute.FILENAME, true, Arrays.asList(STEP_AGENCY, STEP_TRIPS), reader -> {
+					final GAgency singleAgency = gSpec.getSingleAgency();
+					//noinspection DiscouragedApi
+					final String defaultAgencyId = singleAgency == null ? null : singleAgency.getAgencyId();
+					readCsv(reader, line -> processRoute(agencyTools, gSpec, line, defaultAgencyId, skipDataCleanup));
+				});
 			}
 			// DIRECTIONS (ext) (after route)
 			if (!calendarsOnly && !routeTripCalendarsOnly) {
-				readFiles(gtfsDir, GDirection.getFILENAMES(), false, line ->
-						processDirection(agencyTools, gSpec, line, skipDataCleanup)
+				scheduler.add(STEP_DIRECTIONS, GDirection.getFILENAMES(), false, Collections.singletonList(STEP_ROUTES), reader ->
+						readCsv(reader, line -> processDirection(agencyTools, gSpec, line, skipDataCleanup))
 				);
 			}
 			// FREQUENCIES (after calendar* -> using service IDs)
 			if (!calendarsOnly && !routeTripCalendarsOnly) {
-				readFile(gtfsDir, GFrequency.FILENAME, false, line ->
-						processFrequency(agencyTools, gSpec, line, skipDataCleanup)
+				scheduler.add(STEP_FREQUENCIES, GFrequency.FILENAME, false, Collections.singletonList(STEP_TRIPS), reader ->
+						readCsv(reader, line -> processFrequency(agencyTools, gSpec, line, skipDataCleanup))
 				);
 			}
 			// STOP TIMES
 			if (!calendarsOnly && !routeTripCalendarsOnly) {
-				GTFSDataBase.setAutoCommit(false);
-				final PreparedStatement insertStopTimePrepared = USE_PREPARED_STATEMENT ? GTFSDataBase.prepareInsertStopTime(agencyTools.allowDuplicateKeyError()) : null;
-				readFile(gtfsDir, GStopTime.FILENAME, true,
-						line -> processStopTime(agencyTools, gSpec, line, insertStopTimePrepared, skipDataCleanup),
-						columnNames -> {
-							if (!columnNames.contains(GStopTime.PICKUP_TYPE)) {
-								agencyTools.setForceStopTimeLastNoPickupType(true); // pickup types not provided
-							}
-							if (!columnNames.contains(GStopTime.DROP_OFF_TYPE)) {
-								agencyTools.setForceStopTimeFirstNoDropOffType(true); // drop-off  types not provided
-							}
-						}
-				);
-				if (!agencyTools.stopTimesHasPickupTypeNotRegular()) {
-					agencyTools.setForceStopTimeLastNoPickupType(true); // all provided pickup type are REGULAR == not provided
-				}
-				if (!agencyTools.stopTimesHasDropOffTypeNotRegular()) {
-					agencyTools.setForceStopTimeFirstNoDropOffType(true); // all provided drop-off type are REGULAR == not provided
-				}
-				if (insertStopTimePrepared != null) {
-					GTFSDataBase.executePreparedStatement(insertStopTimePrepared);
+				final OnColumnNamesFound onStopTimesColumnNamesFound = columnNames -> {
+					if (!columnNames.contains(GStopTime.PICKUP_TYPE)) {
+						agencyTools.setForceStopTimeLastNoPickupType(true); // pickup types not provided
+					}
+					if (!columnNames.contains(GStopTime.DROP_OFF_TYPE)) {
+						agencyTools.setForceStopTimeFirstNoDropOffType(true); // drop-off  types not provided
+					}
+				};
+				final GIngestSnapshot ingestSnapshot = skipDataCleanup ? null : GIngestSnapshot.of(source, agencyTools);
+				if (ingestSnapshot != null && ingestSnapshot.exists()) {
+					scheduler.addFileStep(STEP_STOP_TIMES, GStopTime.FILENAME, true, Collections.singletonList(STEP_TRIPS), (fileSource, fileName) ->
+							readStopTimes(agencyTools, null, () ->
+									restoreStopTimes(ingestSnapshot, agencyTools, gSpec)
+							)
+					);
+				} else if (agencyTools.parallelStopTimesParsingEnabled()) {
+					scheduler.addFileStep(STEP_STOP_TIMES, GStopTime.FILENAME, true, Collections.singletonList(STEP_TRIPS), (fileSource, fileName) ->
+							readStopTimes(agencyTools, ingestSnapshot, () ->
+									readStopTimesParallel(fileSource, fileName, agencyTools, gSpec, skipDataCleanup, onStopTimesColumnNamesFound)
+							)
+					);
+				} else {
+					scheduler.add(STEP_STOP_TIMES, GStopTime.FILENAME, true, Collections.singletonList(STEP_TRIPS), reader ->
+							readStopTimes(agencyTools, ingestSnapshot, () ->
+									readCsv(reader,
+											line -> processStopTime(agencyTools, gSpec, line, skipDataCleanup),
+											onStopTimesColumnNamesFound
+									)
+							)
+					);
 				}
-				GTFSDataBase.commit();
-				GTFSDataBase.setAutoCommit(true); // true => commit()
 			}
 			// STOPS (after stop times)
 			if (!calendarsOnly && !routeTripCalendarsOnly) {
-				readFile(gtfsDir, GStop.FILENAME, true, line ->
-						processStop(agencyTools, gSpec, line, skipDataCleanup)
+				scheduler.add(STEP_STOPS, GStop.FILENAME, true, Collections.singletonList(STEP_STOP_TIMES), reader ->
+						readCsv(reader, line -> processStop(agencyTools, gSpec, line, skipDataCleanup))
 				);
 			}
 			// TODO OTHER FILES TYPE
+			scheduler.run();
+			retainedFilesGtfsDir = retainFiles ? gtfsDir : null;
+			retainedFiles = retainFiles ? scheduler.getRetainedFiles() : Collections.emptyMap(); // release
 		} catch (Exception ioe) {
 			throw new MTLog.Fatal(ioe, "I/O Error while reading GTFS file!");
 		}
@@ -183,151 +215,45 @@ public class GReader {
 		return gSpec;
 	}
 
-	private static boolean readFile(
-			@NotNull String gtfsDir,
-			@NotNull String fileName,
-			boolean fileRequired,
-			@NotNull LineProcessor lineProcessor
-	) {
-		return readFiles(
-				gtfsDir,
-				Collections.singletonList(fileName),
-				fileRequired,
-				lineProcessor
-		);
-	}
-
-	private static boolean readFiles(
-			@NotNull String gtfsDir,
-			@NotNull List<String> fileNames,
-			boolean fileRequired,
-			@NotNull LineProcessor lineProcessor
-	) {
-		return readFiles(gtfsDir, fileNames, fileRequired, lineProcessor, null);
-	}
-
-	@SuppressWarnings({"UnusedReturnValue", "SameParameterValue"})
-	private static boolean readFile(
-			@NotNull String gtfsDir,
-			@NotNull String fileName,
-			boolean fileRequired,
-			@NotNull LineProcessor lineProcessor,
-			@Nullable OnColumnNamesFound onColumnNamesFoundCallback
-	) {
-		return readFiles(
-				gtfsDir,
-				Collections.singletonList(fileName),
-				fileRequired,
-				lineProcessor,
-				onColumnNamesFoundCallback
-		);
-	}
-
-	private static boolean readFiles(
-			@NotNull String gtfsDir,
-			@NotNull List<String> fileNames,
-			boolean fileRequired,
-			@NotNull LineProcessor lineProcessor,
-			@Nullable OnColumnNamesFound onColumnNamesFoundCallback
-	) {
-		final File gtfsFile = FileUtils.findFileCaseInsensitive(gtfsDir, fileNames);
-		if (gtfsFile == null || !gtfsFile.exists()) {
-			if (fileRequired) {
-				throw new MTLog.Fatal("'%s' file does not exist!", fileNames);
-			} else {
-				MTLog.log("Reading file(s) '%s'... SKIP (non-existing).", fileNames);
-				return false;
-			}
-		}
-		try (BufferedReader br = Files.newBufferedReader(gtfsFile.toPath())) {
-			readCsv(gtfsFile.getName(), br, lineProcessor, onColumnNamesFoundCallback);
-		} catch (IOException ioe) {
-			throw new MTLog.Fatal(ioe, "I/O Error while reading GTFS file %s!", gtfsFile);
-		}
-		return true;
-	}
-
-	private static final CSVFormat CSV_FORMAT = CSVFormat.RFC4180.builder()
-			.setIgnoreSurroundingSpaces(true)
-			.get();
-
-	private static final CSVFormat CSV_FORMAT_NO_QUOTE = CSV_FORMAT.builder()
-			.setQuote(null)
-			.get();
-
-	private static final Pattern QUOTE_ = Pattern.compile("\"");
-
-	@SuppressWarnings("unused")
-	private static void readCsv(String filename, BufferedReader reader, LineProcessor lineProcessor) throws IOException {
-		readCsv(filename, reader, lineProcessor, null);
+	private static void readCsv(@Nullable GCsvReader reader, @NotNull LineProcessor lineProcessor) {
+		readCsv(reader, lineProcessor, null);
 	}
 
-	@SuppressWarnings("resource")
 	private static void readCsv(
-			String filename,
-			BufferedReader reader,
+			@Nullable GCsvReader reader,
 			LineProcessor lineProcessor,
 			@Nullable OnColumnNamesFound onColumnNamesFoundCallback
-	) throws IOException {
+	) {
+		if (reader == null) return; // optional file not found
+		final String filename = reader.getFileName();
 		MTLog.log("Reading file '%s'...", filename);
-		String line;
-		String[] columnNames;
-		line = reader.readLine();
-		if (line == null || line.isEmpty()) return;
-		if (line.charAt(0) == '\uFEFF') { // remove 1st empty char
-			MTLog.log("Reading file '%s'... > remove 1st empty car", filename);
-			line = String.copyValueOf(line.toCharArray(), 1, line.length() - 1);
-		}
-		CSVRecord lineRecordColumns = CSVParser.parse(line, CSV_FORMAT).getRecords().get(0);
-		columnNames = new String[lineRecordColumns.size()];
-		for (int i = 0; i < lineRecordColumns.size(); i++) {
-			columnNames[i] = lineRecordColumns.get(i);
-		}
+		final List<String> columnNames = reader.getColumnNames();
+		if (columnNames.isEmpty()) return;
 		if (onColumnNamesFoundCallback != null) {
-			onColumnNamesFoundCallback.processColumnNames(Arrays.asList(columnNames));
+			onColumnNamesFoundCallback.processColumnNames(columnNames);
 		}
-		if (columnNames.length == 0) return;
-		List<CSVRecord> lineRecords;
-		final HashMap<String, String> map = new HashMap<>();
+		final GCsvRow row = new GCsvRow(reader, columnNames);
 		int l = 0;
-		boolean withQuotes;
 		int warningCount = 0;
-		while ((line = reader.readLine()) != null) {
+		while (reader.nextRow()) {
 			try {
-				try {
-					lineRecords = CSVParser.parse(line, CSV_FORMAT).getRecords();
-					withQuotes = true;
-				} catch (Exception e) {
-					lineRecords = CSVParser.parse(line, CSV_FORMAT_NO_QUOTE).getRecords();
-					withQuotes = false;
-				}
-				if (lineRecords.isEmpty()) continue; // empty line
-				lineRecordColumns = lineRecords.get(0);
-				// recordColumnsSize = lineRecordColumns.size();
-				if (lineRecordColumns.size() > columnNames.length) {
+				final int fieldCount = reader.getFieldCount();
+				if (fieldCount > columnNames.size()) {
 					if (warningCount < 10) {
-						MTLog.log("File '%s' line contains MORE columns (%s:%s) than expected (%s:%s)!", filename, lineRecordColumns.size(), line, columnNames.length, Arrays.asList(columnNames));
+						MTLog.log("File '%s' line contains MORE columns (%s:%s) than expected (%s:%s)!", filename, fieldCount, reader.lineToString(), columnNames.size(), columnNames);
 						warningCount++;
 					}
-				} else if (lineRecordColumns.size() < columnNames.length) {
+				} else if (fieldCount < columnNames.size()) {
 					if (warningCount < 10) {
-						MTLog.log("File '%s' line contains LESS columns (%s:%s) than expected (%s:%s)!", filename, lineRecordColumns.size(), line, columnNames.length, Arrays.asList(columnNames));
+						MTLog.log("File '%s' line contains LESS columns (%s:%s) than expected (%s:%s)!", filename, fieldCount, reader.lineToString(), columnNames.size(), columnNames);
 						warningCount++;
 					}
 				}
-				map.clear();
-				for (int i = 0; i < columnNames.length; i++) {
-					String lineColumn = i < lineRecordColumns.size() ? lineRecordColumns.get(i) : EMPTY;
-					lineColumn = withQuotes ?
-							lineColumn :
-							QUOTE_.matcher(lineColumn).replaceAll(EMPTY);
-					map.put(columnNames[i], lineColumn);
-				}
 				if (lineProcessor != null) {
-					lineProcessor.processLine(map);
+					lineProcessor.processLine(row);
 				}
 			} catch (Exception e) {
-				throw new MTLog.Fatal(e, "Error while processing line: [%s],", line);
+				throw new MTLog.Fatal(e, "Error while processing line: [%s],", reader.lineToString());
 			}
 			if (l++ % 10_000 == 0) { // LOG
 				MTLog.logPOINT(); // LOG
@@ -339,66 +265,244 @@ public class GReader {
 		MTLog.log("Reading file '%s' (lines: %s)... DONE", filename, l);
 	}
 
+	private interface StopTimesReader {
+		void read();
+	}
+
+	/**
+	 * @param ingestSnapshot snapshot to save (after reading) or {@code null}
+	 */
+	private static void readStopTimes(GAgencyTools agencyTools, @Nullable GIngestSnapshot ingestSnapshot, StopTimesReader stopTimesReader) {
+		GTFSDataBase.setAutoCommit(false);
+		stopTimesInsertPrepared = USE_PREPARED_STATEMENT && !DefaultAgencyTools.OFF_HEAP_STOP_TIMES ? GTFSDataBase.prepareInsertStopTime(agencyTools.allowDuplicateKeyError()) : null;
+		stopTimesUncommittedCount = 0;
+		stopTimesSnapshotWriter = ingestSnapshot == null ? null : ingestSnapshot.newWriter();
+		stopTimesReader.read();
+		if (!agencyTools.stopTimesHasPickupTypeNotRegular()) {
+			agencyTools.setForceStopTimeLastNoPickupType(true); // all provided pickup type are REGULAR == not provided
+		}
+		if (!agencyTools.stopTimesHasDropOffTypeNotRegular()) {
+			agencyTools.setForceStopTimeFirstNoDropOffType(true); // all provided drop-off type are REGULAR == not provided
+		}
+		if (stopTimesInsertPrepared != null) {
+			GTFSDataBase.executePreparedStatement(stopTimesInsertPrepared);
+			stopTimesInsertPrepared = null;
+		}
+		GTFSDataBase.commit();
+		GTFSDataBase.setAutoCommit(true); // true => commit()
+		if (stopTimesSnapshotWriter != null) {
+			stopTimesSnapshotWriter.commit(stopTimesOriginalStopIds, agencyTools);
+			stopTimesSnapshotWriter = null;
+		}
+	}
+
+	/**
+	 * Same stop times, stop IDs, agency flags & forgotten original IDs as reading the same inputs (before saving the snapshot).
+	 */
+	private static void restoreStopTimes(
+			@NotNull GIngestSnapshot ingestSnapshot,
+			GAgencyTools agencyTools,
+			GSpec gSpec
+	) {
+		stopTimesOriginalStopIds.addAll(ingestSnapshot.restore(agencyTools, gStopTime ->
+				addStopTime(agencyTools, gSpec, gStopTime)
+		));
+	}
+
+	/**
+	 * Chunks parsed in parallel, then processed in file order on this thread (single writer): same result as {@link #readCsv}.
+	 */
+	private static void readStopTimesParallel(
+			@NotNull GFeedSource source,
+			@Nullable String fileName,
+			GAgencyTools agencyTools,
+			GSpec gSpec,
+			boolean skipDataCleanup,
+			@NotNull OnColumnNamesFound onColumnNamesFoundCallback
+	) {
+		if (fileName == null) return; // optional file not found
+		MTLog.log("Reading file '%s' (parallel: %d)...", fileName, agencyTools.getThreadPoolSize());
+		final ForkJoinPool pool = new ForkJoinPool(Math.max(1, agencyTools.getThreadPoolSize()));
+		int l = 0;
+		try (GStopTimesParallelReader reader = new GStopTimesParallelReader(fileName, source.openInputStream(fileName), pool, tripOriginalIds)) {
+			final List<String> columnNames = reader.getColumnNames();
+			if (columnNames.isEmpty()) return;
+			onColumnNamesFoundCallback.processColumnNames(columnNames);
+			int warningCount = 0;
+			GStopTimesParallelReader.Chunk chunk;
+			while ((chunk = reader.nextChunk()) != null) {
+				for (String warning : chunk.getWarnings()) {
+					if (warningCount < 10) {
+						MTLog.log("%s", warning);
+						warningCount++;
+					}
+				}
+				for (GStopTimesParallelReader.Row row : chunk.getRows()) {
+					try {
+						final GStopTime gStopTime = row.toGStopTime(skipDataCleanup ? null : agencyTools);
+						processStopTime(agencyTools, gSpec, gStopTime, row.getOriginalTripId(), row.getOriginalStopId(), row.getTripOriginalIdFound());
+					} catch (Exception e) {
+						throw new MTLog.Fatal(e, "Error while processing line: [%s],", row);
+					}
+					if (l++ % 10_000 == 0) { // LOG
+						MTLog.logPOINT(); // LOG
+					} // LOG
+					if (l % 100_000 == 0) { // LOG
+						MTLog.log("Reading file '%s' (lines: %s)...", fileName, l); // LOG
+					} // LOG
+				}
+				if (chunk.getFailure() != null) {
+					throw new MTLog.Fatal(chunk.getFailure(), "Error while processing line: [%s],", chunk.getFailureLine());
+				}
+			}
+		} catch (Exception e) {
+			throw new MTLog.Fatal(e, "I/O Error while reading GTFS file %s (%s)!", fileName, source.getPath());
+		} finally {
+			pool.shutdownNow();
+		}
+		MTLog.log("Reading file '%s' (lines: %s)... DONE", fileName, l);
+	}
+
+	/**
+	 * Original (NOT cleaned) IDs columns indexes, resolved once per file (cached by the row).
+	 */
+	private static final class OriginalIdColumns {
+
+		@NotNull
+		static OriginalIdColumns of(@NotNull GCsvRow line) {
+			return line.getColumns(OriginalIdColumns.class, OriginalIdColumns::new);
+		}
+
+		final int tripId;
+		final int stopId;
+		final int serviceId;
+		final int routeId;
+		final int locationType;
+
+		private OriginalIdColumns(@NotNull GCsvRow line) {
+			this.tripId = line.getColumnIndex(GTrip.TRIP_ID);
+			this.stopId = line.getColumnIndex(GStop.STOP_ID);
+			this.serviceId = line.getColumnIndex(GTrip.SERVICE_ID);
+			this.routeId = line.getColumnIndex(GRoute.ROUTE_ID);
+			this.locationType = line.getColumnIndex(GStop.LOCATION_TYPE);
+		}
+	}
+
 	private static void processStopTime(
 			GAgencyTools agencyTools,
 			GSpec gSpec,
-			HashMap<String, String> line,
-			@Nullable PreparedStatement insertStopTimePrepared,
+			GCsvRow line,
 			boolean skipDataCleanup
 	) {
 		try {
 			final GStopTime gStopTime = skipDataCleanup ? GStopTime.fromLine(line) : GStopTime.fromLine(line, agencyTools);
-			if (agencyTools.excludeTripNullable(gSpec.getTrip(gStopTime.getTripIdInt()))) {
-				// logExclude("Exclude stop time (!trip): %s.", line.get(GStopTime.TRIP_ID));
-				agencyTools.forgetOriginalStopId(line.get(GStopTime.STOP_ID));
-				agencyTools.forgetOriginalTripId(line.get(GStopTime.TRIP_ID));
-				return;
-			}
-			if (!tripOriginalIds.contains(line.get(GStopTime.TRIP_ID))) {
-				// logExclude("Exclude stop time (!trip ID): %s.", line.get(GStopTime.TRIP_ID));
-				agencyTools.forgetOriginalStopId(line.get(GStopTime.STOP_ID));
-				agencyTools.forgetOriginalTripId(line.get(GStopTime.TRIP_ID));
-				return;
-			}
-			//noinspection PointlessBooleanExpression STOP not parsed yet
-			if (false && agencyTools.excludeStopNullable(gSpec.getStop(gStopTime.getStopIdInt()))) {
-				// logExclude("Exclude stop time (!stop): %s.", line.get(GStopTime.STOP_ID));
-				agencyTools.forgetOriginalStopId(line.get(GStopTime.STOP_ID));
-				agencyTools.forgetOriginalTripId(line.get(GStopTime.TRIP_ID));
-				return;
-			}
-			if (gStopTime.getPickupType() != GPickupType.REGULAR) {
-				agencyTools.setStopTimesHasPickupTypeNotRegular(true);
-			}
-			if (gStopTime.getDropOffType() != GDropOffType.REGULAR) {
-				agencyTools.setStopTimesHasDropOffTypeNotRegular(true);
-			}
-			if (agencyTools.excludeStopTime(gStopTime)) {
-				// logExclude("Exclude stop time (agency): %s.", gStopTime.toStringPlus(false));
-				agencyTools.forgetOriginalStopId(line.get(GStopTime.STOP_ID));
-				agencyTools.forgetOriginalTripId(line.get(GStopTime.TRIP_ID));
-				return;
-			}
-			if (insertStopTimePrepared != null) {
-				gSpec.addStopTime(gStopTime, insertStopTimePrepared);
-			} else {
-				gSpec.addStopTime(gStopTime, false);
-			}
-			stopTimesOriginalStopIds.add(line.get(GStopTime.STOP_ID)); // stops AFTER stop times
+			final OriginalIdColumns c = OriginalIdColumns.of(line);
+			final String originalTripId = line.get(c.tripId);
+			processStopTime(agencyTools, gSpec, gStopTime, originalTripId, line.get(c.stopId), tripOriginalIds.contains(originalTripId));
 		} catch (Exception e) {
 			throw new MTLog.Fatal(e, "Error while parsing: '%s'!", line);
 		}
 	}
 
+	private static void processStopTime(
+			GAgencyTools agencyTools,
+			GSpec gSpec,
+			GStopTime gStopTime,
+			String originalTripId,
+			String originalStopId,
+			boolean tripOriginalIdFound
+	) {
+		if (!tripOriginalIdFound) { // 1st: cheap & already checked in parallel (if enabled)
+			// logExclude("Exclude stop time (!trip ID): %s.", originalTripId);
+			forgetOriginalIds(agencyTools, originalTripId, originalStopId);
+			return;
+		}
+		if (excludeTrip(agencyTools, gSpec, gStopTime.getTripIdInt())) {
+			// logExclude("Exclude stop time (!trip): %s.", originalTripId);
+			forgetOriginalIds(agencyTools, originalTripId, originalStopId);
+			return;
+		}
+		//noinspection PointlessBooleanExpression STOP not parsed yet
+		if (false && agencyTools.excludeStopNullable(gSpec.getStop(gStopTime.getStopIdInt()))) {
+			// logExclude("Exclude stop time (!stop): %s.", originalStopId);
+			forgetOriginalIds(agencyTools, originalTripId, originalStopId);
+			return;
+		}
+		if (gStopTime.getPickupType() != GPickupType.REGULAR) {
+			agencyTools.setStopTimesHasPickupTypeNotRegular(true);
+		}
+		if (gStopTime.getDropOffType() != GDropOffType.REGULAR) {
+			agencyTools.setStopTimesHasDropOffTypeNotRegular(true);
+		}
+		if (agencyTools.excludeStopTime(gStopTime)) {
+			// logExclude("Exclude stop time (agency): %s.", gStopTime.toStringPlus(false));
+			forgetOriginalIds(agencyTools, originalTripId, originalStopId);
+			return;
+		}
+		addStopTime(agencyTools, gSpec, gStopTime);
+		stopTimesOriginalStopIds.add(originalStopId); // stops AFTER stop times
+		if (stopTimesSnapshotWriter != null) {
+			stopTimesSnapshotWriter.addStopTime(gStopTime, originalTripId, originalStopId);
+		}
+	}
+
+	private static void addStopTime(GAgencyTools agencyTools, GSpec gSpec, GStopTime gStopTime) {
+		if (stopTimesInsertPrepared != null) {
+			gSpec.addStopTime(gStopTime, stopTimesInsertPrepared);
+		} else {
+			gSpec.addStopTime(gStopTime, agencyTools.allowDuplicateKeyError());
+		}
+		if (++stopTimesUncommittedCount >= STOP_TIMES_COMMIT_SIZE) {
+			stopTimesUncommittedCount = 0;
+			commitStopTimesAndSpillIfNeeded(agencyTools);
+		}
+	}
+
+	/**
+	 * Commit stop times read so far, then check DB memory budget (NOT only once all GTFS files read).
+	 */
+	private static void commitStopTimesAndSpillIfNeeded(GAgencyTools agencyTools) {
+		if (stopTimesInsertPrepared != null) {
+			GTFSDataBase.executePreparedStatement(stopTimesInsertPrepared);
+		}
+		GTFSDataBase.setAutoCommit(true); // true => commit()
+		if (GTFSDataBase.spillToFileIfNeeded() && stopTimesInsertPrepared != null) { // new connection
+			stopTimesInsertPrepared = GTFSDataBase.prepareInsertStopTime(agencyTools.allowDuplicateKeyError());
+		}
+		GTFSDataBase.setAutoCommit(false);
+	}
+
+	/**
+	 * Excluded stop time original IDs (also saved to the snapshot: restored without reading stop times).
+	 */
+	private static void forgetOriginalIds(GAgencyTools agencyTools, String originalTripId, String originalStopId) {
+		agencyTools.forgetOriginalStopId(originalStopId);
+		agencyTools.forgetOriginalTripId(originalTripId);
+		if (stopTimesSnapshotWriter != null) {
+			stopTimesSnapshotWriter.forgetOriginalIds(originalTripId, originalStopId);
+		}
+	}
+
+	/**
+	 * @return same as {@code agencyTools.excludeTripNullable(gSpec.getTrip(tripIdInt))} (verdict computed while reading trips)
+	 */
+	private static boolean excludeTrip(GAgencyTools agencyTools, GSpec gSpec, int tripIdInt) {
+		final Boolean excluded = gSpec.getTripIndex().isExcluded(tripIdInt);
+		if (excluded != null) {
+			return excluded;
+		}
+		return agencyTools.excludeTripNullable(gSpec.getTrip(tripIdInt));
+	}
+
 	private static void processFrequency(
 			GAgencyTools agencyTools,
 			GSpec gSpec,
-			HashMap<String, String> line,
+			GCsvRow line,
 			boolean skipDataCleanup) {
 		try {
 			final GFrequency gFrequency = skipDataCleanup ? GFrequency.fromLine(line) : GFrequency.fromLine(line, agencyTools);
-			if (agencyTools.excludeTripNullable(gSpec.getTrip(gFrequency.getTripIdInt()))) {
-				agencyTools.forgetOriginalTripId(line.get(GFrequency.TRIP_ID));
+			if (excludeTrip(agencyTools, gSpec, gFrequency.getTripIdInt())) {
+				agencyTools.forgetOriginalTripId(line.get(OriginalIdColumns.of(line).tripId));
 				return;
 			}
 			gSpec.addFrequency(gFrequency);
@@ -407,7 +511,7 @@ public class GReader {
 		}
 	}
 
-	private static void processAgency(GAgencyTools agencyTools, GSpec gSpec, HashMap<String, String> line) {
+	private static void processAgency(GAgencyTools agencyTools, GSpec gSpec, GCsvRow line) {
 		try {
 			final GAgency gAgency = GAgency.fromLine(line);
 			if (agencyTools.excludeAgency(gAgency)) {
@@ -431,7 +535,7 @@ public class GReader {
 			DateUtils.getEndOfYear(DateUtils.addYears(new Date(), 3)) // 3 years // else local DB slow to deploy
 	));
 
-	private static void processCalendarDate(GAgencyTools agencyTools, GSpec gSpec, HashMap<String, String> line) {
+	private static void processCalendarDate(GAgencyTools agencyTools, GSpec gSpec, GCsvRow line) {
 		try {
 			final GCalendarDate gCalendarDate = GCalendarDate.fromLine(line);
 			if (gCalendarDate == null) {
@@ -448,27 +552,27 @@ public class GReader {
 			if (agencyTools.excludeCalendarDate(gCalendarDate)) {
 				return;
 			}
-			serviceOriginalIds.add(line.get(GCalendarDate.SERVICE_ID));
+			serviceOriginalIds.add(line.get(OriginalIdColumns.of(line).serviceId));
 			gSpec.addCalendarDate(gCalendarDate);
 		} catch (Exception e) {
 			throw new MTLog.Fatal(e, "Error while processing calendar date: '%s'!", line);
 		}
 	}
 
-	private static void processCalendar(GAgencyTools agencyTools, GSpec gSpec, HashMap<String, String> line) {
+	private static void processCalendar(GAgencyTools agencyTools, GSpec gSpec, GCsvRow line) {
 		try {
 			final GCalendar gCalendar = GCalendar.fromLine(line, new IntRange(MIN_CALENDAR_DATE, MAX_CALENDAR_DATE));
 			if (agencyTools.excludeCalendar(gCalendar)) {
 				return;
 			}
-			serviceOriginalIds.add(line.get(GCalendar.SERVICE_ID));
+			serviceOriginalIds.add(line.get(OriginalIdColumns.of(line).serviceId));
 			gSpec.addCalendar(gCalendar);
 		} catch (Exception e) {
 			throw new MTLog.Fatal(e, "Error while processing calendar: %s!", line);
 		}
 	}
 
-	private static void processDirection(GAgencyTools agencyTools, GSpec gSpec, HashMap<String, String> line, boolean skipDataCleanup) {
+	private static void processDirection(GAgencyTools agencyTools, GSpec gSpec, GCsvRow line, boolean skipDataCleanup) {
 		try {
 			final GDirection gDirection = skipDataCleanup ? GDirection.fromLine(line) : GDirection.fromLine(line, agencyTools);
 			final GRoute gRoute = gSpec.getRoute(gDirection.getRouteIdInt());
@@ -492,29 +596,32 @@ public class GReader {
 	private static void processTrip(
 			GAgencyTools agencyTools,
 			GSpec gSpec,
-			HashMap<String, String> line,
+			GCsvRow line,
 			@Nullable PreparedStatement insertStopTimePrepared,
 			boolean skipDataCleanup
 	) {
 		try {
 			final GTrip gTrip = skipDataCleanup ? GTrip.fromLine(line) : GTrip.fromLine(line, agencyTools);
+			final OriginalIdColumns c = OriginalIdColumns.of(line);
+			final String originalTripId = line.get(c.tripId);
 			if (agencyTools.excludeTrip(gTrip)) {
 				//noinspection DiscouragedApi
-				logExclude("Exclude trip: %s.", line.get(GTrip.TRIP_ID));
-				agencyTools.forgetOriginalTripId(line.get(GTrip.TRIP_ID));
+				logExclude("Exclude trip: %s.", originalTripId);
+				agencyTools.forgetOriginalTripId(originalTripId);
 				return;
 			}
-			if (!serviceOriginalIds.contains(line.get(GTrip.SERVICE_ID))) {
+			final String originalServiceId = line.get(c.serviceId);
+			if (!serviceOriginalIds.contains(originalServiceId)) {
 				//noinspection DiscouragedApi
-				logExclude("Exclude trip (!service): %s.", line.get(GTrip.SERVICE_ID));
-				agencyTools.forgetOriginalTripId(line.get(GTrip.TRIP_ID));
+				logExclude("Exclude trip (!service): %s.", originalServiceId);
+				agencyTools.forgetOriginalTripId(originalTripId);
 				return;
 			}
 			//noinspection PointlessBooleanExpression route parse after trips
 			if (false && agencyTools.excludeRouteNullable(gSpec.getRoute(gTrip.getRouteIdInt()))) {
 				//noinspection DiscouragedApi
-				logExclude("Exclude trip (!route): %s.", line.get(GTrip.TRIP_ID));
-				agencyTools.forgetOriginalTripId(line.get(GTrip.TRIP_ID));
+				logExclude("Exclude trip (!route): %s.", originalTripId);
+				agencyTools.forgetOriginalTripId(originalTripId);
 				return;
 			}
 			if (StringUtils.isEmpty(gTrip.getTripHeadsign())) {
@@ -525,36 +632,39 @@ public class GReader {
 				gTrip.setTripHeadsign(agencyTools.provideMissingTripHeadSign(gTrip));
 			}
 			gSpec.addTrip(gTrip, insertStopTimePrepared);
-			tripOriginalIds.add(line.get(GTrip.TRIP_ID)); // trips BEFORE stop times
+			gSpec.getTripIndex().setExcluded(gTrip.getTripIdInt(), false); // kept: agency exclusion already evaluated above (trips NOT updated before stop times)
+			tripOriginalIds.add(originalTripId); // trips BEFORE stop times
 		} catch (Exception e) {
 			throw new MTLog.Fatal(e, "Error while processing trip: %s", line);
 		}
 	}
 
-	private static void processStop(GAgencyTools agencyTools, GSpec gSpec, Map<String, String> line, boolean skipDataCleanup) {
+	private static void processStop(GAgencyTools agencyTools, GSpec gSpec, GCsvRow line, boolean skipDataCleanup) {
 		try {
-			final GLocationType stopLocationType = GLocationType.parse(line.get(GStop.LOCATION_TYPE));
+			final OriginalIdColumns c = OriginalIdColumns.of(line);
+			final GLocationType stopLocationType = GLocationType.parse(line.get(c.locationType));
 			if (stopLocationType == GLocationType.GENERIC_NODE) {
 				MTLog.log("Generic node stop ignored (%s).", line); // not lat/lng?
 				return;
 			}
 			final GStop gStop = skipDataCleanup ? GStop.fromLine(line) : GStop.fromLine(line, agencyTools);
+			final String originalStopId = line.get(c.stopId);
 			if (agencyTools.excludeStop(gStop)) {
 				//noinspection DiscouragedApi
-				logExclude("Exclude stop: %s.", line.get(GStop.STOP_ID));
-				agencyTools.forgetOriginalStopId(line.get(GStop.STOP_ID));
+				logExclude("Exclude stop: %s.", originalStopId);
+				agencyTools.forgetOriginalStopId(originalStopId);
 				return;
 			}
-			if (!stopTimesOriginalStopIds.contains(line.get(GStop.STOP_ID))) {
+			if (!stopTimesOriginalStopIds.contains(originalStopId)) {
 				//noinspection DiscouragedApi
-				logExclude("Exclude stop (!stop times): %s.", line.get(GStop.STOP_ID));
-				agencyTools.forgetOriginalStopId(line.get(GStop.STOP_ID));
+				logExclude("Exclude stop (!stop times): %s.", originalStopId);
+				agencyTools.forgetOriginalStopId(originalStopId);
 				return;
 			}
 			if (agencyTools.getStopIdCleanupRegex() != null) { // IF stop ID cleanup regex set DO
 				final GStop previousStop = gSpec.getStop(gStop.getStopIdInt());
 				if (previousStop != null && previousStop.equals(gStop)) {
-					agencyTools.forgetOriginalStopId(line.get(GStop.STOP_ID));
+					agencyTools.forgetOriginalStopId(originalStopId);
 					return; // ignore if stop already exists with same values
 				}
 				if (previousStop != null && previousStop.equalsExceptMergeable(gStop)) {
@@ -574,13 +684,13 @@ public class GReader {
 		}
 	}
 
-	private static void processRoute(GAgencyTools agencyTools, GSpec gSpec, HashMap<String, String> line, @Nullable String defaultAgencyId, boolean skipDataCleanup) {
+	private static void processRoute(GAgencyTools agencyTools, GSpec gSpec, GCsvRow line, @Nullable String defaultAgencyId, boolean skipDataCleanup) {
 		try {
 			final GRoute gRoute = skipDataCleanup ? GRoute.fromLine(line, defaultAgencyId) : GRoute.fromLine(line, defaultAgencyId, agencyTools);
 			final GAgency routeAgency = gSpec.getAgency(gRoute.getAgencyIdInt());
 			if (agencyTools.excludeRoute(gRoute)) {
 				//noinspection DiscouragedApi
-				logExclude("Exclude route: %s.", line.get(GRoute.ROUTE_ID));
+				logExclude("Exclude route: %s.", line.get(OriginalIdColumns.of(line).routeId));
 				if ((gRoute.hasAgencyId() && routeAgency != null)
 						|| (!gRoute.hasAgencyId() && routeAgency == null)) {
 					gSpec.addOtherRoute(gRoute);
@@ -590,7 +700,7 @@ public class GReader {
 			if (gRoute.hasAgencyId()
 					&& agencyTools.excludeAgencyNullable(routeAgency)) {
 				//noinspection DiscouragedApi
-				logExclude("Exclude route (!agency): %s.", line.get(GRoute.ROUTE_ID));
+				logExclude("Exclude route (!agency): %s.", line.get(OriginalIdColumns.of(line).routeId));
 				if ((gRoute.hasAgencyId() && routeAgency != null)
 						|| (!gRoute.hasAgencyId() && routeAgency == null)) {
 					gSpec.addOtherRoute(gRoute);
@@ -599,7 +709,7 @@ public class GReader {
 			}
 			if (!gSpec.hasTripsOriginalRouteId(gRoute.getOriginalRouteIdInt())) {
 				//noinspection DiscouragedApi
-				logExclude("Exclude original route (!trips): %s.", line.get(GRoute.ROUTE_ID));
+				logExclude("Exclude original route (!trips): %s.", line.get(OriginalIdColumns.of(line).routeId));
 				return;
 			}
 			if (agencyTools.getRouteIdCleanupRegex() != null) { // IF route ID cleanup regex set DO
@@ -637,7 +747,7 @@ public class GReader {
 	}
 
 	private interface LineProcessor {
-		void processLine(HashMap<String, String> line);
+		void processLine(GCsvRow line);
 	}
 
 	private interface OnColumnNamesFound {
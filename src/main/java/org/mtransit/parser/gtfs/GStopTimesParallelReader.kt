@@ -0,0 +1,195 @@
+package org.mtransit.parser.gtfs
+
+import org.mtransit.parser.gtfs.data.GDropOffType
+import org.mtransit.parser.gtfs.data.GIDs
+import org.mtransit.parser.gtfs.data.GPickupType
+import org.mtransit.parser.gtfs.data.GStopTime
+import org.mtransit.parser.gtfs.data.GTime
+import org.mtransit.parser.gtfs.data.GTimePoint
+import java.io.CharArrayReader
+import java.io.Closeable
+import java.io.InputStream
+import java.io.Reader
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.Callable
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.ForkJoinTask
+
+/**
+ * Parses `stop_times.txt` in chunks of lines ([GCsvChunkSplitter]) on a fork-join pool.
+ *
+ * Each chunk is decoded, tokenized & converted in parallel, including the trip original ID filter (read-only set).
+ * Anything NOT thread-safe ([GIDs], agency tools, GTFS DB) is left to the single writer thread ([Row.toGStopTime]),
+ * which receives the chunks in file order: same calls in the same order as the sequential reading.
+ */
+class GStopTimesParallelReader @JvmOverloads constructor(
+    val fileName: String,
+    input: InputStream,
+    private val pool: ForkJoinPool,
+    private val tripOriginalIds: Set<String>,
+    chunkSize: Int = GCsvChunkSplitter.DEFAULT_CHUNK_SIZE,
+) : Closeable {
+
+    companion object {
+        private const val MAX_WARNINGS_PER_CHUNK = 10
+    }
+
+    class Row(
+        val originalTripId: String, // NOT trimmed
+        val originalStopId: String, // NOT trimmed
+        val arrivalTime: Int,
+        val departureTime: Int,
+        val stopSequence: Int,
+        val stopHeadsign: String?,
+        val pickupType: GPickupType,
+        val dropOffType: GDropOffType,
+        val timePoint: GTimePoint,
+        val tripOriginalIdFound: Boolean,
+    ) {
+
+        /**
+         * Same as [GStopTime.fromLine] (writer thread only).
+         */
+        fun toGStopTime(agencyTools: GAgencyTools?): GStopTime {
+            val tripId = originalTripId.trim().let { agencyTools?.cleanTripOriginalId(it) ?: it }
+            val stopId = originalStopId.trim().let { agencyTools?.cleanStopOriginalId(it) ?: it }
+            return GStopTime(
+                GIDs.getInt(tripId),
+                arrivalTime,
+                departureTime,
+                GIDs.getInt(stopId),
+                stopSequence,
+                stopHeadsign,
+                pickupType,
+                dropOffType,
+                timePoint,
+            )
+        }
+
+        override fun toString() = "{trip_id=$originalTripId, stop_id=$originalStopId, stop_sequence=$stopSequence}"
+    }
+
+    class Chunk {
+        val rows = ArrayList<Row>()
+
+        val warnings = ArrayList<String>()
+
+        /**
+         * Parsing stopped at the 1st invalid line (rows before it are valid)
+         */
+        var failure: Exception? = null
+            internal set
+
+        var failureLine: String? = null
+            internal set
+    }
+
+    private class Columns(row: GCsvRow) {
+        val tripId = row.getColumnIndex(GStopTime.TRIP_ID)
+        val arrivalTime = row.getColumnIndex(GStopTime.ARRIVAL_TIME)
+        val departureTime = row.getColumnIndex(GStopTime.DEPARTURE_TIME)
+        val stopId = row.getColumnIndex(GStopTime.STOP_ID)
+        val stopSequence = row.getColumnIndex(GStopTime.STOP_SEQUENCE)
+        val stopHeadsign = row.getColumnIndex(GStopTime.STOP_HEADSIGN)
+        val pickupType = row.getColumnIndex(GStopTime.PICKUP_TYPE)
+        val dropOffType = row.getColumnIndex(GStopTime.DROP_OFF_TYPE)
+        val timePoint = row.getColumnIndex(GStopTime.TIME_POINT)
+    }
+
+    private val splitter = GCsvChunkSplitter(input, chunkSize)
+
+    private val maxPendingChunks = pool.parallelism * 2
+
+    private val pendingChunks = ArrayDeque<ForkJoinTask<Chunk>>()
+
+    private var firstChunkTokenizer: GCsvTokenizer? = null
+
+    private var endOfFile = false
+
+    /**
+     * @return column names or empty if empty file
+     */
+    val columnNames: List<String> by lazy {
+        val tokenizer = splitter.nextChunk()?.let { GCsvTokenizer(decode(it)) } ?: return@lazy emptyList()
+        firstChunkTokenizer = tokenizer // rest of the 1st chunk
+        GCsvReader.readColumnNames(fileName, tokenizer)
+    }
+
+    /**
+     * @return next chunk (in file order) or `null` if end of file reached
+     */
+    fun nextChunk(): Chunk? {
+        if (columnNames.isEmpty()) return null // header 1st
+        firstChunkTokenizer?.let { tokenizer ->
+            firstChunkTokenizer = null
+            pendingChunks.addLast(pool.submit(Callable { parse(tokenizer) }))
+        }
+        while (!endOfFile && pendingChunks.size < maxPendingChunks) {
+            val bytes = splitter.nextChunk()
+            if (bytes == null) {
+                endOfFile = true
+                break
+            }
+            pendingChunks.addLast(pool.submit(Callable { parse(GCsvTokenizer(decode(bytes))) }))
+        }
+        return pendingChunks.removeFirstOrNull()?.join()
+    }
+
+    private fun decode(bytes: ByteBuffer): Reader {
+        val chars = StandardCharsets.UTF_8.newDecoder().decode(bytes) // strict, same as sequential reader
+        return CharArrayReader(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining())
+    }
+
+    private fun parse(tokenizer: GCsvTokenizer): Chunk {
+        val chunk = Chunk()
+        val row = GCsvRow(tokenizer, columnNames)
+        val c = Columns(row)
+        while (GCsvReader.nextRow(tokenizer)) {
+            try {
+                if (tokenizer.fieldCount != columnNames.size && chunk.warnings.size < MAX_WARNINGS_PER_CHUNK) {
+                    chunk.warnings.add(
+                        "File '%s' line contains %s columns (%s:%s) than expected (%s:%s)!".format(
+                            fileName,
+                            if (tokenizer.fieldCount > columnNames.size) "MORE" else "LESS",
+                            tokenizer.fieldCount, tokenizer.lineToString(),
+                            columnNames.size, columnNames
+                        )
+                    )
+                }
+                chunk.rows.add(parseRow(row, c))
+            } catch (e: Exception) {
+                chunk.failure = e
+                chunk.failureLine = tokenizer.lineToString()
+                break
+            }
+        }
+        return chunk
+    }
+
+    private fun parseRow(row: GCsvRow, c: Columns): Row {
+        val originalTripId = row[c.tripId] ?: throw IllegalArgumentException("Invalid GStopTime from $row!")
+        val arrivalTime = row[c.arrivalTime]?.trim() ?: throw IllegalArgumentException("Invalid GStopTime from $row!")
+        val departureTime = row[c.departureTime]?.trim() ?: throw IllegalArgumentException("Invalid GStopTime from $row!")
+        val originalStopId = row[c.stopId] ?: throw IllegalArgumentException("Invalid GStopTime from $row!")
+        val stopSequence = row.getInt(c.stopSequence) ?: throw IllegalArgumentException("Invalid GStopTime from $row!")
+        return Row(
+            originalTripId = originalTripId,
+            originalStopId = originalStopId,
+            arrivalTime = GTime.fromString(arrivalTime),
+            departureTime = GTime.fromString(departureTime),
+            stopSequence = stopSequence,
+            stopHeadsign = row.getOptionalString(c.stopHeadsign),
+            pickupType = GPickupType.parse(row[c.pickupType]),
+            dropOffType = GDropOffType.parse(row[c.dropOffType]),
+            timePoint = GTimePoint.parse(row[c.timePoint]),
+            tripOriginalIdFound = tripOriginalIds.contains(originalTripId),
+        )
+    }
+
+    override fun close() {
+        pendingChunks.forEach { it.cancel(true) }
+        pendingChunks.clear()
+        splitter.close()
+    }
+}
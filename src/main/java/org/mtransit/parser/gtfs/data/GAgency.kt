@@ -4,6 +4,7 @@ import androidx.annotation.Discouraged
 import org.mtransit.commons.gtfs.data.Agency
 import org.mtransit.commons.gtfs.data.AgencyId
 import org.mtransit.parser.MTLog
+import org.mtransit.parser.gtfs.GCsvRow
 
 // https://gtfs.org/schedule/reference/#agencytxt
 data class GAgency(
@@ -81,17 +82,31 @@ data class GAgency(
         private const val AGENCY_FARE_URL = "agency_fare_url" // Optional
         private const val AGENCY_EMAIL = "agency_email" // Optional
 
+        private class LineColumns(line: GCsvRow) {
+            val agencyId = line.getColumnIndex(AGENCY_ID)
+            val agencyName = line.getColumnIndex(AGENCY_NAME)
+            val agencyUrl = line.getColumnIndex(AGENCY_URL)
+            val agencyTimezone = line.getColumnIndex(AGENCY_TIMEZONE)
+            val agencyLang = line.getColumnIndex(AGENCY_LANG)
+            val agencyPhone = line.getColumnIndex(AGENCY_PHONE)
+            val agencyFareUrl = line.getColumnIndex(AGENCY_FARE_URL)
+            val agencyEmail = line.getColumnIndex(AGENCY_EMAIL)
+        }
+
         @JvmStatic
-        fun fromLine(line: Map<String, String>) = GAgency(
-            agencyId = line[AGENCY_ID].orEmpty(),
-            agencyName = line[AGENCY_NAME] ?: throw MTLog.Fatal("Invalid GAgency from $line!"),
-            agencyUrl = line[AGENCY_URL] ?: throw MTLog.Fatal("Invalid GAgency from $line!"),
-            agencyTimezone = line[AGENCY_TIMEZONE] ?: throw MTLog.Fatal("Invalid GAgency from $line!"),
-            agencyLang = line[AGENCY_LANG],
-            agencyPhone = line[AGENCY_PHONE],
-            agencyFareUrl = line[AGENCY_FARE_URL],
-            agencyEmail = line[AGENCY_EMAIL],
-        )
+        fun fromLine(line: GCsvRow): GAgency {
+            val c = line.getColumns(LineColumns::class.java, ::LineColumns)
+            return GAgency(
+                agencyId = line[c.agencyId].orEmpty(),
+                agencyName = line[c.agencyName] ?: throw MTLog.Fatal("Invalid GAgency from $line!"),
+                agencyUrl = line[c.agencyUrl] ?: throw MTLog.Fatal("Invalid GAgency from $line!"),
+                agencyTimezone = line[c.agencyTimezone] ?: throw MTLog.Fatal("Invalid GAgency from $line!"),
+                agencyLang = line[c.agencyLang],
+                agencyPhone = line[c.agencyPhone],
+                agencyFareUrl = line[c.agencyFareUrl],
+                agencyEmail = line[c.agencyEmail],
+            )
+        }
 
         @JvmStatic
         fun from(agencies: Collection<Agency>) = agencies.mapNotNull { from(it) }
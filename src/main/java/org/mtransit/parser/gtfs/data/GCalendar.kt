@@ -2,6 +2,7 @@ package org.mtransit.parser.gtfs.data
 
 import androidx.annotation.Discouraged
 import org.mtransit.parser.MTLog
+import org.mtransit.parser.gtfs.GCsvRow
 import java.util.Calendar
 import kotlin.math.max
 import kotlin.math.min
@@ -212,10 +213,24 @@ data class GCalendar(
 
         private const val DAY_TRUE = "1"
 
+        private class LineColumns(line: GCsvRow) {
+            val serviceId = line.getColumnIndex(SERVICE_ID)
+            val monday = line.getColumnIndex(MONDAY)
+            val tuesday = line.getColumnIndex(TUESDAY)
+            val wednesday = line.getColumnIndex(WEDNESDAY)
+            val thursday = line.getColumnIndex(THURSDAY)
+            val friday = line.getColumnIndex(FRIDAY)
+            val saturday = line.getColumnIndex(SATURDAY)
+            val sunday = line.getColumnIndex(SUNDAY)
+            val startDate = line.getColumnIndex(START_DATE)
+            val endDate = line.getColumnIndex(END_DATE)
+        }
+
         @JvmStatic
-        fun fromLine(line: Map<String, String>, dateRange: IntRange? = null): GCalendar {
-            var startDate = line[START_DATE]?.toInt() ?: throw MTLog.Fatal("Invalid GCalendar from $line!")
-            var endDate = line[END_DATE]?.toInt() ?: throw MTLog.Fatal("Invalid GCalendar from $line!")
+        fun fromLine(line: GCsvRow, dateRange: IntRange? = null): GCalendar {
+            val c = line.getColumns(LineColumns::class.java, ::LineColumns)
+            var startDate = line[c.startDate]?.toInt() ?: throw MTLog.Fatal("Invalid GCalendar from $line!")
+            var endDate = line[c.endDate]?.toInt() ?: throw MTLog.Fatal("Invalid GCalendar from $line!")
             dateRange?.let {
                 if (endDate < it.first) { // entirely before
                     // do nothing (TODO max duration?)
@@ -225,14 +240,14 @@ data class GCalendar(
                 }
             }
             return GCalendar(
-                serviceId = line[SERVICE_ID] ?: throw MTLog.Fatal("Invalid GCalendar from $line!"),
-                monday = DAY_TRUE == line[MONDAY],
-                tuesday = DAY_TRUE == line[TUESDAY],
-                wednesday = DAY_TRUE == line[WEDNESDAY],
-                thursday = DAY_TRUE == line[THURSDAY],
-                friday = DAY_TRUE == line[FRIDAY],
-                saturday = DAY_TRUE == line[SATURDAY],
-                sunday = DAY_TRUE == line[SUNDAY],
+                serviceId = line[c.serviceId] ?: throw MTLog.Fatal("Invalid GCalendar from $line!"),
+                monday = DAY_TRUE == line[c.monday],
+                tuesday = DAY_TRUE == line[c.tuesday],
+                wednesday = DAY_TRUE == line[c.wednesday],
+                thursday = DAY_TRUE == line[c.thursday],
+                friday = DAY_TRUE == line[c.friday],
+                saturday = DAY_TRUE == line[c.saturday],
+                sunday = DAY_TRUE == line[c.sunday],
                 startDate = startDate,
                 endDate = endDate,
             )
@@ -4,6 +4,7 @@ import androidx.annotation.Discouraged
 import org.mtransit.commons.gtfs.data.CalendarDate
 import org.mtransit.parser.MTLog
 import org.mtransit.parser.db.SQLUtils.escapeId
+import org.mtransit.parser.gtfs.GCsvRow
 import org.mtransit.parser.gtfs.data.GFieldTypes.isAfter
 import org.mtransit.parser.gtfs.data.GFieldTypes.isBefore
 import org.mtransit.parser.gtfs.data.GFieldTypes.isBetween
@@ -89,9 +90,16 @@ data class GCalendarDate(
         private const val DATE = "date"
         private const val EXCEPTION_DATE = "exception_type"
 
+        private class LineColumns(line: GCsvRow) {
+            val serviceId = line.getColumnIndex(SERVICE_ID)
+            val date = line.getColumnIndex(DATE)
+            val exceptionDate = line.getColumnIndex(EXCEPTION_DATE)
+        }
+
         @JvmStatic
-        fun fromLine(line: Map<String, String>) = line
-            .let { listOf(it[SERVICE_ID], it[DATE], it[EXCEPTION_DATE]) }
+        fun fromLine(line: GCsvRow) = line
+            .getColumns(LineColumns::class.java, ::LineColumns)
+            .let { c -> listOf(line[c.serviceId], line[c.date], line[c.exceptionDate]) }
             .takeUnless { (serviceId, date, exceptionDate) ->
                 serviceId.isNullOrBlank() && date.isNullOrBlank() && exceptionDate.isNullOrBlank()
             }?.let { (serviceId, date, exceptionDate) ->
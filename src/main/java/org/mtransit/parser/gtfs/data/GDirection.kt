@@ -5,6 +5,7 @@ import org.mtransit.commons.gtfs.data.Direction
 import org.mtransit.commons.gtfs.data.DirectionType
 import org.mtransit.parser.MTLog
 import org.mtransit.parser.gtfs.GAgencyTools
+import org.mtransit.parser.gtfs.GCsvRow
 
 data class GDirection(
     val routeIdInt: Int,
@@ -66,23 +67,37 @@ data class GDirection(
         private const val DIRECTION_NAME = "direction_name"
         private const val ROUTE_DIRECTION_NAME = "route_direction_name"
         private const val DIRECTION_LEGACY = "direction_legacy" // #STM
+
+        private class LineColumns(line: GCsvRow) {
+            val routeId = line.getColumnIndex(ROUTE_ID)
+            val directionId = line.getColumnIndex(DIRECTION_ID)
+            val direction = line.getColumnIndex(DIRECTION)
+            val directionDestination = line.getColumnIndex(DIRECTION_DESTINATION)
+            val destination = line.getColumnIndex(DESTINATION)
+            val directionName = line.getColumnIndex(DIRECTION_NAME)
+            val routeDirectionName = line.getColumnIndex(ROUTE_DIRECTION_NAME)
+            val directionLegacy = line.getColumnIndex(DIRECTION_LEGACY)
+        }
         // TODO other alternatives
 
         @JvmOverloads
         @JvmStatic
-        fun fromLine(line: Map<String, String>, agencyTools: GAgencyTools? = null) = GDirection(
-            routeId = line[ROUTE_ID]?.trim()
-                ?.let { agencyTools?.cleanRouteOriginalId(it) ?: it }
-                ?: throw MTLog.Fatal("Invalid GDirection from $line!"),
-            directionIdInt = line[DIRECTION_ID]?.toIntOrNull() ?: throw MTLog.Fatal("Invalid GDirection from $line!"),
-            directionTypeValue = line[DIRECTION]?.trim(),
-            destination = line[DESTINATION]?.trim()?.takeIf { it.isNotBlank() }
-                ?: line[DIRECTION_NAME]?.trim()?.takeIf { it.isNotBlank() }
-                ?: line[ROUTE_DIRECTION_NAME]?.trim()?.takeIf { it.isNotBlank() }
-                ?: line[DIRECTION_DESTINATION]?.trim()?.takeIf { it.isNotBlank() }
-                ?: line[DIRECTION_LEGACY]?.trim()?.takeIf { it.isNotBlank() }
-                ?: line[DIRECTION]?.trim()?.takeIf { it.isNotBlank() },
-        )
+        fun fromLine(line: GCsvRow, agencyTools: GAgencyTools? = null): GDirection {
+            val c = line.getColumns(LineColumns::class.java, ::LineColumns)
+            return GDirection(
+                routeId = line[c.routeId]?.trim()
+                    ?.let { agencyTools?.cleanRouteOriginalId(it) ?: it }
+                    ?: throw MTLog.Fatal("Invalid GDirection from $line!"),
+                directionIdInt = line[c.directionId]?.toIntOrNull() ?: throw MTLog.Fatal("Invalid GDirection from $line!"),
+                directionTypeValue = line[c.direction]?.trim(),
+                destination = line[c.destination]?.trim()?.takeIf { it.isNotBlank() }
+                    ?: line[c.directionName]?.trim()?.takeIf { it.isNotBlank() }
+                    ?: line[c.routeDirectionName]?.trim()?.takeIf { it.isNotBlank() }
+                    ?: line[c.directionDestination]?.trim()?.takeIf { it.isNotBlank() }
+                    ?: line[c.directionLegacy]?.trim()?.takeIf { it.isNotBlank() }
+                    ?: line[c.direction]?.trim()?.takeIf { it.isNotBlank() },
+            )
+        }
 
         @JvmStatic
         fun from(directions: Collection<Direction>) = directions.mapNotNull { from(it) }
@@ -4,6 +4,7 @@ import androidx.annotation.Discouraged
 import org.mtransit.commons.gtfs.data.Frequency
 import org.mtransit.parser.MTLog
 import org.mtransit.parser.gtfs.GAgencyTools
+import org.mtransit.parser.gtfs.GCsvRow
 import java.util.Date
 import java.util.concurrent.TimeUnit
 
@@ -82,6 +83,14 @@ data class GFrequency(
         private const val HEADWAY_SECS = "headway_secs"
         private const val EXACT_TIMES = "exact_times"
 
+        private class LineColumns(line: GCsvRow) {
+            val tripId = line.getColumnIndex(TRIP_ID)
+            val startTime = line.getColumnIndex(START_TIME)
+            val endTime = line.getColumnIndex(END_TIME)
+            val headwaySecs = line.getColumnIndex(HEADWAY_SECS)
+            val exactTimes = line.getColumnIndex(EXACT_TIMES)
+        }
+
         @Suppress("unused")
         val DEFAULT_PICKUP_TYPE = GPickupType.REGULAR // Regularly scheduled pickup
 
@@ -90,15 +99,18 @@ data class GFrequency(
 
         @JvmOverloads
         @JvmStatic
-        fun fromLine(line: Map<String, String>, agencyTools: GAgencyTools? = null) = GFrequency(
-            tripId = line[TRIP_ID]?.trim()
-                ?.let { agencyTools?.cleanTripOriginalId(it) ?: it }
-                ?: throw MTLog.Fatal("Invalid GFrequency from $line!"),
-            startTime = line[START_TIME] ?: throw MTLog.Fatal("Invalid GFrequency from $line!"),
-            endTime = line[END_TIME] ?: throw MTLog.Fatal("Invalid GFrequency from $line!"),
-            headwaySecs = line[HEADWAY_SECS]?.toInt() ?: throw MTLog.Fatal("Invalid GFrequency from $line!"),
-            exactTimes = line[EXACT_TIMES]?.toIntOrNull(),
-        )
+        fun fromLine(line: GCsvRow, agencyTools: GAgencyTools? = null): GFrequency {
+            val c = line.getColumns(LineColumns::class.java, ::LineColumns)
+            return GFrequency(
+                tripId = line[c.tripId]?.trim()
+                    ?.let { agencyTools?.cleanTripOriginalId(it) ?: it }
+                    ?: throw MTLog.Fatal("Invalid GFrequency from $line!"),
+                startTime = line[c.startTime] ?: throw MTLog.Fatal("Invalid GFrequency from $line!"),
+                endTime = line[c.endTime] ?: throw MTLog.Fatal("Invalid GFrequency from $line!"),
+                headwaySecs = line[c.headwaySecs]?.toInt() ?: throw MTLog.Fatal("Invalid GFrequency from $line!"),
+                exactTimes = line[c.exactTimes]?.toIntOrNull(),
+            )
+        }
 
         @JvmStatic
         fun from(frequencies: Collection<Frequency>) = frequencies.mapNotNull { from(it) }
@@ -1,7 +1,5 @@
 package org.mtransit.parser.gtfs.data
 
-import androidx.collection.SparseArrayCompat
-import androidx.collection.mutableScatterMapOf
 import org.mtransit.parser.Constants.EMPTY
 import org.mtransit.parser.MTLog
 
@@ -9,19 +7,18 @@ fun String.toGIDInt(): Int = GIDs.getInt(this)
 
 fun Int.toGIDString(): String = GIDs.getString(this)
 
+/**
+ * GTFS IDs (strings) <-> dense integers (0, 1, 2...).
+ *
+ * Thread-safe (route tasks): see [GStringDictionary].
+ */
 object GIDs {
 
-    private const val USE_HASHCODE = false // hashcode Collision is real
-    // "11667511__MCOB-DO:123:0:Weekday:2:23SEP:41054:12345".hashCode() == "11612895__MCOB-DO:123:0:Weekday:1:23SEP:31011:12345".hashCode()
-
-    private var increment = 0
-
-    private val intToString = SparseArrayCompat<String>()
-    private val stringToInt = mutableScatterMapOf<String, Int>()
+    private val dictionary = GStringDictionary()
 
     @JvmStatic
     fun getString(integer: Int): String {
-        return intToString[integer] ?: throw MTLog.Fatal("Unexpected GID integer $integer!")
+        return dictionary.getString(integer) ?: throw MTLog.Fatal("Unexpected GID integer $integer!")
     }
 
     @JvmStatic
@@ -31,10 +28,7 @@ object GIDs {
 
     @JvmStatic
     fun getInt(string: String): Int {
-        if (USE_HASHCODE) {
-            return add(string)
-        }
-        return stringToInt[string] ?: add(string)
+        return dictionary.getOrAdd(string)
     }
 
     @JvmStatic
@@ -42,26 +36,14 @@ object GIDs {
         return strings.map { getInt(it) }
     }
 
-    private fun add(newString: String): Int {
-        if (USE_HASHCODE) {
-            return newString.hashCode()
-                .also {
-                    intToString.put(it, newString)
-                }
-        }
-        val newInteger = increment
-        intToString.put(newInteger, newString)
-        stringToInt[newString] = newInteger
-        increment++ // ready for next call
-        return newInteger
+    @JvmStatic
+    fun count(): Int {
+        return dictionary.size
     }
 
     @JvmStatic
-    fun count(): Int {
-        if (USE_HASHCODE) {
-            return intToString.size()
-        }
-        return increment
+    fun sizeInBytes(): Long {
+        return dictionary.sizeInBytes
     }
 
     @Suppress("unused")
@@ -8,6 +8,7 @@ import org.mtransit.parser.ColorUtils
 import org.mtransit.parser.Constants.EMPTY
 import org.mtransit.parser.MTLog
 import org.mtransit.parser.gtfs.GAgencyTools
+import org.mtransit.parser.gtfs.GCsvRow
 import kotlin.math.max
 
 // https://gtfs.org/reference/static/#routestxt
@@ -171,30 +172,46 @@ data class GRoute(
         private const val ROUTE_TEXT_COLOR = "route_text_color"
         private const val ROUTE_SORT_ORDER = "route_sort_order"
 
+        private class LineColumns(line: GCsvRow) {
+            val agencyId = line.getColumnIndex(AGENCY_ID)
+            val routeId = line.getColumnIndex(ROUTE_ID)
+            val routeShortName = line.getColumnIndex(ROUTE_SHORT_NAME)
+            val routeLongName = line.getColumnIndex(ROUTE_LONG_NAME)
+            val routeDesc = line.getColumnIndex(ROUTE_DESC)
+            val routeType = line.getColumnIndex(ROUTE_TYPE)
+            val routeUrl = line.getColumnIndex(ROUTE_URL)
+            val routeColor = line.getColumnIndex(ROUTE_COLOR)
+            val routeTextColor = line.getColumnIndex(ROUTE_TEXT_COLOR)
+            val routeSortOrder = line.getColumnIndex(ROUTE_SORT_ORDER)
+        }
+
         @JvmOverloads
         @JvmStatic
-        fun fromLine(line: Map<String, String>, defaultAgencyId: String?, agencyTools: GAgencyTools? = null) = GRoute(
-            agencyId = line[AGENCY_ID]?.takeIf { it.isNotBlank() }
-                ?: defaultAgencyId
-                ?: throw MTLog.Fatal("Invalid GRoute.$AGENCY_ID from $line!"),
-            routeId = line[ROUTE_ID]?.trim()?.let { agencyTools?.cleanRouteOriginalId(it) ?: it }
-                ?: throw MTLog.Fatal("Invalid GRoute.$ROUTE_ID from $line!"),
-            originalRouteId = line[ROUTE_ID] ?: throw MTLog.Fatal("Invalid GRoute.$ROUTE_ID from $line!"),
-            routeShortName = line[ROUTE_SHORT_NAME]?.trim()
-                ?.let { rsn -> rsn.takeIf { it.isNotEmpty() }?.let { agencyTools?.cleanRouteShortName(it) } ?: rsn }
-                ?.takeUnless { agencyTools?.useRouteIdForRouteShortName() == true }
-                ?: line[ROUTE_ID]?.trim()?.let { agencyTools?.cleanRouteOriginalId(it) ?: it }
-                ?: EMPTY,
-            routeLongName = line[ROUTE_LONG_NAME],
-            routeDesc = line[ROUTE_DESC],
-            routeType = line[ROUTE_TYPE]?.toInt()
-                ?.let { routeType -> agencyTools?.overrideRouteType(line[ROUTE_ID]) ?: routeType }
-                ?: throw MTLog.Fatal("Invalid GRoute.$ROUTE_TYPE from $line!"),
-            routeUrl = line[ROUTE_URL]?.takeIf { it.isNotBlank() }?.trim(),
-            routeColor = line[ROUTE_COLOR]?.takeIf { it.isNotBlank() }?.trim(),
-            routeTextColor = line[ROUTE_TEXT_COLOR]?.takeIf { it.isNotBlank() }?.trim(),
-            routeSortOrder = line[ROUTE_SORT_ORDER]?.toIntOrNull(),
-        )
+        fun fromLine(line: GCsvRow, defaultAgencyId: String?, agencyTools: GAgencyTools? = null): GRoute {
+            val c = line.getColumns(LineColumns::class.java, ::LineColumns)
+            return GRoute(
+                agencyId = line.getOptionalString(c.agencyId)
+                    ?: defaultAgencyId
+                    ?: throw MTLog.Fatal("Invalid GRoute.$AGENCY_ID from $line!"),
+                routeId = line[c.routeId]?.trim()?.let { agencyTools?.cleanRouteOriginalId(it) ?: it }
+                    ?: throw MTLog.Fatal("Invalid GRoute.$ROUTE_ID from $line!"),
+                originalRouteId = line[c.routeId] ?: throw MTLog.Fatal("Invalid GRoute.$ROUTE_ID from $line!"),
+                routeShortName = line[c.routeShortName]?.trim()
+                    ?.let { rsn -> rsn.takeIf { it.isNotEmpty() }?.let { agencyTools?.cleanRouteShortName(it) } ?: rsn }
+                    ?.takeUnless { agencyTools?.useRouteIdForRouteShortName() == true }
+                    ?: line[c.routeId]?.trim()?.let { agencyTools?.cleanRouteOriginalId(it) ?: it }
+                    ?: EMPTY,
+                routeLongName = line[c.routeLongName],
+                routeDesc = line[c.routeDesc],
+                routeType = line[c.routeType]?.toInt()
+                    ?.let { routeType -> agencyTools?.overrideRouteType(line[c.routeId]) ?: routeType }
+                    ?: throw MTLog.Fatal("Invalid GRoute.$ROUTE_TYPE from $line!"),
+                routeUrl = line.getOptionalString(c.routeUrl)?.trim(),
+                routeColor = line.getOptionalString(c.routeColor)?.trim(),
+                routeTextColor = line.getOptionalString(c.routeTextColor)?.trim(),
+                routeSortOrder = line[c.routeSortOrder]?.toIntOrNull(),
+            )
+        }
 
         @JvmStatic
         fun from(routes: Collection<Route>) = routes.mapNotNull { from(it) }
@@ -0,0 +1,292 @@
+package org.mtransit.parser.gtfs.data
+
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Route-partitioned (MT route ID) in-memory stop times & trip stops, built once after [GSpec.splitByRouteId]:
+ * route tasks read primitive arrays (no SQL, no trip/stop ID string conversion).
+ *
+ * Partitions are removed when taken by the route task (memory released route by route).
+ */
+class GRouteStore {
+
+    private val partitions = ConcurrentHashMap<Long, Partition>()
+
+    val size: Int get() = partitions.size
+
+    fun put(partition: Partition) {
+        partitions[partition.mRouteId] = partition
+    }
+
+    /**
+     * @return route partition (removed from store) or `null` if not in store
+     */
+    fun take(mRouteId: Long): Partition? = partitions.remove(mRouteId)
+
+    /**
+     * @return route partition (kept in store) or `null` if not in store
+     */
+    operator fun get(mRouteId: Long): Partition? = partitions[mRouteId]
+
+    fun clear() {
+        partitions.clear()
+    }
+
+    /**
+     * Rows grouped by trip ID (trips sorted by ID integer) in 1 contiguous range per trip.
+     */
+    private class TripRanges(
+        val tripIdInts: IntArray, // sorted
+        val starts: IntArray,
+        val ends: IntArray, // exclusive
+    ) {
+        fun indexOf(tripIdInt: Int) = tripIdInts.binarySearch(tripIdInt).takeIf { it >= 0 }
+    }
+
+    class Partition private constructor(
+        val mRouteId: Long,
+        private val stopTimeTrips: TripRanges,
+        private val stopTimes: StopTimeColumns,
+        private val tripStopTrips: TripRanges,
+        private val tripStops: TripStopColumns,
+    ) {
+
+        val stopTimesCount: Int get() = stopTimes.size
+
+        val tripStopsCount: Int get() = tripStops.size
+
+        /**
+         * @return trip IDs with stop times (sorted)
+         */
+        val stopTimesTripIdInts: IntArray get() = stopTimeTrips.tripIdInts.copyOf()
+
+        /**
+         * @return trip IDs with trip stops (sorted)
+         */
+        val tripStopsTripIdInts: IntArray get() = tripStopTrips.tripIdInts.copyOf()
+
+        /**
+         * @return new stop times objects sorted by stop sequence (& departure time)
+         */
+        fun getTripStopTimes(tripIdInt: Int): List<GStopTime> {
+            val idx = stopTimeTrips.indexOf(tripIdInt) ?: return emptyList()
+            return (stopTimeTrips.starts[idx] until stopTimeTrips.ends[idx]).map { stopTimes[tripIdInt, it] }
+        }
+
+        /**
+         * @return new trip stops objects in insertion order
+         */
+        fun getTripTripStops(tripIdInt: Int): List<GTripStop> {
+            val idx = tripStopTrips.indexOf(tripIdInt) ?: return emptyList()
+            return (tripStopTrips.starts[idx] until tripStopTrips.ends[idx]).map { tripStops[tripIdInt, it] }
+        }
+
+        override fun toString() = "Partition(mRouteId=$mRouteId, trips=${stopTimeTrips.tripIdInts.size}, stopTimes=$stopTimesCount, tripStops=$tripStopsCount)"
+
+        /**
+         * NOT thread-safe.
+         */
+        class Builder(
+            private val mRouteId: Long,
+        ) {
+
+            private val stopTimes = StopTimeColumns()
+            private val stopTimesTripIdInts = IntColumn() // 1 per row
+
+            private val tripStops = TripStopColumns()
+            private val tripStopsTripIdInts = IntColumn() // 1 per row
+
+            fun addStopTime(gStopTime: GStopTime) {
+                stopTimesTripIdInts.add(gStopTime.tripIdInt)
+                stopTimes.add(gStopTime)
+            }
+
+            fun addTripStop(gTripStop: GTripStop) {
+                tripStopsTripIdInts.add(gTripStop.tripIdInt)
+                tripStops.add(gTripStop)
+            }
+
+            fun build(): Partition {
+                val stopTimesOrder = sortedRows(stopTimesTripIdInts) { a, b ->
+                    val c = stopTimes.stopSequences[a].compareTo(stopTimes.stopSequences[b])
+                    if (c != 0) c else stopTimes.departureTimes[a].compareTo(stopTimes.departureTimes[b])
+                }
+                val tripStopsOrder = sortedRows(tripStopsTripIdInts) { _, _ -> 0 } // stable: insertion order
+                return Partition(
+                    mRouteId,
+                    tripRanges(stopTimesTripIdInts, stopTimesOrder),
+                    stopTimes.reorder(stopTimesOrder),
+                    tripRanges(tripStopsTripIdInts, tripStopsOrder),
+                    tripStops.reorder(tripStopsOrder),
+                )
+            }
+
+            /**
+             * @return row indexes sorted by trip ID integer, then [compareInTrip] (stable)
+             */
+            private fun sortedRows(tripIdInts: IntColumn, compareInTrip: RowComparator): IntArray {
+                val rows = IntArray(tripIdInts.size) { it }
+                sort(rows) { a, b ->
+                    val c = tripIdInts[a].compareTo(tripIdInts[b])
+                    if (c != 0) c else compareInTrip.compare(a, b)
+                }
+                return rows
+            }
+
+            /**
+             * Stable bottom-up merge sort of primitive row indexes (no boxing).
+             */
+            private fun sort(rows: IntArray, comparator: RowComparator) {
+                val size = rows.size
+                var src = rows
+                var dst = IntArray(size)
+                var width = 1
+                while (width < size) {
+                    var lo = 0
+                    while (lo < size) {
+                        val mid = if (size - lo > width) lo + width else size
+                        val hi = if (size - mid > width) mid + width else size
+                        var i = lo
+                        var j = mid
+                        var k = lo
+                        while (i < mid && j < hi) {
+                            dst[k++] = if (comparator.compare(src[j], src[i]) < 0) src[j++] else src[i++]
+                        }
+                        while (i < mid) dst[k++] = src[i++]
+                        while (j < hi) dst[k++] = src[j++]
+                        lo = hi
+                    }
+                    val tmp = src
+                    src = dst
+                    dst = tmp
+                    width = if (width > size / 2) size else width * 2
+                }
+                if (src !== rows) {
+                    src.copyInto(rows)
+                }
+            }
+
+            private fun tripRanges(tripIdInts: IntColumn, order: IntArray): TripRanges {
+                val tripIdIntsSorted = IntColumn()
+                val starts = IntColumn()
+                val ends = IntColumn()
+                order.forEachIndexed { newIdx, oldIdx ->
+                    val tripIdInt = tripIdInts[oldIdx]
+                    if (tripIdIntsSorted.size == 0 || tripIdIntsSorted[tripIdIntsSorted.size - 1] != tripIdInt) {
+                        if (starts.size > 0) ends.add(newIdx)
+                        tripIdIntsSorted.add(tripIdInt)
+                        starts.add(newIdx)
+                    }
+                }
+                if (starts.size > 0) ends.add(order.size)
+                return TripRanges(tripIdIntsSorted.toArray(), starts.toArray(), ends.toArray())
+            }
+        }
+    }
+
+    private fun interface RowComparator {
+        fun compare(a: Int, b: Int): Int
+    }
+
+    private class StopTimeColumns(
+        val arrivalTimes: IntColumn = IntColumn(),
+        val departureTimes: IntColumn = IntColumn(),
+        val stopIdInts: IntColumn = IntColumn(),
+        val stopSequences: IntColumn = IntColumn(),
+        val stopHeadsigns: ArrayList<String?> = ArrayList(),
+        val pickupTypes: IntColumn = IntColumn(),
+        val dropOffTypes: IntColumn = IntColumn(),
+        val timePoints: IntColumn = IntColumn(),
+    ) {
+        val size: Int get() = stopIdInts.size
+
+        fun add(gStopTime: GStopTime) {
+            arrivalTimes.add(gStopTime.arrivalTime)
+            departureTimes.add(gStopTime.departureTime)
+            stopIdInts.add(gStopTime.stopIdInt)
+            stopSequences.add(gStopTime.stopSequence)
+            stopHeadsigns.add(gStopTime.stopHeadsign)
+            pickupTypes.add(gStopTime.pickupType.id)
+            dropOffTypes.add(gStopTime.dropOffType.id)
+            timePoints.add(gStopTime.timePoint.id)
+        }
+
+        operator fun get(tripIdInt: Int, idx: Int) = GStopTime(
+            tripIdInt,
+            arrivalTimes[idx],
+            departureTimes[idx],
+            stopIdInts[idx],
+            stopSequences[idx],
+            stopHeadsigns[idx],
+            pickupTypes[idx],
+            dropOffTypes[idx],
+            timePoints[idx],
+        )
+
+        fun reorder(order: IntArray) = StopTimeColumns(
+            arrivalTimes.reorder(order),
+            departureTimes.reorder(order),
+            stopIdInts.reorder(order),
+            stopSequences.reorder(order),
+            order.mapTo(ArrayList(order.size)) { stopHeadsigns[it] },
+            pickupTypes.reorder(order),
+            dropOffTypes.reorder(order),
+            timePoints.reorder(order),
+        )
+    }
+
+    private class TripStopColumns(
+        val routeIdInts: IntColumn = IntColumn(),
+        val stopIdInts: IntColumn = IntColumn(),
+        val stopSequences: IntColumn = IntColumn(),
+        val lastTripStops: IntColumn = IntColumn(),
+    ) {
+        val size: Int get() = stopIdInts.size
+
+        fun add(gTripStop: GTripStop) {
+            routeIdInts.add(gTripStop.routeIdInt)
+            stopIdInts.add(gTripStop.stopIdInt)
+            stopSequences.add(gTripStop.stopSequence)
+            lastTripStops.add(if (gTripStop.isLastTripStop) 1 else 0)
+        }
+
+        operator fun get(tripIdInt: Int, idx: Int) = GTripStop(
+            routeIdInts[idx],
+            tripIdInt,
+            stopIdInts[idx],
+            stopSequences[idx],
+            lastTripStops[idx] == 1,
+        )
+
+        fun reorder(order: IntArray) = TripStopColumns(
+            routeIdInts.reorder(order),
+            stopIdInts.reorder(order),
+            stopSequences.reorder(order),
+            lastTripStops.reorder(order),
+        )
+    }
+
+    /**
+     * Growable primitive int array.
+     */
+    private class IntColumn(
+        private var values: IntArray = IntArray(16),
+        size: Int = 0,
+    ) {
+        var size: Int = size
+            private set
+
+        fun add(value: Int) {
+            if (size == values.size) {
+                values = values.copyOf(maxOf(16, values.size * 2))
+            }
+            values[size++] = value
+        }
+
+        operator fun get(idx: Int) = values[idx]
+
+        fun reorder(order: IntArray) = IntColumn(IntArray(order.size) { values[order[it]] }, order.size)
+
+        fun toArray(): IntArray = values.copyOf(size)
+    }
+}
@@ -37,6 +37,14 @@ public class GSpec {
 	private static final boolean USE_DB_ONLY = false;
 	// private static final boolean USE_DB_ONLY = true; // WIP
 
+	private static final boolean BULK_STOP_TIMES_PICKUP_DROP_OFF_CLEANUP = true;
+	// private static final boolean BULK_STOP_TIMES_PICKUP_DROP_OFF_CLEANUP = false; // DEBUG
+
+	private static final boolean USE_ROUTE_STORE = true;
+	// private static final boolean USE_ROUTE_STORE = false; // DEBUG
+
+	private static final int MAX_TRIP_IDS_PER_PAGE = DefaultAgencyTools.IS_CI ? 500 : 1_000; // SQL query length limit
+
 	@NotNull
 	private final Map<Integer, GAgency> agenciesCache = new HashMap<>();
 	@NotNull
@@ -65,7 +73,14 @@ public class GSpec {
 	@NotNull
 	private final HashMap<Long, List<Integer>> mRouteIdToGRouteIdInts = new HashMap<>();
 	@NotNull
-	private final HashMap<Integer, Integer> tripIdIntRouteIdInt = new HashMap<>();
+	private final GTripIndex tripIndex = new GTripIndex();
+	@NotNull
+	private final GRouteStore routeStore = new GRouteStore();
+
+	private float averageTripStopTimes = 0f; // computed by splitByRouteId()
+
+	@Nullable
+	private final GStopTimesColumnStore stopTimesColumnStore = DefaultAgencyTools.OFF_HEAP_STOP_TIMES ? new GStopTimesColumnStore() : null;
 	@NotNull
 	private final Set<Integer> tripOriginalRouteIdInt = new HashSet<>();
 
@@ -349,7 +364,7 @@ public class GSpec {
 	public void addTrip(@NotNull GTrip gTrip, @Nullable PreparedStatement insertStopTimePrepared) {
 		GTFSDataBase.insertTrip(gTrip.to(), insertStopTimePrepared);
 		CollectionUtils.addMapListValue(this.routeIdIntTripsCache, gTrip.getRouteIdInt(), gTrip);
-		this.tripIdIntRouteIdInt.put(gTrip.getTripIdInt(), gTrip.getRouteIdInt());
+		this.tripIndex.add(gTrip);
 		this.tripOriginalRouteIdInt.add(gTrip.getOriginalRouteIdInt());
 		this.tripIdIntsUIDs.put(gTrip.getTripIdInt(), gTrip.getUID());
 	}
@@ -383,7 +398,11 @@ public class GSpec {
 			routeIdInts.add(getTripRouteId(tripIdInt));
 		}
 		for (Integer routeIdInt : routeIdInts) {
-			GTrip.updateDirectionIdForTrips(getRouteTrips(routeIdInt), tripIdInts, directionId);
+			for (GTrip gTrip : GTrip.updateDirectionIdForTrips(getRouteTrips(routeIdInt), tripIdInts, directionId)) {
+				if (tripIdInts.contains(gTrip.getTripIdInt())) {
+					this.tripIndex.put(gTrip); // replaced by updated copy
+				}
+			}
 			GTFSDataBase.updateTrip(GIDs.getStrings(tripIdInts), directionId);
 		}
 	}
@@ -393,21 +412,21 @@ public class GSpec {
 		if (USE_DB_ONLY) {
 			return GTrip.from(GTFSDataBase.selectTrip(GIDs.getString(tripIdInt)));
 		}
-		final Integer tripRouteId = getTripRouteId(tripIdInt);
-		final Collection<GTrip> routeTrips = tripRouteId == null ? null : getRouteTrips(tripRouteId);
-		if (routeTrips != null) {
-			for (GTrip trip : routeTrips) {
-				if (trip.getTripIdInt() == tripIdInt) {
-					return trip;
-				}
-			}
-		}
-		return null;
+		return this.tripIndex.get(tripIdInt);
 	}
 
 	@Nullable
 	private Integer getTripRouteId(Integer tripIdInt) {
-		return this.tripIdIntRouteIdInt.get(tripIdInt);
+		final int routeIdInt = this.tripIndex.getRouteIdInt(tripIdInt);
+		return routeIdInt == GTripIndex.NO_ID ? null : routeIdInt;
+	}
+
+	/**
+	 * In-memory only (NOT in DB)
+	 */
+	@NotNull
+	public GTripIndex getTripIndex() {
+		return this.tripIndex;
 	}
 
 	public boolean hasTripsOriginalRouteId(int routeIdInt) {
@@ -483,16 +502,42 @@ public class GSpec {
 	}
 
 	public void addStopTime(@NotNull GStopTime gStopTime, boolean allowUpdate) {
-		GTFSDataBase.insertStopTime(gStopTime.to(), null, allowUpdate);
+		addStopTime(gStopTime, allowUpdate, null);
 	}
 
 	public void addStopTime(@NotNull GStopTime gStopTime, @NotNull PreparedStatement insertStopTimePrepared) {
-		GTFSDataBase.insertStopTime(gStopTime.to(), insertStopTimePrepared);
+		addStopTime(gStopTime, false, insertStopTimePrepared);
+	}
+
+	private void addStopTime(@NotNull GStopTime gStopTime, boolean allowUpdate, @Nullable PreparedStatement insertStopTimePrepared) {
+		if (this.stopTimesColumnStore != null) {
+			this.stopTimesColumnStore.insert(gStopTime, allowUpdate);
+			return;
+		}
+		GTFSDataBase.insertStopTime(gStopTime.to(), insertStopTimePrepared, allowUpdate);
+	}
+
+	/**
+	 * @return stop times of provided trips (sorted by stop sequence for each trip if off-heap)
+	 */
+	@NotNull
+	public List<GStopTime> selectStopTimes(@NotNull Collection<Integer> tripIdInts) {
+		if (this.stopTimesColumnStore != null) {
+			return this.stopTimesColumnStore.select(tripIdInts);
+		}
+		return GStopTime.from(GTFSDataBase.selectStopTimes(GIDs.getStrings(tripIdInts)));
+	}
+
+	private int deleteStopTimes(int gTripId) {
+		if (this.stopTimesColumnStore != null) {
+			return this.stopTimesColumnStore.delete(gTripId);
+		}
+		return GTFSDataBase.deleteStopTimes(GIDs.getString(gTripId));
 	}
 
 	private int removeTripStopTimes(int gTripId) {
 		int r = 0;
-		r += GTFSDataBase.deleteStopTimes(GIDs.getString(gTripId));
+		r += deleteStopTimes(gTripId);
 		return r;
 	}
 
@@ -536,11 +581,6 @@ public class GSpec {
 		throw new MTLog.Fatal("getTripStops() > trying to use ALL trip stops!");
 	}
 
-	private void addTripStops(@NotNull GTripStop gTripStop) {
-		this.tripStopsUIDs.add(gTripStop.getUID());
-		DBUtils.insertTripStop(gTripStop);
-	}
-
 	private static final String AGENCIES = "agencies:";
 	private static final String CALENDARS = "calendars:";
 	private static final String CALENDAR_DATES = "calendarDates:";
@@ -581,12 +621,18 @@ public class GSpec {
 			MTLog.log("- Stops: %d", readStopsCount());
 			MTLog.log("- StopTimes: %d", readStopTimesCount());
 			MTLog.log("- Frequencies: %d", readFrequenciesCount());
-			MTLog.log("- IDs: %d", GIDs.count());
+			MTLog.log("- IDs: %d (%s)", GIDs.count(), FileUtils.sizeToDiplayString(GIDs.sizeInBytes()));
 			MTLog.log("- GTFS DB size: %s", FileUtils.sizeToDiplayString(GTFSDataBase.getDBSize()));
+			if (this.stopTimesColumnStore != null) {
+				MTLog.log("- StopTimes off-heap size: %s", FileUtils.sizeToDiplayString(this.stopTimesColumnStore.getOffHeapSizeInBytes()));
+			}
 		}
 	}
 
 	private int readStopTimesCount() {
+		if (this.stopTimesColumnStore != null) {
+			return this.stopTimesColumnStore.getSize();
+		}
 		return GTFSDataBase.countStopTimes();
 	}
 
@@ -625,18 +671,20 @@ public class GSpec {
 		GStopTime gStopTimeNext;
 		boolean lastTripStop;
 		List<GStopTime> tripStopTimes;
-		final int stopTimesCount = readStopTimesCount();
+		final ArrayList<GTripStop> pageTripStops = new ArrayList<>();
 		int tripStopsCount = 0;
-		int offset = 0;
-		final int maxRowNumber = DefaultAgencyTools.IS_CI ? 100_000 : 1_000_000;
+		// keyset pagination on trip IDs (NOT offset): each page = complete trips (last trip stop never split across pages)
+		final List<String> tripIds = new ArrayList<>(GIDs.getStrings(this.tripIdIntsUIDs.keySet())); // trips w/o UID skipped anyway
+		Collections.sort(tripIds); // same order as stop times primary key (trip ID, stop sequence)
 		MTLog.log("Generating GTFS trip stops from stop times... (DB size: %s)", FileUtils.sizeToDiplayString(DBUtils.getDBSize()));
 		DBUtils.setAutoCommit(false); // trip stops
-		while (offset < stopTimesCount) {
-			MTLog.log("Generating GTFS trip stops from stop times... (%d -> %d)", offset, offset + maxRowNumber);
-			tripStopTimes = GStopTime.from(GTFSDataBase.selectStopTimes(null, maxRowNumber, offset));
-			MTLog.log("Generating GTFS trip stops from stop times...");
+		for (int fromIndex = 0; fromIndex < tripIds.size(); fromIndex += MAX_TRIP_IDS_PER_PAGE) {
+			final int toIndex = Math.min(fromIndex + MAX_TRIP_IDS_PER_PAGE, tripIds.size());
+			MTLog.log("Generating GTFS trip stops from stop times... (trips: %d -> %d / %d)", fromIndex, toIndex, tripIds.size());
+			tripStopTimes = selectStopTimes(GIDs.getInts(tripIds.subList(fromIndex, toIndex)));
+			tripStopTimes.sort(null); // trip ID, stop sequence
 			MTLog.log("Generating GTFS trip stops from stop times... (%d stop times found)", tripStopTimes.size());
-			offset += tripStopTimes.size();
+			pageTripStops.clear();
 			for (int i = 0; i < tripStopTimes.size(); i++) {
 				gStopTime = tripStopTimes.get(i);
 				gStopTimeNext = i < tripStopTimes.size() - 1 ? tripStopTimes.get(i + 1) : null;
@@ -649,11 +697,13 @@ public class GSpec {
 					MTLog.log("Generating GTFS trip stops from stop times... > (uid: %s) SKIP %s", uid, gStopTime);
 					continue;
 				}
-				lastTripStop = gStopTimeNext == null || gStopTimeNext.getTripIdInt() != gStopTime.getTripIdInt();
-				addTripStops(
+				this.tripStopsUIDs.add(uid);
+				lastTripStop = gStopTimeNext == null || gStopTimeNext.getTripIdInt() != gStopTime.getTripIdInt(); // page = complete trips
+				pageTripStops.add(
 						new GTripStop(tripUID, gStopTime.getTripIdInt(), gStopTime.getStopIdInt(), gStopTime.getStopSequence(), lastTripStop)
 				);
 			}
+			DBUtils.insertTripStops(pageTripStops); // 1 batch insert per page (NOT set-based: stop times in GTFS DB, other connection)
 			MTLog.log("Generating GTFS trip stops from stop times... (created %s trip stops)", (this.tripStopsUIDs.size() - tripStopsCount));
 			tripStopsCount = this.tripStopsUIDs.size();
 		}
@@ -684,7 +734,7 @@ public class GSpec {
 			if (gOriginalTrip == null) {
 				throw new MTLog.Fatal("Cannot find original trip for ID '%s' (%d)!", GIDs.getString(tripIdInt), tripIdInt);
 			}
-			final List<GStopTime> tripStopTimes = GStopTime.from(GTFSDataBase.selectStopTimes(Collections.singletonList(GIDs.getString(tripIdInt))));
+			final List<GStopTime> tripStopTimes = selectStopTimes(Collections.singletonList(tripIdInt));
 			final ArrayList<GStopTime> newGStopTimes = new ArrayList<>();
 			final Calendar stopTimeCal = Calendar.getInstance();
 			final HashMap<Long, Integer> gStopTimeIncInSec = new HashMap<>();
@@ -763,6 +813,7 @@ public class GSpec {
 			boolean lastTripStop;
 			String tripUID;
 			String uid;
+			final ArrayList<GTripStop> newGTripStops = new ArrayList<>();
 			for (int i = 0; i < newGStopTimes.size(); i++) {
 				newGStopTime = newGStopTimes.get(i);
 				gStopTimeNext = i < newGStopTimes.size() - 1 ? newGStopTimes.get(i + 1) : null;
@@ -782,11 +833,13 @@ public class GSpec {
 					continue;
 				}
 				lastTripStop = gStopTimeNext == null || gStopTimeNext.getTripIdInt() != newGStopTime.getTripIdInt();
-				addTripStops(
+				this.tripStopsUIDs.add(uid);
+				newGTripStops.add(
 						new GTripStop(tripUID, newGStopTime.getTripIdInt(), newGStopTime.getStopIdInt(), newGStopTime.getStopSequence(), lastTripStop)
 				);
 				ts++;
 			}
+			DBUtils.insertTripStops(newGTripStops); // 1 batch insert per original trip
 		}
 		DBUtils.setAutoCommit(true); // true => commit() // trip stops
 		GTFSDataBase.setAutoCommit(true); // true => commit() // trip + stop times
@@ -847,13 +900,14 @@ public class GSpec {
 					if (this.tripIdIntsUIDs.remove(gTrip.getTripIdInt()) != null) {
 						r++;
 					}
-					if (GTFSDataBase.deleteStopTimes(GIDs.getString(gTrip.getTripIdInt())) > 0) {
+					if (deleteStopTimes(gTrip.getTripIdInt()) > 0) {
 						r++;
 					}
 					if (this.tripIdIntFrequenciesCache.remove(gTrip.getTripIdInt()) != null) {
 						r++;
 					}
 					GTFSDataBase.deleteFrequency(GIDs.getString(gTrip.getTripIdInt()));
+					this.tripIndex.remove(gTrip);
 				}
 				iterator.remove(); // this.routeIdIntTripsCache.remove(tripRouteIdInt);
 				GTFSDataBase.deleteTrips(GIDs.getString(tripRouteIdInt));
@@ -877,33 +931,38 @@ public class GSpec {
 			MTLog.logDebug("forceStopTimeFirstNoDropOffType: %s", forceStopTimeFirstNoDropOffType);
 			GTFSDataBase.setAutoCommit(false); // stop times
 			MTLog.logDebug("Cleanup stop times pickup & drop-off types from (%d trips)...", this.tripIdIntsUIDs.size());
-			for (Integer tripIdInt : this.tripIdIntsUIDs.keySet()) {
-				//noinspection ConstantConditions
-				if (forceStopTimeLastNoPickupType) {
-					if (GTFSDataBase.updateStopTime(
-							GIDs.getString(tripIdInt), null, null,
-							GPickupType.NO_PICKUP.getId(), null,
-							true, 1 // LAST
-					)) {
-						stu++;
+			//noinspection ConstantConditions
+			if (BULK_STOP_TIMES_PICKUP_DROP_OFF_CLEANUP || this.stopTimesColumnStore != null) { // off-heap: NO SQL update
+				stu = cleanupStopTimesPickupDropOffTypesBulk(forceStopTimeLastNoPickupType, forceStopTimeFirstNoDropOffType);
+			} else {
+				for (Integer tripIdInt : this.tripIdIntsUIDs.keySet()) {
+					//noinspection ConstantConditions
+					if (forceStopTimeLastNoPickupType) {
+						if (GTFSDataBase.updateStopTime(
+								GIDs.getString(tripIdInt), null, null,
+								GPickupType.NO_PICKUP.getId(), null,
+								true, 1 // LAST
+						)) {
+							stu++;
+						}
 					}
-				}
-				if (forceStopTimeFirstNoDropOffType) {
-					if (GTFSDataBase.updateStopTime(
-							GIDs.getString(tripIdInt), null, null,
-							null, GDropOffType.NO_DROP_OFF.getId(),
-							false, 1 // FIRST
-					)) {
-						stu++;
+					if (forceStopTimeFirstNoDropOffType) {
+						if (GTFSDataBase.updateStopTime(
+								GIDs.getString(tripIdInt), null, null,
+								null, GDropOffType.NO_DROP_OFF.getId(),
+								false, 1 // FIRST
+						)) {
+							stu++;
+						}
 					}
+					stp++;
+					if (stp % 1_000 == 0) { // LOG
+						MTLog.logPOINT(); // LOG
+					} // LOG
+					if (stp % 10_000 == 0) { // LOG
+						MTLog.log("Cleanup stop times pickup & drop-off types from (%d/%d trips) (%d updated objects)...", stp, this.tripIdIntsUIDs.size(), stu); // LOG
+					} // LOG
 				}
-				stp++;
-				if (stp % 1_000 == 0) { // LOG
-					MTLog.logPOINT(); // LOG
-				} // LOG
-				if (stp % 10_000 == 0) { // LOG
-					MTLog.log("Cleanup stop times pickup & drop-off types from (%d/%d trips) (%d updated objects)...", stp, this.tripIdIntsUIDs.size(), stu); // LOG
-				} // LOG
 			}
 			GTFSDataBase.setAutoCommit(true); // true => commit() // stop times
 		} catch (Exception e) {
@@ -912,6 +971,82 @@ public class GSpec {
 		MTLog.log("Cleanup stop times pickup & drop-off types...DONE (%d updated objects)", stu);
 	}
 
+	/**
+	 * Same result as 1 update per trip & rule (ORDER BY stop sequence LIMIT 1) but:
+	 * - SQL: 1 set-based update per rule of 1st & last (MIN/MAX stop sequence) stop time of each trip (NO stop time loaded)
+	 * - off-heap: 1 select per page of trips (keyset on trip IDs) & in-place update of the stop times actually changed
+	 *
+	 * @return updated objects count (SQL: stop times actually changed, off-heap: 1 per trip & rule)
+	 */
+	private int cleanupStopTimesPickupDropOffTypesBulk(boolean forceStopTimeLastNoPickupType, boolean forceStopTimeFirstNoDropOffType) {
+		if (!forceStopTimeLastNoPickupType && !forceStopTimeFirstNoDropOffType) {
+			return 0;
+		}
+		int stu = 0;
+		if (this.stopTimesColumnStore == null) { // all trips: excluded trips stop times already deleted
+			if (forceStopTimeLastNoPickupType) {
+				stu += GTFSDataBase.updateLastStopTimesPickupType(GPickupType.NO_PICKUP.getId());
+			}
+			if (forceStopTimeFirstNoDropOffType) {
+				stu += GTFSDataBase.updateFirstStopTimesDropOffType(GDropOffType.NO_DROP_OFF.getId());
+			}
+			return stu;
+		}
+		int stc = 0;
+		final List<String> tripIds = new ArrayList<>(GIDs.getStrings(this.tripIdIntsUIDs.keySet()));
+		Collections.sort(tripIds);
+		final HashMap<Integer, GStopTime> tripIdIntFirstStopTimes = new HashMap<>();
+		final HashMap<Integer, GStopTime> tripIdIntLastStopTimes = new HashMap<>();
+		GStopTime firstStopTime;
+		GStopTime lastStopTime;
+		boolean changed;
+		for (int fromIndex = 0; fromIndex < tripIds.size(); fromIndex += MAX_TRIP_IDS_PER_PAGE) {
+			final int toIndex = Math.min(fromIndex + MAX_TRIP_IDS_PER_PAGE, tripIds.size());
+			tripIdIntFirstStopTimes.clear();
+			tripIdIntLastStopTimes.clear();
+			for (GStopTime gStopTime : selectStopTimes(GIDs.getInts(tripIds.subList(fromIndex, toIndex)))) {
+				firstStopTime = tripIdIntFirstStopTimes.get(gStopTime.getTripIdInt());
+				if (firstStopTime == null || gStopTime.getStopSequence() < firstStopTime.getStopSequence()) {
+					tripIdIntFirstStopTimes.put(gStopTime.getTripIdInt(), gStopTime);
+				}
+				lastStopTime = tripIdIntLastStopTimes.get(gStopTime.getTripIdInt());
+				if (lastStopTime == null || gStopTime.getStopSequence() > lastStopTime.getStopSequence()) {
+					tripIdIntLastStopTimes.put(gStopTime.getTripIdInt(), gStopTime);
+				}
+			}
+			for (Map.Entry<Integer, GStopTime> tripIdIntFirstStopTime : tripIdIntFirstStopTimes.entrySet()) {
+				firstStopTime = tripIdIntFirstStopTime.getValue();
+				lastStopTime = tripIdIntLastStopTimes.get(tripIdIntFirstStopTime.getKey()); // same if only 1 stop time
+				changed = false;
+				if (forceStopTimeLastNoPickupType) {
+					stu++;
+					if (lastStopTime.getPickupType() != GPickupType.NO_PICKUP) {
+						lastStopTime.setPickupType(GPickupType.NO_PICKUP);
+						if (lastStopTime != firstStopTime) {
+							addStopTime(lastStopTime, true);
+							stc++;
+						} else {
+							changed = true;
+						}
+					}
+				}
+				if (forceStopTimeFirstNoDropOffType) {
+					stu++;
+					if (firstStopTime.getDropOffType() != GDropOffType.NO_DROP_OFF) {
+						firstStopTime.setDropOffType(GDropOffType.NO_DROP_OFF);
+						changed = true;
+					}
+				}
+				if (changed) {
+					addStopTime(firstStopTime, true);
+					stc++;
+				}
+			}
+			MTLog.log("Cleanup stop times pickup & drop-off types from (%d/%d trips) (%d updated objects, %d changed stop times)...", toIndex, tripIds.size(), stu, stc); // LOG
+		}
+		return stu;
+	}
+
 	public void cleanupExcludedServiceIds() {
 		MTLog.log("Removing more excluded service IDs...");
 		int r = 0;
@@ -964,7 +1099,21 @@ public class GSpec {
 		MTLog.log("Removing more excluded service IDs... DONE (%d removed objects)", r);
 	}
 
+	/**
+	 * Stop times & trip stops only read from the route store once partitioned: removed from DB (NOT in memory twice).
+	 */
 	public void clearRawData() {
+		if (this.routeStore.getSize() == 0) {
+			return; // NOT partitioned: route tasks read from DB
+		}
+		MTLog.log("Clearing partitioned raw data...");
+		if (this.stopTimesColumnStore != null) {
+			this.stopTimesColumnStore.clear();
+		} else {
+			GTFSDataBase.deleteAllStopTimes();
+		}
+		final int tripStopsCount = DBUtils.deleteAllTripStops();
+		MTLog.log("Clearing partitioned raw data... DONE (%d trip stops)", tripStopsCount);
 	}
 
 	@SuppressWarnings("unused")
@@ -989,6 +1138,27 @@ public class GSpec {
 		return this.mRouteWithTripIds.contains(mRouteId);
 	}
 
+	/**
+	 * Estimated route generation cost (after {@link #splitByRouteId}), used to schedule heaviest routes first.
+	 *
+	 * @return route stop times count (route store) or route trips count x average trip stop times
+	 */
+	public long getRouteCost(long mRouteId) {
+		final GRouteStore.Partition partition = this.routeStore.get(mRouteId);
+		if (partition != null) {
+			return partition.getStopTimesCount();
+		}
+		final List<Integer> gRouteIdInts = this.mRouteIdToGRouteIdInts.get(mRouteId);
+		if (gRouteIdInts == null) {
+			return 0L;
+		}
+		int tripsCount = 0;
+		for (Integer gRouteIdInt : gRouteIdInts) {
+			tripsCount += getRouteTrips(gRouteIdInt).size();
+		}
+		return (long) (tripsCount * this.averageTripStopTimes);
+	}
+
 	public void splitByRouteId(@NotNull GAgencyTools agencyTools) {
 		MTLog.log("Splitting GTFS by route ID...");
 		this.mRouteWithTripIds.clear();
@@ -1020,9 +1190,63 @@ public class GSpec {
 			this.mRouteIdToGRouteIdInts.get(mRouteId).add(gRoute.getRouteIdInt());
 			this.mRouteWithTripIds.add(mRouteId);
 		}
+		final int tripsCount = readTripsCount();
+		this.averageTripStopTimes = tripsCount == 0 ? 0f : (float) readStopTimesCount() / tripsCount;
 		MTLog.log("Splitting GTFS by route ID... DONE");
 	}
 
+	/**
+	 * Loads each MT route stop times & trip stops into the in-memory route store (after {@link #splitByRouteId}).
+	 */
+	public void partitionByRouteId() {
+		this.routeStore.clear();
+		//noinspection ConstantConditions
+		if (!USE_ROUTE_STORE) {
+			return;
+		}
+		MTLog.log("Partitioning GTFS by route ID...");
+		final HashMap<Long, GRouteStore.Partition.Builder> mRouteIdBuilders = new HashMap<>();
+		final HashMap<Integer, GRouteStore.Partition.Builder> tripIdIntBuilders = new HashMap<>();
+		for (Map.Entry<Long, List<Integer>> mRouteIdGRouteIdInts : this.mRouteIdToGRouteIdInts.entrySet()) {
+			final GRouteStore.Partition.Builder builder = new GRouteStore.Partition.Builder(mRouteIdGRouteIdInts.getKey());
+			mRouteIdBuilders.put(mRouteIdGRouteIdInts.getKey(), builder);
+			for (Integer gRouteIdInt : mRouteIdGRouteIdInts.getValue()) {
+				for (GTrip gTrip : getRouteTrips(gRouteIdInt)) {
+					tripIdIntBuilders.put(gTrip.getTripIdInt(), builder);
+				}
+			}
+		}
+		final List<Integer> tripIdInts = new ArrayList<>(tripIdIntBuilders.keySet());
+		Collections.sort(tripIdInts);
+		int stopTimesCount = 0;
+		int tripStopsCount = 0;
+		for (int fromIndex = 0; fromIndex < tripIdInts.size(); fromIndex += MAX_TRIP_IDS_PER_PAGE) {
+			final List<Integer> pageTripIdInts = tripIdInts.subList(fromIndex, Math.min(fromIndex + MAX_TRIP_IDS_PER_PAGE, tripIdInts.size()));
+			for (GStopTime gStopTime : selectStopTimes(pageTripIdInts)) {
+				tripIdIntBuilders.get(gStopTime.getTripIdInt()).addStopTime(gStopTime);
+				stopTimesCount++;
+			}
+			for (GTripStop gTripStop : DBUtils.selectTripStops(null, pageTripIdInts, null, null)) {
+				tripIdIntBuilders.get(gTripStop.getTripIdInt()).addTripStop(gTripStop);
+				tripStopsCount++;
+			}
+			MTLog.logPOINT();
+		}
+		for (GRouteStore.Partition.Builder builder : mRouteIdBuilders.values()) {
+			this.routeStore.put(builder.build());
+		}
+		MTLog.log("Partitioning GTFS by route ID... DONE (%d routes, %d trips, %d stop times, %d trip stops)",
+				this.routeStore.getSize(), tripIdInts.size(), stopTimesCount, tripStopsCount);
+	}
+
+	/**
+	 * @return route stop times & trip stops (removed from route store) or {@code null} if not partitioned
+	 */
+	@Nullable
+	public GRouteStore.Partition takeRoutePartition(long mRouteId) {
+		return this.routeStore.take(mRouteId);
+	}
+
 	private void logRemoved(@NotNull String format, @NotNull Object... args) {
 		if (!LOG_REMOVED) {
 			return;
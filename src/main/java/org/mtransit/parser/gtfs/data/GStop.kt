@@ -7,6 +7,7 @@ import org.mtransit.commons.gtfs.data.StopId
 import org.mtransit.parser.Constants
 import org.mtransit.parser.MTLog
 import org.mtransit.parser.gtfs.GAgencyTools
+import org.mtransit.parser.gtfs.GCsvRow
 import kotlin.math.floor
 
 // https://gtfs.org/schedule/reference/#stopstxt
@@ -117,21 +118,35 @@ data class GStop(
         private const val PARENT_STATION = "parent_station"
         private const val WHEELCHAIR_BOARDING = "wheelchair_boarding"
 
+        private class LineColumns(line: GCsvRow) {
+            val stopId = line.getColumnIndex(STOP_ID)
+            val stopName = line.getColumnIndex(STOP_NAME)
+            val stopLat = line.getColumnIndex(STOP_LAT)
+            val stopLon = line.getColumnIndex(STOP_LON)
+            val stopCode = line.getColumnIndex(STOP_CODE)
+            val locationType = line.getColumnIndex(LOCATION_TYPE)
+            val parentStation = line.getColumnIndex(PARENT_STATION)
+            val wheelchairBoarding = line.getColumnIndex(WHEELCHAIR_BOARDING)
+        }
+
         @JvmOverloads
         @JvmStatic
-        fun fromLine(line: Map<String, String>, agencyTools: GAgencyTools? = null) = GStop(
-            stopId = line[STOP_ID]?.trim()
-                ?.let { agencyTools?.cleanStopOriginalId(it) ?: it }
-                ?: throw MTLog.Fatal("Invalid GStop from $line!"),
-            stopName = line[STOP_NAME] ?: throw MTLog.Fatal("Invalid GStop from $line!"),
-            stopLat = line[STOP_LAT]?.toDouble() ?: throw MTLog.Fatal("Invalid GStop from $line!"),
-            stopLong = line[STOP_LON]?.toDouble() ?: throw MTLog.Fatal("Invalid GStop from $line!"),
-            stopCode = line[STOP_CODE]?.trim() ?: EMPTY,
-            locationType = line[LOCATION_TYPE]?.takeIf { it.isNotBlank() }?.toInt(),
-            parentStationId = line[PARENT_STATION]?.takeIf { it.isNotBlank() }?.trim()
-                ?.let { agencyTools?.cleanStopOriginalId(it) ?: it },
-            wheelchairBoarding = line[WHEELCHAIR_BOARDING]?.takeIf { it.isNotBlank() }?.toInt(),
-        )
+        fun fromLine(line: GCsvRow, agencyTools: GAgencyTools? = null): GStop {
+            val c = line.getColumns(LineColumns::class.java, ::LineColumns)
+            return GStop(
+                stopId = line[c.stopId]?.trim()
+                    ?.let { agencyTools?.cleanStopOriginalId(it) ?: it }
+                    ?: throw MTLog.Fatal("Invalid GStop from $line!"),
+                stopName = line[c.stopName] ?: throw MTLog.Fatal("Invalid GStop from $line!"),
+                stopLat = line[c.stopLat]?.toDouble() ?: throw MTLog.Fatal("Invalid GStop from $line!"),
+                stopLong = line[c.stopLon]?.toDouble() ?: throw MTLog.Fatal("Invalid GStop from $line!"),
+                stopCode = line[c.stopCode]?.trim() ?: EMPTY,
+                locationType = line.getOptionalInt(c.locationType),
+                parentStationId = line.getOptionalString(c.parentStation)?.trim()
+                    ?.let { agencyTools?.cleanStopOriginalId(it) ?: it },
+                wheelchairBoarding = line.getOptionalInt(c.wheelchairBoarding),
+            )
+        }
 
         @JvmStatic
         fun from(stops: Collection<Stop>) = stops.mapNotNull { from(it) }
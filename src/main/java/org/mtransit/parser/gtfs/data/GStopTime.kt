@@ -6,6 +6,7 @@ import org.mtransit.commons.gtfs.data.StopTime
 import org.mtransit.parser.Constants
 import org.mtransit.parser.MTLog
 import org.mtransit.parser.gtfs.GAgencyTools
+import org.mtransit.parser.gtfs.GCsvRow
 import java.util.Date
 
 // https://gtfs.org/schedule/reference/#stop_timestxt
@@ -205,23 +206,38 @@ data class GStopTime(
         const val DROP_OFF_TYPE = "drop_off_type"
         const val TIME_POINT = "timepoint"
 
+        private class LineColumns(line: GCsvRow) {
+            val tripId = line.getColumnIndex(TRIP_ID)
+            val arrivalTime = line.getColumnIndex(ARRIVAL_TIME)
+            val departureTime = line.getColumnIndex(DEPARTURE_TIME)
+            val stopId = line.getColumnIndex(STOP_ID)
+            val stopSequence = line.getColumnIndex(STOP_SEQUENCE)
+            val stopHeadsign = line.getColumnIndex(STOP_HEADSIGN)
+            val pickupType = line.getColumnIndex(PICKUP_TYPE)
+            val dropOffType = line.getColumnIndex(DROP_OFF_TYPE)
+            val timePoint = line.getColumnIndex(TIME_POINT)
+        }
+
         @JvmOverloads
         @JvmStatic
-        fun fromLine(line: Map<String, String>, agencyTools: GAgencyTools? = null) = GStopTime(
-            tripId = line[TRIP_ID]?.trim()
-                ?.let { agencyTools?.cleanTripOriginalId(it) ?: it }
-                ?: throw MTLog.Fatal("Invalid GStopTime from $line!"),
-            arrivalTime = line[ARRIVAL_TIME]?.trim() ?: throw MTLog.Fatal("Invalid GStopTime from $line!"),
-            departureTime = line[DEPARTURE_TIME]?.trim() ?: throw MTLog.Fatal("Invalid GStopTime from $line!"),
-            stopId = line[STOP_ID]?.trim()
-                ?.let { agencyTools?.cleanStopOriginalId(it) ?: it }
-                ?: throw MTLog.Fatal("Invalid GStopTime from $line!"),
-            stopSequence = line[STOP_SEQUENCE]?.trim()?.toInt() ?: throw MTLog.Fatal("Invalid GStopTime from $line!"),
-            stopHeadsign = line[STOP_HEADSIGN]?.takeIf { it.isNotBlank() },
-            pickupType = GPickupType.parse(line[PICKUP_TYPE]),
-            dropOffType = GDropOffType.parse(line[DROP_OFF_TYPE]),
-            timePoint = GTimePoint.parse(line[TIME_POINT]),
-        )
+        fun fromLine(line: GCsvRow, agencyTools: GAgencyTools? = null): GStopTime {
+            val c = line.getColumns(LineColumns::class.java, ::LineColumns)
+            return GStopTime(
+                tripId = line[c.tripId]?.trim()
+                    ?.let { agencyTools?.cleanTripOriginalId(it) ?: it }
+                    ?: throw MTLog.Fatal("Invalid GStopTime from $line!"),
+                arrivalTime = line[c.arrivalTime]?.trim() ?: throw MTLog.Fatal("Invalid GStopTime from $line!"),
+                departureTime = line[c.departureTime]?.trim() ?: throw MTLog.Fatal("Invalid GStopTime from $line!"),
+                stopId = line[c.stopId]?.trim()
+                    ?.let { agencyTools?.cleanStopOriginalId(it) ?: it }
+                    ?: throw MTLog.Fatal("Invalid GStopTime from $line!"),
+                stopSequence = line.getInt(c.stopSequence) ?: throw MTLog.Fatal("Invalid GStopTime from $line!"),
+                stopHeadsign = line.getOptionalString(c.stopHeadsign),
+                pickupType = GPickupType.parse(line[c.pickupType]),
+                dropOffType = GDropOffType.parse(line[c.dropOffType]),
+                timePoint = GTimePoint.parse(line[c.timePoint]),
+            )
+        }
 
         @JvmStatic
         fun from(stopTimes: Collection<StopTime>) = stopTimes.mapNotNull { from(it) }
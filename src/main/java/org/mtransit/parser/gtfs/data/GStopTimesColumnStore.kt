@@ -0,0 +1,324 @@
+package org.mtransit.parser.gtfs.data
+
+import androidx.collection.MutableIntList
+import androidx.collection.mutableIntObjectMapOf
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+/**
+ * Off-heap stop times: fixed-width rows of int columns in fixed-size direct [ByteBuffer] chunks,
+ * sorted by trip ID integer (then stop sequence) with a per-trip offset index ([GIDs] integers are dense).
+ *
+ * Rows inserted after the last compaction are appended to a tail (indexed per trip) until the next compaction (on read).
+ * Primary key: trip ID & stop sequence (same as stop times table).
+ * Grows 1 chunk at a time & compacts in place (rows never copied to a 2nd full-size buffer), max ~2.1B rows.
+ *
+ * Thread-safe (synchronized): 1 writer (GTFS reader) but concurrent readers (route tasks) & reads may compact.
+ */
+class GStopTimesColumnStore {
+
+    companion object {
+        private const val COL_TRIP_ID = 0
+        private const val COL_STOP_ID = 1
+        private const val COL_STOP_SEQUENCE = 2
+        private const val COL_ARRIVAL_TIME = 3
+        private const val COL_DEPARTURE_TIME = 4
+        private const val COL_PICKUP_TYPE = 5
+        private const val COL_DROP_OFF_TYPE = 6
+        private const val COL_TIME_POINT = 7
+        private const val COL_STOP_HEADSIGN = 8
+        private const val COLUMNS = 9
+
+        private const val ROW_BYTES = COLUMNS * Int.SIZE_BYTES
+
+        private const val NO_STOP_HEADSIGN = -1
+        private const val DELETED = -1 // trip ID
+
+        private const val CHUNK_SHIFT = 16
+        private const val CHUNK_ROWS = 1 shl CHUNK_SHIFT // 65,536 rows (~2.4 MB)
+        private const val CHUNK_MASK = CHUNK_ROWS - 1
+        private const val MAX_CHUNKS = Int.MAX_VALUE / CHUNK_ROWS // row index = Int
+
+        private const val MAX_TAIL_RATIO = 8 // compact if tail > 1/8 of sorted rows
+
+        private const val NO_ROW = -1
+
+        private fun allocateChunk(): ByteBuffer = ByteBuffer.allocateDirect(CHUNK_ROWS * ROW_BYTES).order(ByteOrder.nativeOrder())
+    }
+
+    private val chunks = arrayListOf(allocateChunk()) // row in chunk [row >> CHUNK_SHIFT]
+
+    private var rowCount = 0 // sorted + tail (including deleted)
+    private var sortedCount = 0 // rows [0, sortedCount) sorted by trip & stop sequence
+
+    // sorted rows index per trip ID integer
+    private var tripStarts = IntArray(0)
+    private var tripEnds = IntArray(0) // exclusive
+
+    private val tailTripRows = mutableIntObjectMapOf<MutableIntList>()
+    private var tailCount = 0
+
+    private var deletedCount = 0
+
+    private val stopHeadsigns = ArrayList<String>()
+    private val stopHeadsignIds = HashMap<String, Int>()
+
+    val size: Int @Synchronized get() = rowCount - deletedCount
+
+    val offHeapSizeInBytes: Long @Synchronized get() = chunks.size.toLong() * CHUNK_ROWS * ROW_BYTES
+
+    /**
+     * Remove all rows (off-heap memory released once previous chunks garbage collected).
+     */
+    @Synchronized
+    fun clear() {
+        chunks.clear()
+        chunks.add(allocateChunk())
+        rowCount = 0
+        sortedCount = 0
+        tripStarts = IntArray(0)
+        tripEnds = IntArray(0)
+        tailTripRows.clear()
+        tailCount = 0
+        deletedCount = 0
+        stopHeadsigns.clear()
+        stopHeadsignIds.clear()
+    }
+
+    private fun chunk(row: Int) = chunks[row ushr CHUNK_SHIFT]
+
+    private fun offset(row: Int) = (row and CHUNK_MASK) * ROW_BYTES
+
+    private fun get(row: Int, col: Int) = chunk(row).getInt(offset(row) + col * Int.SIZE_BYTES)
+
+    private fun set(row: Int, col: Int, value: Int) {
+        chunk(row).putInt(offset(row) + col * Int.SIZE_BYTES, value)
+    }
+
+    private fun readRow(row: Int, dst: ByteArray, dstOffset: Int = 0) {
+        val chunk = chunk(row)
+        chunk.position(offset(row))
+        chunk.get(dst, dstOffset, ROW_BYTES)
+    }
+
+    private fun writeRow(row: Int, src: ByteArray, srcOffset: Int = 0) {
+        val chunk = chunk(row)
+        chunk.position(offset(row))
+        chunk.put(src, srcOffset, ROW_BYTES)
+    }
+
+    private fun hasSortedRows(tripIdInt: Int) = tripIdInt in tripStarts.indices && tripStarts[tripIdInt] < tripEnds[tripIdInt]
+
+    /**
+     * @return row index or [NO_ROW]
+     */
+    private fun findRow(tripIdInt: Int, stopSequence: Int): Int {
+        if (hasSortedRows(tripIdInt)) {
+            var low = tripStarts[tripIdInt]
+            var high = tripEnds[tripIdInt] - 1
+            while (low <= high) {
+                val mid = (low + high) ushr 1
+                val midStopSequence = get(mid, COL_STOP_SEQUENCE)
+                when {
+                    midStopSequence < stopSequence -> low = mid + 1
+                    midStopSequence > stopSequence -> high = mid - 1
+                    else -> return mid
+                }
+            }
+        }
+        tailTripRows[tripIdInt]?.forEach { row ->
+            if (get(row, COL_STOP_SEQUENCE) == stopSequence) return row
+        }
+        return NO_ROW
+    }
+
+    /**
+     * @param allowUpdate replace existing stop time with same trip & stop sequence (else duplicate = error)
+     */
+    @Synchronized
+    @JvmOverloads
+    fun insert(gStopTime: GStopTime, allowUpdate: Boolean = false) {
+        val existingRow = findRow(gStopTime.tripIdInt, gStopTime.stopSequence)
+        if (existingRow != NO_ROW) {
+            if (!allowUpdate) {
+                throw IllegalStateException("Duplicate stop time '$gStopTime'!")
+            }
+            write(existingRow, gStopTime)
+            return
+        }
+        if (rowCount == chunks.size * CHUNK_ROWS) {
+            grow()
+        }
+        val row = rowCount++
+        write(row, gStopTime)
+        tailTripRows.getOrPut(gStopTime.tripIdInt) { MutableIntList() }.add(row)
+        tailCount++
+    }
+
+    private fun write(row: Int, gStopTime: GStopTime) {
+        set(row, COL_TRIP_ID, gStopTime.tripIdInt)
+        set(row, COL_STOP_ID, gStopTime.stopIdInt)
+        set(row, COL_STOP_SEQUENCE, gStopTime.stopSequence)
+        set(row, COL_ARRIVAL_TIME, gStopTime.arrivalTime)
+        set(row, COL_DEPARTURE_TIME, gStopTime.departureTime)
+        set(row, COL_PICKUP_TYPE, gStopTime.pickupType.id)
+        set(row, COL_DROP_OFF_TYPE, gStopTime.dropOffType.id)
+        set(row, COL_TIME_POINT, gStopTime.timePoint.id)
+        set(row, COL_STOP_HEADSIGN, gStopTime.stopHeadsign?.let { stopHeadsign ->
+            stopHeadsignIds.getOrPut(stopHeadsign) { stopHeadsigns.size.also { stopHeadsigns.add(stopHeadsign) } }
+        } ?: NO_STOP_HEADSIGN)
+    }
+
+    private fun read(row: Int) = GStopTime(
+        get(row, COL_TRIP_ID),
+        get(row, COL_ARRIVAL_TIME),
+        get(row, COL_DEPARTURE_TIME),
+        get(row, COL_STOP_ID),
+        get(row, COL_STOP_SEQUENCE),
+        get(row, COL_STOP_HEADSIGN).takeIf { it != NO_STOP_HEADSIGN }?.let { stopHeadsigns[it] },
+        get(row, COL_PICKUP_TYPE),
+        get(row, COL_DROP_OFF_TYPE),
+        get(row, COL_TIME_POINT),
+    )
+
+    private fun grow() {
+        if (chunks.size >= MAX_CHUNKS) {
+            throw IllegalStateException("Too many stop times ($rowCount)!")
+        }
+        chunks.add(allocateChunk()) // existing rows NOT copied
+    }
+
+    /**
+     * @return trip stop times sorted by stop sequence (& departure time)
+     */
+    @Synchronized
+    fun select(tripIdInt: Int): List<GStopTime> {
+        compactIfNeeded()
+        val result = ArrayList<GStopTime>()
+        if (hasSortedRows(tripIdInt)) {
+            for (row in tripStarts[tripIdInt] until tripEnds[tripIdInt]) {
+                result.add(read(row))
+            }
+        }
+        tailTripRows[tripIdInt]?.let { tailRows ->
+            tailRows.forEach { row -> result.add(read(row)) }
+            result.sortWith(compareBy<GStopTime> { it.stopSequence }.thenBy { it.departureTime })
+        }
+        return result
+    }
+
+    /**
+     * @return stop times of each trip (in provided order) sorted by stop sequence (& departure time)
+     */
+    @Synchronized
+    fun select(tripIdInts: Iterable<Int>): List<GStopTime> {
+        return tripIdInts.distinct().flatMap { select(it) }
+    }
+
+    /**
+     * @return deleted rows count
+     */
+    @Synchronized
+    fun delete(tripIdInt: Int): Int {
+        var deleted = 0
+        if (hasSortedRows(tripIdInt)) {
+            for (row in tripStarts[tripIdInt] until tripEnds[tripIdInt]) {
+                set(row, COL_TRIP_ID, DELETED)
+                deleted++
+            }
+            tripEnds[tripIdInt] = tripStarts[tripIdInt]
+        }
+        tailTripRows.remove(tripIdInt)?.let { tailRows ->
+            tailRows.forEach { row ->
+                set(row, COL_TRIP_ID, DELETED)
+                deleted++
+            }
+            tailCount -= tailRows.size
+        }
+        deletedCount += deleted
+        return deleted
+    }
+
+    private fun compactIfNeeded() {
+        if (tailCount == 0 && deletedCount == 0) return
+        if (tailCount <= sortedCount / MAX_TAIL_RATIO && deletedCount <= sortedCount / MAX_TAIL_RATIO) return
+        compact()
+    }
+
+    /**
+     * Moves live rows in place sorted by trip ID integer (counting sort, stable) then stop sequence (per trip).
+     * Only extra memory: 1 destination int per row (on heap), unused chunks released.
+     */
+    @Synchronized
+    fun compact() {
+        var maxTripIdInt = -1
+        for (row in 0 until rowCount) {
+            maxTripIdInt = maxOf(maxTripIdInt, get(row, COL_TRIP_ID))
+        }
+        val newTripStarts = IntArray(maxTripIdInt + 1)
+        val newTripEnds = IntArray(maxTripIdInt + 1)
+        for (row in 0 until rowCount) {
+            val tripIdInt = get(row, COL_TRIP_ID)
+            if (tripIdInt == DELETED) continue
+            newTripEnds[tripIdInt]++ // count
+        }
+        var offset = 0
+        for (tripIdInt in 0..maxTripIdInt) {
+            val count = newTripEnds[tripIdInt]
+            newTripStarts[tripIdInt] = offset
+            newTripEnds[tripIdInt] = offset // next write position
+            offset += count
+        }
+        val destinations = IntArray(rowCount)
+        var deletedDestination = offset // deleted rows moved after live rows (dropped)
+        for (row in 0 until rowCount) {
+            val tripIdInt = get(row, COL_TRIP_ID)
+            destinations[row] = if (tripIdInt == DELETED) deletedDestination++ else newTripEnds[tripIdInt]++
+        }
+        val rowBytes = ByteArray(ROW_BYTES)
+        val destinationRowBytes = ByteArray(ROW_BYTES)
+        for (row in 0 until rowCount) { // follow permutation cycles: 1 swap = 1 row at its destination
+            while (destinations[row] != row) {
+                val destination = destinations[row]
+                readRow(row, rowBytes)
+                readRow(destination, destinationRowBytes)
+                writeRow(destination, rowBytes)
+                writeRow(row, destinationRowBytes)
+                destinations[row] = destinations[destination]
+                destinations[destination] = destination
+            }
+        }
+        val chunksCount = maxOf(1L, (offset.toLong() + CHUNK_MASK) shr CHUNK_SHIFT).toInt()
+        while (chunks.size > chunksCount) {
+            chunks.removeAt(chunks.size - 1) // released once garbage collected
+        }
+        rowCount = offset
+        sortedCount = offset
+        tripStarts = newTripStarts
+        tripEnds = newTripEnds
+        tailTripRows.clear()
+        tailCount = 0
+        deletedCount = 0
+        for (tripIdInt in 0..maxTripIdInt) {
+            sortTripRows(tripStarts[tripIdInt], tripEnds[tripIdInt])
+        }
+    }
+
+    private fun compareRowsInTrip(row1: Int, row2: Int): Int {
+        return get(row1, COL_STOP_SEQUENCE).compareTo(get(row2, COL_STOP_SEQUENCE)).takeIf { it != 0 }
+            ?: get(row1, COL_DEPARTURE_TIME).compareTo(get(row2, COL_DEPARTURE_TIME))
+    }
+
+    private fun sortTripRows(start: Int, end: Int) {
+        if (end - start < 2) return
+        val order = (start until end).sortedWith(::compareRowsInTrip) // stable
+        if (order.withIndex().all { (idx, row) -> row == start + idx }) return // usually already sorted
+        val tripRowsBytes = ByteArray((end - start) * ROW_BYTES)
+        for (row in start until end) {
+            readRow(row, tripRowsBytes, (row - start) * ROW_BYTES)
+        }
+        order.forEachIndexed { idx, row ->
+            writeRow(start + idx, tripRowsBytes, (row - start) * ROW_BYTES)
+        }
+    }
+}
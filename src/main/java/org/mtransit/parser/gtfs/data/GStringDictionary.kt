@@ -0,0 +1,172 @@
+package org.mtransit.parser.gtfs.data
+
+import java.util.concurrent.atomic.AtomicIntegerArray
+import kotlin.text.Charsets.UTF_8
+
+/**
+ * Append-only string <-> integer dictionary: contiguous integers (0, 1, 2...) in insertion order.
+ *
+ * Strings are stored as UTF-8 bytes in fixed-size pages (no [String] or boxed [Int] per entry),
+ * indexed by an open addressing hash table (hash codes + content comparison: hash code collisions are real).
+ *
+ * Thread-safe: lock-free reads, serialized inserts (contiguous integers).
+ * Entries bytes are written before being published (volatile writes): an integer read from the dictionary always has its string.
+ */
+class GStringDictionary {
+
+    companion object {
+        const val NOT_FOUND = -1
+
+        private const val PAGE_SIZE = 64 * 1024 // bytes
+        const val MAX_LENGTH = PAGE_SIZE - 1 // bytes (fits in an entry 16 bits)
+
+        private const val ENTRY_CHUNK_BITS = 12
+        private const val ENTRY_CHUNK_SIZE = 1 shl ENTRY_CHUNK_BITS
+        private const val ENTRY_CHUNK_MASK = ENTRY_CHUNK_SIZE - 1
+
+        private const val INITIAL_TABLE_CAPACITY = 1024 // power of 2
+        private const val EMPTY_SLOT = 0 // slots contain integer + 1
+
+        // entry: page (32 bits) | offset (16 bits) | length (16 bits)
+        private fun entryOf(page: Int, offset: Int, length: Int) = (page.toLong() shl 32) or (offset.toLong() shl 16) or length.toLong()
+
+        private fun pageOf(entry: Long) = (entry ushr 32).toInt()
+
+        private fun offsetOf(entry: Long) = ((entry ushr 16) and 0xFFFF).toInt()
+
+        private fun lengthOf(entry: Long) = (entry and 0xFFFF).toInt()
+
+        private fun spread(hash: Int) = hash xor (hash ushr 16)
+    }
+
+    private class Table(val capacity: Int) {
+        val slots = AtomicIntegerArray(capacity)
+        val hashes = IntArray(capacity) // written before slot
+
+        fun isFull(size: Int) = size >= capacity / 2 // load factor: 0.5
+
+        fun put(hash: Int, integer: Int) {
+            val mask = capacity - 1
+            var slot = spread(hash) and mask
+            while (slots.get(slot) != EMPTY_SLOT) {
+                slot = (slot + 1) and mask
+            }
+            hashes[slot] = hash
+            slots.set(slot, integer + 1) // publish
+        }
+    }
+
+    @Volatile
+    private var pages = arrayOf(ByteArray(PAGE_SIZE))
+    private var lastPageLength = 0 // writer only
+
+    @Volatile
+    private var entryChunks = arrayOf(LongArray(ENTRY_CHUNK_SIZE))
+
+    @Volatile
+    private var table = Table(INITIAL_TABLE_CAPACITY)
+
+    @Volatile
+    var size = 0
+        private set
+
+    /**
+     * @return bytes used by strings, entries & hash table
+     */
+    val sizeInBytes: Long
+        get() = pages.size.toLong() * PAGE_SIZE +
+                entryChunks.size.toLong() * ENTRY_CHUNK_SIZE * Long.SIZE_BYTES +
+                table.capacity.toLong() * 2L * Int.SIZE_BYTES
+
+    private fun getEntry(integer: Int) = entryChunks[integer ushr ENTRY_CHUNK_BITS][integer and ENTRY_CHUNK_MASK]
+
+    /**
+     * @return string or `null` if unknown integer
+     */
+    fun getString(integer: Int): String? {
+        if (integer < 0 || integer >= size) return null
+        val entry = getEntry(integer)
+        return String(pages[pageOf(entry)], offsetOf(entry), lengthOf(entry), UTF_8)
+    }
+
+    /**
+     * @return integer or [NOT_FOUND]
+     */
+    fun getInt(string: String) = find(table, string, string.hashCode())
+
+    /**
+     * @return existing integer or new integer (next one)
+     */
+    fun getOrAdd(string: String): Int {
+        val integer = getInt(string)
+        if (integer != NOT_FOUND) return integer
+        return add(string)
+    }
+
+    private fun find(table: Table, string: String, hash: Int): Int {
+        val mask = table.capacity - 1
+        var slot = spread(hash) and mask
+        while (true) {
+            val value = table.slots.get(slot)
+            if (value == EMPTY_SLOT) return NOT_FOUND
+            if (table.hashes[slot] == hash && contentEquals(value - 1, string)) return value - 1
+            slot = (slot + 1) and mask
+        }
+    }
+
+    private fun contentEquals(integer: Int, string: String): Boolean {
+        val entry = getEntry(integer)
+        val page = pages[pageOf(entry)]
+        val offset = offsetOf(entry)
+        val length = lengthOf(entry)
+        if (length < string.length) return false // UTF-8: at least 1 byte per char
+        for (i in string.indices) {
+            val char = string[i]
+            if (char.code >= 0x80) { // non-ASCII (rare)
+                val bytes = string.toByteArray(UTF_8)
+                return bytes.size == length && bytes.indices.all { page[offset + it] == bytes[it] }
+            }
+            if (page[offset + i] != char.code.toByte()) return false
+        }
+        return length == string.length
+    }
+
+    @Synchronized
+    private fun add(string: String): Int {
+        val hash = string.hashCode()
+        val existingInteger = find(table, string, hash) // added by another thread
+        if (existingInteger != NOT_FOUND) return existingInteger
+        val bytes = string.toByteArray(UTF_8)
+        require(bytes.size <= MAX_LENGTH) { "String too long (${bytes.size} bytes): '${string.take(100)}...'!" }
+        if (lastPageLength + bytes.size > PAGE_SIZE) {
+            val currentPages = pages
+            pages = Array(currentPages.size + 1) { if (it < currentPages.size) currentPages[it] else ByteArray(PAGE_SIZE) }
+            lastPageLength = 0
+        }
+        val page = pages.size - 1
+        bytes.copyInto(pages[page], lastPageLength)
+        val newInteger = size
+        if (newInteger ushr ENTRY_CHUNK_BITS >= entryChunks.size) {
+            val currentEntryChunks = entryChunks
+            entryChunks = Array(currentEntryChunks.size + 1) { if (it < currentEntryChunks.size) currentEntryChunks[it] else LongArray(ENTRY_CHUNK_SIZE) }
+        }
+        entryChunks[newInteger ushr ENTRY_CHUNK_BITS][newInteger and ENTRY_CHUNK_MASK] = entryOf(page, lastPageLength, bytes.size)
+        lastPageLength += bytes.size
+        if (table.isFull(newInteger + 1)) {
+            table = rehash(table, table.capacity * 2)
+        }
+        size = newInteger + 1 // published to readers (integer -> string)
+        table.put(hash, newInteger) // published to readers (string -> integer), after size
+        return newInteger
+    }
+
+    private fun rehash(table: Table, newCapacity: Int): Table {
+        val newTable = Table(newCapacity)
+        for (slot in 0 until table.capacity) {
+            val value = table.slots.get(slot)
+            if (value == EMPTY_SLOT) continue
+            newTable.put(table.hashes[slot], value - 1)
+        }
+        return newTable
+    }
+}
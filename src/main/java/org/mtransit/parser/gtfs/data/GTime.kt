@@ -1,21 +1,86 @@
 package org.mtransit.parser.gtfs.data
 
+import androidx.annotation.VisibleForTesting
 import org.mtransit.parser.Constants.EMPTY
 import org.mtransit.parser.MTLog
 import java.util.Calendar
 import java.util.Date
+import java.util.TimeZone
 
+/**
+ * GTFS time as `HHmmss` integer (hours can be > 24 for trips after midnight).
+ */
 @Suppress("unused", "MemberVisibilityCanBePrivate")
 object GTime {
 
     private val TIME_SEPARATOR_REGEX = ":".toRegex()
 
+    private const val TIME_SEPARATOR = ':'
+
+    private const val MAX_FAST_PARSE_DIGITS = 9 // no overflow
+
+    private const val SECONDS_IN_MINUTE = 60
+    private const val SECONDS_IN_HOUR = 60 * SECONDS_IN_MINUTE
+    private const val MS_IN_SECOND = 1_000L
+
+    // default time zone read once (same as new SimpleDateFormat() but without cloning it on each call)
+    private var timeZone: TimeZone? = null
+
+    private fun getTimeZone() = timeZone ?: TimeZone.getDefault().also { timeZone = it }
+
+    @VisibleForTesting
+    @JvmStatic
+    fun resetTimeZone() {
+        timeZone = null
+    }
+
+    /**
+     * @param timeS `H:MM:SS` or `HH:MM:SS`
+     */
     @JvmStatic
     fun fromString(timeS: String?): Int {
         if (timeS.isNullOrEmpty()) {
             return -1
         }
-        return TIME_SEPARATOR_REGEX.replace(timeS, EMPTY).toInt()
+        var result = 0
+        var digits = 0
+        for (i in timeS.indices) {
+            val c = timeS[i]
+            if (c == TIME_SEPARATOR) continue
+            val digit = c - '0'
+            if (digit < 0 || digit > 9 || ++digits > MAX_FAST_PARSE_DIGITS) {
+                return TIME_SEPARATOR_REGEX.replace(timeS, EMPTY).toInt() // sign, overflow, invalid...
+            }
+            result = result * 10 + digit
+        }
+        if (digits == 0) {
+            return TIME_SEPARATOR_REGEX.replace(timeS, EMPTY).toInt() // throws NumberFormatException
+        }
+        return result
+    }
+
+    @JvmStatic
+    fun getHours(time: Int) = time / 1_00_00
+
+    @JvmStatic
+    fun getMinutes(time: Int) = time / 1_00 % 1_00
+
+    @JvmStatic
+    fun getSeconds(time: Int) = time % 1_00
+
+    /**
+     * @return seconds since midnight (minutes & seconds >= 60 added like lenient [java.text.SimpleDateFormat])
+     */
+    @JvmStatic
+    fun toSecondsSinceMidnight(time: Int): Int {
+        return getHours(time) * SECONDS_IN_HOUR + getMinutes(time) * SECONDS_IN_MINUTE + getSeconds(time)
+    }
+
+    @JvmStatic
+    fun fromSecondsSinceMidnight(seconds: Int): Int {
+        return seconds / SECONDS_IN_HOUR * 1_00_00 +
+                seconds % SECONDS_IN_HOUR / SECONDS_IN_MINUTE * 1_00 +
+                seconds % SECONDS_IN_MINUTE
     }
 
     @JvmStatic
@@ -28,7 +93,7 @@ object GTime {
 
     @JvmStatic
     fun fromCal(cal: Calendar): Int {
-        return fromDate(cal.time)
+        return cal.get(Calendar.HOUR_OF_DAY) * 1_00_00 + cal.get(Calendar.MINUTE) * 1_00 + cal.get(Calendar.SECOND)
     }
 
     @JvmStatic
@@ -57,13 +122,20 @@ object GTime {
 
     @JvmStatic
     fun toDate(time: Int): Date {
-        val sTime = toString(time) ?: throw MTLog.Fatal("Unexpected date to parse '$time'!")
-        return GFieldTypes.makeTimeFormat().parse(sTime)
+        return Date(toMs(time))
     }
 
+    /**
+     * @return same as [GFieldTypes.makeTimeFormat] parsing: 1970-01-01 + time in default time zone (> 24h = next day)
+     */
     @JvmStatic
     fun toMs(time: Int): Long {
-        return toDate(time).time
+        if (time < 0) {
+            throw MTLog.Fatal("Unexpected date to parse '$time'!")
+        }
+        val localMs = toSecondsSinceMidnight(time) * MS_IN_SECOND
+        val timeZone = getTimeZone()
+        return localMs - timeZone.getOffset(localMs - timeZone.rawOffset)
     }
 
     @JvmStatic
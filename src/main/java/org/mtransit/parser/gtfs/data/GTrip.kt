@@ -5,6 +5,7 @@ import org.mtransit.commons.StringUtils
 import org.mtransit.commons.gtfs.data.Trip
 import org.mtransit.parser.MTLog
 import org.mtransit.parser.gtfs.GAgencyTools
+import org.mtransit.parser.gtfs.GCsvRow
 
 // https://gtfs.org/reference/static/#tripstxt
 data class GTrip(
@@ -142,25 +143,41 @@ data class GTrip(
         private const val WHEELCHAIR_ACCESSIBLE = "wheelchair_accessible"
         private const val BIKES_ALLOWED = "bikes_allowed"
 
+        private class LineColumns(line: GCsvRow) {
+            val tripId = line.getColumnIndex(TRIP_ID)
+            val routeId = line.getColumnIndex(ROUTE_ID)
+            val serviceId = line.getColumnIndex(SERVICE_ID)
+            val tripHeadsign = line.getColumnIndex(TRIP_HEADSIGN)
+            val tripShortName = line.getColumnIndex(TRIP_SHORT_NAME)
+            val directionId = line.getColumnIndex(DIRECTION_ID)
+            val blockId = line.getColumnIndex(BLOCK_ID)
+            val shapeId = line.getColumnIndex(SHAPE_ID)
+            val wheelchairAccessible = line.getColumnIndex(WHEELCHAIR_ACCESSIBLE)
+            val bikesAllowed = line.getColumnIndex(BIKES_ALLOWED)
+        }
+
         @JvmOverloads
         @JvmStatic
-        fun fromLine(line: Map<String, String>, agencyTools: GAgencyTools? = null) = GTrip(
-            tripId = line[TRIP_ID]?.trim()
-                ?.let { agencyTools?.cleanTripOriginalId(it) ?: it }
-                ?: throw MTLog.Fatal("Invalid GTrip from $line!"),
-            routeId = line[ROUTE_ID]?.trim()
-                ?.let { agencyTools?.cleanRouteOriginalId(it) ?: it }
-                ?: throw MTLog.Fatal("Invalid GTrip from $line!"),
-            originalRouteId = line[ROUTE_ID] ?: throw MTLog.Fatal("Invalid GTrip from $line!"),
-            serviceId = line[SERVICE_ID] ?: throw MTLog.Fatal("Invalid GTrip from $line!"),
-            tripHeadsign = line[TRIP_HEADSIGN]?.takeIf { it.isNotBlank() },
-            tripShortName = line[TRIP_SHORT_NAME]?.takeIf { it.isNotBlank() },
-            directionId = line[DIRECTION_ID]?.takeIf { it.isNotBlank() }?.toInt(),
-            blockId = line[BLOCK_ID]?.takeIf { it.isNotBlank() },
-            shapeId = line[SHAPE_ID]?.takeIf { it.isNotBlank() },
-            wheelchairBoardingId = line[WHEELCHAIR_ACCESSIBLE]?.takeIf { it.isNotBlank() }?.toInt(),
-            bikesAllowed = line[BIKES_ALLOWED]?.takeIf { it.isNotBlank() }?.toBoolean(),
-        )
+        fun fromLine(line: GCsvRow, agencyTools: GAgencyTools? = null): GTrip {
+            val c = line.getColumns(LineColumns::class.java, ::LineColumns)
+            return GTrip(
+                tripId = line[c.tripId]?.trim()
+                    ?.let { agencyTools?.cleanTripOriginalId(it) ?: it }
+                    ?: throw MTLog.Fatal("Invalid GTrip from $line!"),
+                routeId = line[c.routeId]?.trim()
+                    ?.let { agencyTools?.cleanRouteOriginalId(it) ?: it }
+                    ?: throw MTLog.Fatal("Invalid GTrip from $line!"),
+                originalRouteId = line[c.routeId] ?: throw MTLog.Fatal("Invalid GTrip from $line!"),
+                serviceId = line[c.serviceId] ?: throw MTLog.Fatal("Invalid GTrip from $line!"),
+                tripHeadsign = line.getOptionalString(c.tripHeadsign),
+                tripShortName = line.getOptionalString(c.tripShortName),
+                directionId = line.getOptionalInt(c.directionId),
+                blockId = line.getOptionalString(c.blockId),
+                shapeId = line.getOptionalString(c.shapeId),
+                wheelchairBoardingId = line.getOptionalInt(c.wheelchairAccessible),
+                bikesAllowed = line.getOptionalString(c.bikesAllowed)?.toBoolean(),
+            )
+        }
 
         @JvmStatic
         fun from(trips: Collection<Trip>) = trips.mapNotNull { from(it) }
@@ -0,0 +1,109 @@
+package org.mtransit.parser.gtfs.data
+
+/**
+ * Trips indexed by trip ID integer ([GIDs] integers are dense, starting at 0): O(1) lookups without boxing.
+ *
+ * Also holds the trip exclusion verdict computed once while reading GTFS (reset when the trip is replaced).
+ */
+class GTripIndex {
+
+    companion object {
+        const val NO_ID = -1
+
+        private const val INITIAL_CAPACITY = 1024
+
+        private const val VERDICT_UNKNOWN: Byte = 0
+        private const val VERDICT_KEEP: Byte = 1
+        private const val VERDICT_EXCLUDE: Byte = 2
+    }
+
+    private var trips = arrayOfNulls<GTrip>(INITIAL_CAPACITY)
+    private var routeIdInts = IntArray(INITIAL_CAPACITY) { NO_ID }
+    private var serviceIdInts = IntArray(INITIAL_CAPACITY) { NO_ID }
+    private var verdicts = ByteArray(INITIAL_CAPACITY)
+
+    var size = 0
+        private set
+
+    private fun ensureCapacity(tripIdInt: Int) {
+        if (tripIdInt < trips.size) return
+        var newCapacity = trips.size
+        while (newCapacity <= tripIdInt) {
+            newCapacity *= 2
+        }
+        val oldCapacity = trips.size
+        trips = trips.copyOf(newCapacity)
+        routeIdInts = routeIdInts.copyOf(newCapacity).also { it.fill(NO_ID, oldCapacity) }
+        serviceIdInts = serviceIdInts.copyOf(newCapacity).also { it.fill(NO_ID, oldCapacity) }
+        verdicts = verdicts.copyOf(newCapacity)
+    }
+
+    private fun isIndexed(tripIdInt: Int) = tripIdInt >= 0 && tripIdInt < trips.size && trips[tripIdInt] != null
+
+    /**
+     * Same trip ID added twice: last route wins but 1st trip of this route is kept (same as previous route trips scan).
+     */
+    fun add(gTrip: GTrip) {
+        val tripIdInt = gTrip.tripIdInt
+        if (isIndexed(tripIdInt) && routeIdInts[tripIdInt] == gTrip.routeIdInt) return
+        put(gTrip)
+    }
+
+    /**
+     * Add or replace (updated copy).
+     */
+    fun put(gTrip: GTrip) {
+        val tripIdInt = gTrip.tripIdInt
+        ensureCapacity(tripIdInt)
+        if (trips[tripIdInt] == null) size++
+        if (trips[tripIdInt] !== gTrip) verdicts[tripIdInt] = VERDICT_UNKNOWN
+        trips[tripIdInt] = gTrip
+        routeIdInts[tripIdInt] = gTrip.routeIdInt
+        serviceIdInts[tripIdInt] = gTrip.serviceIdInt
+    }
+
+    /**
+     * @return `true` if removed (same trip ID & route)
+     */
+    fun remove(gTrip: GTrip): Boolean {
+        val tripIdInt = gTrip.tripIdInt
+        if (!isIndexed(tripIdInt) || routeIdInts[tripIdInt] != gTrip.routeIdInt) return false
+        trips[tripIdInt] = null
+        routeIdInts[tripIdInt] = NO_ID
+        serviceIdInts[tripIdInt] = NO_ID
+        verdicts[tripIdInt] = VERDICT_UNKNOWN
+        size--
+        return true
+    }
+
+    operator fun get(tripIdInt: Int): GTrip? = if (isIndexed(tripIdInt)) trips[tripIdInt] else null
+
+    operator fun contains(tripIdInt: Int) = isIndexed(tripIdInt)
+
+    /**
+     * @return route ID integer or [NO_ID]
+     */
+    fun getRouteIdInt(tripIdInt: Int) = if (isIndexed(tripIdInt)) routeIdInts[tripIdInt] else NO_ID
+
+    /**
+     * @return service ID integer or [NO_ID]
+     */
+    fun getServiceIdInt(tripIdInt: Int) = if (isIndexed(tripIdInt)) serviceIdInts[tripIdInt] else NO_ID
+
+    fun setExcluded(tripIdInt: Int, excluded: Boolean) {
+        if (!isIndexed(tripIdInt)) return
+        verdicts[tripIdInt] = if (excluded) VERDICT_EXCLUDE else VERDICT_KEEP
+    }
+
+    /**
+     * @return `null` if unknown (trip NOT indexed or verdict NOT computed)
+     */
+    fun isExcluded(tripIdInt: Int): Boolean? {
+        if (!isIndexed(tripIdInt)) return null
+        return when (verdicts[tripIdInt]) {
+            VERDICT_EXCLUDE -> true
+            VERDICT_KEEP -> false
+            else -> null
+        }
+    }
+}
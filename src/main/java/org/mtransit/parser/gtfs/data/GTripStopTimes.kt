@@ -0,0 +1,55 @@
+package org.mtransit.parser.gtfs.data
+
+import androidx.collection.MutableIntIntMap
+
+/**
+ * Stop times of 1 trip (sorted by stop sequence) indexed by stop sequence:
+ * stop times of a trip stop found in O(1) instead of scanning all the trip stop times for each trip stop.
+ */
+class GTripStopTimes(
+    val stopTimes: List<GStopTime>,
+) {
+
+    companion object {
+        const val NO_INDEX = -1
+    }
+
+    private val stopSequenceFirstIndexes = MutableIntIntMap(stopTimes.size)
+
+    init {
+        stopTimes.forEachIndexed { index, gStopTime ->
+            if (gStopTime.stopSequence !in stopSequenceFirstIndexes) {
+                stopSequenceFirstIndexes[gStopTime.stopSequence] = index
+            }
+        }
+    }
+
+    /**
+     * @return index of the 1st stop time with a lower stop sequence than the previous one or [NO_INDEX] if sorted
+     */
+    fun findOutOfOrderIndex(): Int {
+        for (index in 1 until stopTimes.size) {
+            if (stopTimes[index].stopSequence < stopTimes[index - 1].stopSequence) {
+                return index
+            }
+        }
+        return NO_INDEX
+    }
+
+    /**
+     * Requires sorted stop times ([findOutOfOrderIndex]): same stop sequence stop times are contiguous.
+     * @return stop times matching this trip stop (trip, stop & stop sequence) in list order
+     */
+    fun select(gTripStop: GTripStop): List<GStopTime> {
+        val firstIndex = stopSequenceFirstIndexes.getOrDefault(gTripStop.stopSequence, NO_INDEX)
+        if (firstIndex == NO_INDEX) return emptyList()
+        val result = ArrayList<GStopTime>(1) // usually 1
+        var index = firstIndex
+        while (index < stopTimes.size && stopTimes[index].stopSequence == gTripStop.stopSequence) {
+            val gStopTime = stopTimes[index++]
+            if (gStopTime.tripIdInt != gTripStop.tripIdInt || gStopTime.stopIdInt != gTripStop.stopIdInt) continue
+            result.add(gStopTime)
+        }
+        return result
+    }
+}
@@ -1,5 +1,8 @@
 package org.mtransit.parser.mt;
 
+import androidx.annotation.VisibleForTesting;
+import androidx.collection.MutableIntIntMap;
+import androidx.collection.MutableLongObjectMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.mtransit.commons.CollectionUtils;
@@ -8,21 +11,21 @@ import org.mtransit.parser.Constants;
 import org.mtransit.parser.MTLog;
 import org.mtransit.parser.Pair;
 import org.mtransit.parser.db.DBUtils;
-import org.mtransit.parser.db.GTFSDataBase;
 import org.mtransit.parser.gtfs.GAgencyTools;
 import org.mtransit.parser.gtfs.data.GAgency;
 import org.mtransit.parser.gtfs.data.GCalendar;
 import org.mtransit.parser.gtfs.data.GCalendarDate;
 import org.mtransit.parser.gtfs.data.GFieldTypes;
 import org.mtransit.parser.gtfs.data.GFrequency;
-import org.mtransit.parser.gtfs.data.GIDs;
 import org.mtransit.parser.gtfs.data.GPickupType;
 import org.mtransit.parser.gtfs.data.GRoute;
+import org.mtransit.parser.gtfs.data.GRouteStore;
 import org.mtransit.parser.gtfs.data.GSpec;
 import org.mtransit.parser.gtfs.data.GStop;
 import org.mtransit.parser.gtfs.data.GStopTime;
 import org.mtransit.parser.gtfs.data.GTrip;
 import org.mtransit.parser.gtfs.data.GTripStop;
+import org.mtransit.parser.gtfs.data.GTripStopTimes;
 import org.mtransit.parser.mt.data.MAgency;
 import org.mtransit.parser.mt.data.MDirection;
 import org.mtransit.parser.mt.data.MDirectionCardinalType;
@@ -30,6 +33,7 @@ import org.mtransit.parser.mt.data.MDirectionStop;
 import org.mtransit.parser.mt.data.MFrequency;
 import org.mtransit.parser.mt.data.MRoute;
 import org.mtransit.parser.mt.data.MSchedule;
+import org.mtransit.parser.mt.data.MScheduleMap;
 import org.mtransit.parser.mt.data.MServiceDate;
 import org.mtransit.parser.mt.data.MSpec;
 import org.mtransit.parser.mt.data.MStop;
@@ -37,7 +41,6 @@ import org.mtransit.parser.mt.data.MTrip;
 
 import java.text.DateFormat;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -55,15 +58,21 @@ public class GenerateMObjectsTask implements Callable<MSpec> {
 	@NotNull
 	private final GAgencyTools agencyTools;
 	private final long routeId;
+	private final long estimatedCost; // for scheduling & tuning logs
+	private final long submittedAt;
 	@NotNull
 	private final GSpec globalGTFS;
 	@NotNull
 	private final Map<Integer, List<GStopTime>> routeGTripIdIntIdGStopTimes = new HashMap<>();
 	@NotNull
 	private final Map<Integer, List<GTripStop>> routeGTripIdIntGTripStops = new HashMap<>();
+	@NotNull
+	private final Map<Integer, GTripStopTimes> routeGTripIdIntGTripStopTimes = new HashMap<>(); // indexed by stop sequence
 
-	GenerateMObjectsTask(long routeId, @NotNull GAgencyTools agencyTools, @NotNull GSpec gtfs) {
+	GenerateMObjectsTask(long routeId, long estimatedCost, @NotNull GAgencyTools agencyTools, @NotNull GSpec gtfs) {
 		this.routeId = routeId;
+		this.estimatedCost = estimatedCost;
+		this.submittedAt = System.currentTimeMillis();
 		this.agencyTools = agencyTools;
 		this.globalGTFS = gtfs;
 	}
@@ -83,13 +92,33 @@ public class GenerateMObjectsTask implements Callable<MSpec> {
 		return this.routeGTripIdIntIdGStopTimes.getOrDefault(gTripIdInt, Collections.emptyList());
 	}
 
+	/**
+	 * @return trip stop times indexed by stop sequence (built & verified once per trip)
+	 */
+	@NotNull
+	private GTripStopTimes getTripGStopTimesIndexed(int gTripIdInt) {
+		GTripStopTimes gTripStopTimes = this.routeGTripIdIntGTripStopTimes.get(gTripIdInt);
+		if (gTripStopTimes == null) {
+			gTripStopTimes = new GTripStopTimes(getTripGStopTimes(gTripIdInt));
+			final int outOfOrderIndex = gTripStopTimes.findOutOfOrderIndex();
+			if (outOfOrderIndex != GTripStopTimes.NO_INDEX) {
+				final GStopTime lastStopTime = gTripStopTimes.getStopTimes().get(outOfOrderIndex - 1);
+				final GStopTime gStopTime = gTripStopTimes.getStopTimes().get(outOfOrderIndex);
+				MTLog.log("%s: Stop sequence out of order (%s => '%s')!", this.routeId, lastStopTime.getStopSequence(), gStopTime);
+				throw new MTLog.Fatal("%s: Stop sequence out of order ([%s] => [%s])!", this.routeId, lastStopTime, gStopTime);
+			}
+			this.routeGTripIdIntGTripStopTimes.put(gTripIdInt, gTripStopTimes);
+		}
+		return gTripStopTimes;
+	}
+
 	private MSpec doCall() {
 		long startAt = System.currentTimeMillis();
-		MTLog.log("%s: processing... ", this.routeId);
+		MTLog.log("%s: processing... (cost: %d, waited %s)", this.routeId, this.estimatedCost, org.mtransit.parser.Utils.getPrettyDuration(startAt - this.submittedAt));
 		this.globalGTFS.add(this.routeId, this);
 		HashMap<Integer, MAgency> mAgencies = new HashMap<>();
 		HashSet<MServiceDate> mServiceDates = new HashSet<>();
-		HashMap<String, MSchedule> mSchedules = new HashMap<>();
+		MScheduleMap mSchedules = new MScheduleMap();
 		HashMap<String, MFrequency> mFrequencies = new HashMap<>();
 		HashMap<Long, MRoute> mRoutes = new HashMap<>();
 		HashMap<Long, MDirection> mDirections = new HashMap<>();
@@ -99,29 +128,7 @@ public class GenerateMObjectsTask implements Callable<MSpec> {
 		HashSet<Integer> directionStopIds = new HashSet<>(); // the list of stop IDs used by directions
 		HashSet<Integer> serviceIdInts = new HashSet<>();
 		final GSpec routeGTFS = this.globalGTFS.getRouteGTFS(this.routeId);
-		List<Integer> routeGTripsIntIds = new ArrayList<>();
-		for (GRoute gRoute : routeGTFS.getRoutes(this.routeId)) {
-			List<GTrip> routeGTrips = routeGTFS.getRouteTrips(gRoute.getRouteIdInt());
-			for (GTrip gTrip : routeGTrips) {
-				routeGTripsIntIds.add(gTrip.getTripIdInt());
-			}
-		}
-		for (GStopTime gStopTime : GStopTime.from(GTFSDataBase.selectStopTimes(GIDs.getStrings(routeGTripsIntIds), null, null))) {
-			List<GStopTime> gTripIdIntGStopTimes = routeGTripIdIntIdGStopTimes.get(gStopTime.getTripIdInt());
-			if (gTripIdIntGStopTimes == null) {
-				gTripIdIntGStopTimes = new ArrayList<>();
-			}
-			gTripIdIntGStopTimes.add(gStopTime);
-			routeGTripIdIntIdGStopTimes.put(gStopTime.getTripIdInt(), gTripIdIntGStopTimes);
-		}
-		for (GTripStop gTripStop : DBUtils.selectTripStops(null, routeGTripsIntIds, null, null)) {
-			List<GTripStop> gTripIdIntGTripStops = routeGTripIdIntGTripStops.get(gTripStop.getTripIdInt());
-			if (gTripIdIntGTripStops == null) {
-				gTripIdIntGTripStops = new ArrayList<>();
-			}
-			gTripIdIntGTripStops.add(gTripStop);
-			routeGTripIdIntGTripStops.put(gTripStop.getTripIdInt(), gTripIdIntGTripStops);
-		}
+		loadRouteStopTimesAndTripStops(routeGTFS);
 		MAgency mAgency;
 		for (GAgency gAgency : routeGTFS.getAllAgencies()) {
 			mAgency = new MAgency(gAgency, this.agencyTools, routeGTFS);
@@ -161,7 +168,7 @@ public class GenerateMObjectsTask implements Callable<MSpec> {
 			}
 		}
 		MDirection mDirection;
-		for (MSchedule mSchedule : mSchedules.values()) {
+		for (MSchedule mSchedule : mSchedules.getValues()) {
 			mDirection = mDirections.get(mSchedule.getDirectionId());
 			if (mDirection.getHeadsignType() == mSchedule.getHeadsignType() //
 					&& StringUtils.equals(mDirection.getHeadsignValue(), mSchedule.getHeadsignValue())) {
@@ -180,7 +187,7 @@ public class GenerateMObjectsTask implements Callable<MSpec> {
 		Collections.sort(mDirectionsList);
 		ArrayList<MDirectionStop> mDirectionStopsList = new ArrayList<>(allMDirectionStops.values());
 		Collections.sort(mDirectionStopsList);
-		setDirectionStopNoPickup(mDirectionStopsList, mSchedules.values());
+		setDirectionStopNoPickup(mDirectionStopsList, mSchedules);
 		ArrayList<MServiceDate> mServiceDatesList = new ArrayList<>(mServiceDates);
 		mServiceDatesList.sort(MServiceDate.getCOMPARATOR_BY_CALENDAR_DATE());
 		ArrayList<MFrequency> mFrequenciesList = new ArrayList<>(mFrequencies.values());
@@ -200,7 +207,7 @@ public class GenerateMObjectsTask implements Callable<MSpec> {
 			int lastDeparture = -1;
 			MSchedule firstSchedule = null;
 			MSchedule lastSchedule = null;
-			for (MSchedule mSchedule : mSchedules.values()) {
+			for (MSchedule mSchedule : mSchedules.getValues()) {
 				if (mSchedule.getServiceIdInt() == firstServiceDate.getServiceIdInt()) {
 					if (firstSchedule == null
 							|| mSchedule.getDeparture() < firstSchedule.getDeparture()) {
@@ -270,14 +277,54 @@ public class GenerateMObjectsTask implements Callable<MSpec> {
 				firstTimestamp,
 				lastTimestamp
 		);
-		mRouteSpec.setSchedules(mSchedules.values());
+		mRouteSpec.setSchedules(mSchedules.getValues());
 		this.globalGTFS.remove(this.routeId);
-		MTLog.log("%s: processing... DONE in %s.", this.routeId, org.mtransit.parser.Utils.getPrettyDuration(System.currentTimeMillis() - startAt));
+		MTLog.log("%s: processing... DONE in %s (cost: %d).", this.routeId, org.mtransit.parser.Utils.getPrettyDuration(System.currentTimeMillis() - startAt), this.estimatedCost);
 		return mRouteSpec;
 	}
 
+	/**
+	 * Loads route stop times & trip stops by trip ID (route store partition or SQL).
+	 */
+	@VisibleForTesting
+	void loadRouteStopTimesAndTripStops(@NotNull GSpec routeGTFS) {
+		List<Integer> routeGTripsIntIds = new ArrayList<>();
+		for (GRoute gRoute : routeGTFS.getRoutes(this.routeId)) {
+			List<GTrip> routeGTrips = routeGTFS.getRouteTrips(gRoute.getRouteIdInt());
+			for (GTrip gTrip : routeGTrips) {
+				routeGTripsIntIds.add(gTrip.getTripIdInt());
+			}
+		}
+		final GRouteStore.Partition routePartition = this.globalGTFS.takeRoutePartition(this.routeId);
+		if (routePartition != null) { // in-memory (no SQL)
+			for (int tripIdInt : routePartition.getStopTimesTripIdInts()) {
+				routeGTripIdIntIdGStopTimes.put(tripIdInt, routePartition.getTripStopTimes(tripIdInt));
+			}
+			for (int tripIdInt : routePartition.getTripStopsTripIdInts()) {
+				routeGTripIdIntGTripStops.put(tripIdInt, routePartition.getTripTripStops(tripIdInt));
+			}
+		} else {
+			for (GStopTime gStopTime : this.globalGTFS.selectStopTimes(routeGTripsIntIds)) {
+				List<GStopTime> gTripIdIntGStopTimes = routeGTripIdIntIdGStopTimes.get(gStopTime.getTripIdInt());
+				if (gTripIdIntGStopTimes == null) {
+					gTripIdIntGStopTimes = new ArrayList<>();
+				}
+				gTripIdIntGStopTimes.add(gStopTime);
+				routeGTripIdIntIdGStopTimes.put(gStopTime.getTripIdInt(), gTripIdIntGStopTimes);
+			}
+			for (GTripStop gTripStop : DBUtils.selectTripStops(null, routeGTripsIntIds, null, null)) {
+				List<GTripStop> gTripIdIntGTripStops = routeGTripIdIntGTripStops.get(gTripStop.getTripIdInt());
+				if (gTripIdIntGTripStops == null) {
+					gTripIdIntGTripStops = new ArrayList<>();
+				}
+				gTripIdIntGTripStops.add(gTripStop);
+				routeGTripIdIntGTripStops.put(gTripStop.getTripIdInt(), gTripIdIntGTripStops);
+			}
+		}
+	}
+
 	private void parseRDS(
-			HashMap<String, MSchedule> mSchedules,
+			MScheduleMap mSchedules,
 			HashMap<String, MFrequency> mFrequencies,
 			HashMap<Integer, MAgency> mAgencies,
 			HashMap<Long, MRoute> mRoutes,
@@ -452,7 +499,7 @@ public class GenerateMObjectsTask implements Callable<MSpec> {
 	}
 
 	private void parseGTrips(
-			HashMap<String, MSchedule> mSchedules,
+			MScheduleMap mSchedules,
 			HashMap<String, MFrequency> mFrequencies,
 			HashMap<Long, MDirection> mDirections,
 			HashMap<Integer, MTrip> mTrips,
@@ -618,7 +665,7 @@ public class GenerateMObjectsTask implements Callable<MSpec> {
 	}
 
 	private HashMap<Long, String> parseGTripStops(
-			HashMap<String, MSchedule> mSchedules,
+			MScheduleMap mSchedules,
 			HashSet<Integer> serviceIdInts,
 			HashMap<Integer, MStop> mStops,
 			GRoute gRoute,
@@ -636,7 +683,7 @@ public class GenerateMObjectsTask implements Callable<MSpec> {
 		long mDirectionId;
 		String directionStopTimesHeadsign;
 		Triple<Long[], Integer[], Boolean[]> mDirectionsIdStopSeqLast;
-		HashMap<String, Integer> addedMDirectionIdAndGStopIds = new HashMap<>();
+		MutableLongObjectMap<MutableIntIntMap> addedMDirectionIdAndGStopIds = new MutableLongObjectMap<>(1); // direction ID -> stop ID -> stop sequence (1 trip)
 		final List<GTripStop> gTripStops = this.routeGTripIdIntGTripStops.get(gTrip.getTripIdInt());
 		if (gTripStops == null) {
 			return splitDirectionStopTimesHeadSign;
@@ -720,8 +767,9 @@ public class GenerateMObjectsTask implements Callable<MSpec> {
 	private final DateFormat TIME_FORMAT = GFieldTypes.makeTimeFormat();
 	private final DateFormat DATE_TIME_FORMAT = GFieldTypes.makeDateAndTimeFormat();
 
-	private String parseGStopTimes(
-			HashMap<String, MSchedule> mSchedules,
+	@VisibleForTesting
+	String parseGStopTimes(
+			MScheduleMap mSchedules,
 			long mDirectionId,
 			Integer serviceIdInt,
 			int originalDirectionHeadsignType,
@@ -731,40 +779,29 @@ public class GenerateMObjectsTask implements Callable<MSpec> {
 			@NotNull GTrip gTrip,
 			@NotNull GTripStop gTripStop,
 			int mStopId,
-			HashMap<String, Integer> addedMDirectionIdAndGStopIds
+			MutableLongObjectMap<MutableIntIntMap> addedMDirectionIdAndGStopIds
 	) {
 		MSchedule mSchedule;
 		String stopHeadsign;
 		boolean noPickup;
-		String directionIdStopId;
-		List<GStopTime> gTripStopTimes = getTripGStopTimes(gTripStop.getTripIdInt());
-		int lastStopSequence = -1;
-		GStopTime lastStopTime = null;
-		for (int i = 0; i < gTripStopTimes.size(); i++) {
-			GStopTime gStopTime = gTripStopTimes.get(i);
-			if (gStopTime.getStopSequence() < lastStopSequence) {
-				MTLog.log("%s: Stop sequence out of order (%s => '%s')!", this.routeId, lastStopSequence, gStopTime);
-				throw new MTLog.Fatal("%s: Stop sequence out of order ([%s] => [%s])!", this.routeId, lastStopTime, gStopTime);
-			}
-			lastStopSequence = gStopTime.getStopSequence();
-			lastStopTime = gStopTime;
+		MutableIntIntMap addedGStopIdsStopSequence = addedMDirectionIdAndGStopIds.get(mDirectionId);
+		if (addedGStopIdsStopSequence == null) {
+			addedGStopIdsStopSequence = new MutableIntIntMap(16);
+			addedMDirectionIdAndGStopIds.set(mDirectionId, addedGStopIdsStopSequence);
+		}
+		final GTripStopTimes gTripStopTimes = getTripGStopTimesIndexed(gTripStop.getTripIdInt());
+		for (GStopTime gStopTime : gTripStopTimes.select(gTripStop)) { // same trip, stop & stop sequence
 			noPickup = false;
-			if (gStopTime.getTripIdInt() != gTripStop.getTripIdInt() //
-					|| gStopTime.getStopIdInt() != gTripStop.getStopIdInt() //
-					|| gStopTime.getStopSequence() != gTripStop.getStopSequence()) {
-				continue;
-			}
 			if (gStopTime.getPickupType() == GPickupType.NO_PICKUP) { // last stop of the trip
 				noPickup = true;
 			}
-			directionIdStopId = String.valueOf(mDirectionId) + gStopTime.getTripIdInt() + gStopTime.getStopIdInt();
 			if (noPickup) {
-				if (addedMDirectionIdAndGStopIds.containsKey(directionIdStopId) //
-						&& addedMDirectionIdAndGStopIds.get(directionIdStopId) != gStopTime.getStopSequence()) {
+				if (addedGStopIdsStopSequence.containsKey(gStopTime.getStopIdInt()) //
+						&& addedGStopIdsStopSequence.get(gStopTime.getStopIdInt()) != gStopTime.getStopSequence()) {
 					// TODO later, when UI can display multiple times same stop/POI & schedules are affected to a specific sequence, keep both
 				}
 			}
-			final Pair<Integer, Integer> times = this.agencyTools.getTimes(gStopTime, gTripStopTimes, TIME_FORMAT);
+			final Pair<Integer, Integer> times = this.agencyTools.getTimes(gStopTime, gTripStopTimes.getStopTimes(), TIME_FORMAT);
 			if (times == null) {
 				if (this.agencyTools.allowIgnoreInvalidStopTimes()) {
 					continue; // this is bad, some transit agency data can NOT be fixed :(
@@ -782,14 +819,15 @@ public class GenerateMObjectsTask implements Callable<MSpec> {
 					gStopTime.getStopSequence(),
 					gTrip.getWheelchairAccessible().getId()
 			);
-			if (mSchedules.containsKey(mSchedule.getUID()) //
-					&& !mSchedules.get(mSchedule.getUID()).isSameServiceRDSDeparture(mSchedule)) {
+			final MSchedule sameUidSchedule = mSchedules.get(mSchedule);
+			if (sameUidSchedule != null //
+					&& !sameUidSchedule.isSameServiceRDSDeparture(mSchedule)) {
 				throw new MTLog.Fatal("%s: Different schedule %s (%s) already in list (%s != %s)!",
 						this.routeId,
 						mSchedule.getUID(),
-						mSchedules.get(mSchedule.getUID()).getUID(),
+						sameUidSchedule.getUID(),
 						mSchedule.toStringPlus(),
-						mSchedules.get(mSchedule.getUID()).toStringPlus());
+						sameUidSchedule.toStringPlus());
 			}
 			if (noPickup) {
 				mSchedule.setHeadsign(MDirection.HEADSIGN_TYPE_NO_PICKUP, null);
@@ -804,8 +842,8 @@ public class GenerateMObjectsTask implements Callable<MSpec> {
 			} else if (!StringUtils.isBlank(originalDirectionHeadsignValue)) {
 				mSchedule.setHeadsign(originalDirectionHeadsignType, originalDirectionHeadsignValue);
 			}
-			mSchedules.put(mSchedule.getUID(), mSchedule);
-			addedMDirectionIdAndGStopIds.put(directionIdStopId, gStopTime.getStopSequence());
+			mSchedules.put(mSchedule);
+			addedGStopIdsStopSequence.set(gStopTime.getStopIdInt(), gStopTime.getStopSequence());
 		}
 		return directionStopTimesHeadsign;
 	}
@@ -852,27 +890,10 @@ public class GenerateMObjectsTask implements Callable<MSpec> {
 
 	private void setDirectionStopNoPickup(
 			@NotNull ArrayList<MDirectionStop> mDirectionStopsList,
-			@NotNull Collection<MSchedule> mSchedules
+			@NotNull MScheduleMap mSchedules
 	) {
 		for (MDirectionStop directionStop : mDirectionStopsList) {
-			boolean noPickup = false;
-			for (MSchedule schedule : mSchedules) {
-				if (schedule.getDirectionId() != directionStop.getDirectionId()) {
-					continue;
-				}
-				if (schedule.getStopId() != directionStop.getStopId()) {
-					continue;
-				}
-				if (schedule.isNoPickup()) {
-					noPickup = true;
-					//noinspection UnnecessaryContinue
-					continue;
-				} else {
-					noPickup = false;
-					break;
-				}
-			}
-			directionStop.setNoPickup(noPickup);
+			directionStop.setNoPickup(mSchedules.isNoPickup(directionStop.getDirectionId(), directionStop.getStopId())); // all direction stop schedules
 		}
 		// SKIP (descent only set on the stop time schedule level
 	}
@@ -2,6 +2,7 @@ package org.mtransit.parser.mt;
 
 import static org.mtransit.commons.Constants.EMPTY;
 
+import androidx.collection.MutableIntLongMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.mtransit.commons.Cleaner;
@@ -18,6 +19,7 @@ import org.mtransit.parser.Pair;
 import org.mtransit.parser.Utils;
 import org.mtransit.parser.db.DBUtils;
 import org.mtransit.parser.db.DumpDbUtils;
+import org.mtransit.parser.db.GTFSDataBase;
 import org.mtransit.parser.db.SQLUtils;
 import org.mtransit.parser.gtfs.GAgencyTools;
 import org.mtransit.parser.gtfs.data.GFieldTypes;
@@ -64,9 +66,10 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TimeZone;
 import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -86,20 +89,35 @@ public class MGenerator {
 		HashSet<MServiceDate> mServiceDates = new HashSet<>(); // use set to avoid duplicates
 		long firstTimestamp = -1L;
 		long lastTimestamp = -1L;
+		MutableIntLongMap mStopRouteIds = new MutableIntLongMap(1024); // stop ID -> 1st route ID (same merge result in any completion order)
 		ExecutorService threadPoolExecutor = Executors.newFixedThreadPool(agencyTools.getThreadPoolSize());
-		ArrayList<Future<MSpec>> list = new ArrayList<>();
+		CompletionService<MSpec> completionService = new ExecutorCompletionService<>(threadPoolExecutor);
+		int taskCount = 0;
 		ArrayList<Long> routeIds = new ArrayList<>(gtfs.getRouteIds());
 		Collections.sort(routeIds);
+		final HashMap<Long, Long> routeCosts = new HashMap<>();
+		for (Long routeId : routeIds) {
+			routeCosts.put(routeId, gtfs.getRouteCost(routeId));
+		}
+		//noinspection ConstantConditions
+		if (SCHEDULE_LARGEST_ROUTES_FIRST) {
+			// largest routes 1st: NOT 1 large route last keeping the pool idle (stable sort: same cost -> route ID order)
+			routeIds.sort((routeId1, routeId2) -> Long.compare(routeCosts.get(routeId2), routeCosts.get(routeId1)));
+			if (!routeIds.isEmpty()) {
+				MTLog.log("Scheduling %d routes largest first (1st: %s, cost: %d)...", routeIds.size(), routeIds.get(0), routeCosts.get(routeIds.get(0)));
+			}
+		}
 		for (Long routeId : routeIds) {
 			if (!gtfs.hasRouteTrips(routeId)) {
 				MTLog.log("%s: Skip route because no route trips", routeId);
 				continue;
 			}
-			list.add(threadPoolExecutor.submit(new GenerateMObjectsTask(routeId, agencyTools, gtfs)));
+			completionService.submit(new GenerateMObjectsTask(routeId, routeCosts.get(routeId), agencyTools, gtfs));
+			taskCount++;
 		}
-		for (Future<MSpec> future : list) {
+		for (int completed = 0; completed < taskCount; completed++) {
 			try {
-				MSpec mRouteSpec = future.get();
+				MSpec mRouteSpec = completionService.take().get(); // merge in completion order (NOT blocked by slower routes)
 				final long mRouteId = mRouteSpec.getFirstRoute().getId();
 				MTLog.logDebug("%s: Generating routes, trips, trip stops & stops objects... (merging...)", mRouteId);
 				if (mRouteSpec.hasStops() && mRouteSpec.hasServiceDates()) {
@@ -110,17 +128,39 @@ public class MGenerator {
 					logMerging("trips...", mRouteId);
 					for (MTrip mTrip : mRouteSpec.getTrips()) {
 						final MTrip existing = mTrips.putIfAbsent(mTrip.getTripIdInt(), mTrip);
-						if (existing != null && !existing.equals(mTrip)) {
+						if (existing == null) {
+							continue;
+						}
+						// keep lowest route ID trip (same as merging in route ID order)
+						final MTrip kept = existing.getRouteId() <= mTrip.getRouteId() ? existing : mTrip;
+						final MTrip other = kept == existing ? mTrip : existing;
+						if (kept != existing) {
+							mTrips.put(mTrip.getTripIdInt(), kept);
+						}
+						if (!kept.equals(other)) {
 							//noinspection DiscouragedApi
-							MTLog.log("%s: Trip ID '%s' already in list! (%s instead of %s)", mRouteId, mTrip.getTripId(), existing.toStringPlus(), mTrip.toStringPlus());
+							MTLog.log("%s: Trip ID '%s' already in list! (%s instead of %s)", other.getRouteId(), other.getTripId(), kept.toStringPlus(), other.toStringPlus());
 						}
 					}
 					logMerging("trips... DONE", mRouteId);
 					logMerging("stops...", mRouteId);
 					for (MStop mStop : mRouteSpec.getStops()) {
 						final MStop existing = mStops.putIfAbsent(mStop.getId(), mStop);
-						if (existing != null && !existing.equals(mStop)) {
-							MTLog.log("%s: Stop ID '%s' already in list! (%s instead of %s)", mRouteId, mStop.getId(), existing, mStop);
+						if (existing == null) {
+							mStopRouteIds.put(mStop.getId(), mRouteId);
+							continue;
+						}
+						// keep lowest route ID stop (same as merging in route ID order)
+						final long existingRouteId = mStopRouteIds.get(mStop.getId());
+						final boolean keepExisting = existingRouteId <= mRouteId;
+						if (!keepExisting) {
+							mStops.put(mStop.getId(), mStop);
+							mStopRouteIds.put(mStop.getId(), mRouteId);
+						}
+						if (!existing.equals(mStop)) {
+							MTLog.log("%s: Stop ID '%s' already in list! (%s instead of %s)",
+									keepExisting ? mRouteId : existingRouteId, mStop.getId(),
+									keepExisting ? existing : mStop, keepExisting ? mStop : existing);
 						}
 					}
 					logMerging("stops... DONE", mRouteId);
@@ -131,12 +171,10 @@ public class MGenerator {
 						logMerging("stop schedules...", mRouteId);
 						if (mRouteSpec.getSchedules() != null) {
 							DBUtils.setAutoCommit(false);
-							for (MSchedule mSchedule : mRouteSpec.getSchedules()) {
-								DBUtils.insertSchedule(mSchedule);
-							}
+							DBUtils.insertSchedules(mRouteSpec.getSchedules());
 							DBUtils.setAutoCommit(true); // true => commit()
 						}
-						mRouteSpec.setSchedules(null); // clear
+						mRouteSpec.setSchedules(null); // clear (released as soon as persisted)
 						logMerging("stop schedules... DONE", mRouteId);
 					}
 					if (mRouteSpec.hasRouteFrequencies()) {
@@ -161,7 +199,7 @@ public class MGenerator {
 				} else {
 					MTLog.logDebug("%s: Generating routes, trips, trip stops & stops objects... (EMPTY)", mRouteId);
 				}
-				MTLog.logDebug("%s: Generating routes, trips, trip stops & stops objects... (merging... DONE)", mRouteId);
+				MTLog.logDebug("%s: Generating routes, trips, trip stops & stops objects... (merging... DONE) (%d/%d)", mRouteId, completed + 1, taskCount);
 			} catch (Throwable t) {
 				threadPoolExecutor.shutdownNow();
 				throw new MTLog.Fatal(t, t.getMessage());
@@ -219,6 +257,9 @@ public class MGenerator {
 		);
 	}
 
+	private static final boolean SCHEDULE_LARGEST_ROUTES_FIRST = true;
+	// private static final boolean SCHEDULE_LARGEST_ROUTES_FIRST = false; // DEBUG
+
 	private static final boolean DEBUG_LOG_MERGING = false; // Set to true to enable merging logs
 
 	private static void logMerging(@NotNull String msg, long routeId) {
@@ -331,6 +372,7 @@ public class MGenerator {
 				rawDirF.toURI(),
 				Utils.getPrettyDuration(System.currentTimeMillis() - start));
 		DBUtils.printStats();
+		GTFSDataBase.printStats();
 	}
 
 	private static void dumpRDSRoutes(@Nullable MSpec mSpec,
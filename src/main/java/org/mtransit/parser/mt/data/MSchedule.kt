@@ -89,7 +89,7 @@ data class MSchedule( // MStopTime
 
     fun isNoPickup() = headsignType == MDirection.HEADSIGN_TYPE_NO_PICKUP
 
-    val uID by lazy { getNewUID(serviceIdInt, directionId, stopId, departure) }
+    val uID: String get() = getNewUID(serviceIdInt, directionId, stopId, departure) // logs only (see MScheduleMap)
 
     fun toStringPlus(): String {
         return toString() +
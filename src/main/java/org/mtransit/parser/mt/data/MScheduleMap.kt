@@ -0,0 +1,121 @@
+package org.mtransit.parser.mt.data
+
+import androidx.collection.MutableIntIntMap
+import androidx.collection.MutableLongObjectMap
+
+/**
+ * Schedules by UID (same as [MSchedule.getNewUID]: service, direction, stop & departure) without [String] UID:
+ * open addressing table of schedules indexes, compared on their primitive fields.
+ *
+ * Values in insertion order (replaced schedule keeps its position).
+ * NOT thread-safe (1 per route task).
+ */
+class MScheduleMap {
+
+    companion object {
+        private const val INITIAL_CAPACITY = 1024 // power of 2
+        private const val EMPTY_SLOT = 0 // slots contain value index + 1
+
+        private const val NO_PICKUP_UNKNOWN = 0
+        private const val NO_PICKUP_ALL = 1
+        private const val NO_PICKUP_NOT_ALL = 2
+
+        private fun hash(serviceIdInt: Int, directionId: Long, stopId: Int, departure: Int): Int {
+            var hash = serviceIdInt
+            hash = 31 * hash + directionId.hashCode()
+            hash = 31 * hash + stopId
+            hash = 31 * hash + departure
+            return hash xor (hash ushr 16)
+        }
+
+        private fun MSchedule.hashUID() = hash(serviceIdInt, directionId, stopId, departure)
+
+        private fun MSchedule.isSameUID(other: MSchedule) = serviceIdInt == other.serviceIdInt
+                && directionId == other.directionId
+                && stopId == other.stopId
+                && departure == other.departure
+    }
+
+    private var slots = IntArray(INITIAL_CAPACITY)
+
+    private val values = ArrayList<MSchedule>()
+
+    // direction ID -> stop ID -> NO_PICKUP_* (computed on demand)
+    private var directionStopNoPickup: MutableLongObjectMap<MutableIntIntMap>? = null
+
+    val size: Int
+        get() = values.size
+
+    /**
+     * @return schedules in insertion order
+     */
+    fun getValues(): List<MSchedule> = values
+
+    /**
+     * @return schedule with the same UID or `null`
+     */
+    operator fun get(mSchedule: MSchedule): MSchedule? {
+        val slot = findSlot(mSchedule)
+        val valueIndex = slots[slot] - 1
+        return if (valueIndex < 0) null else values[valueIndex]
+    }
+
+    /**
+     * @return replaced schedule with the same UID or `null`
+     */
+    fun put(mSchedule: MSchedule): MSchedule? {
+        directionStopNoPickup = null
+        val slot = findSlot(mSchedule)
+        val valueIndex = slots[slot] - 1
+        if (valueIndex >= 0) {
+            return values.set(valueIndex, mSchedule)
+        }
+        values.add(mSchedule)
+        slots[slot] = values.size
+        if (values.size > slots.size / 2) { // load factor: 0.5
+            rehash(slots.size * 2)
+        }
+        return null
+    }
+
+    private fun findSlot(mSchedule: MSchedule): Int {
+        val mask = slots.size - 1
+        var slot = mSchedule.hashUID() and mask
+        while (true) {
+            val valueIndex = slots[slot] - 1
+            if (valueIndex < 0 || values[valueIndex].isSameUID(mSchedule)) return slot
+            slot = (slot + 1) and mask
+        }
+    }
+
+    private fun rehash(newCapacity: Int) {
+        slots = IntArray(newCapacity)
+        val mask = newCapacity - 1
+        values.forEachIndexed { valueIndex, mSchedule ->
+            var slot = mSchedule.hashUID() and mask
+            while (slots[slot] != EMPTY_SLOT) {
+                slot = (slot + 1) and mask
+            }
+            slots[slot] = valueIndex + 1
+        }
+    }
+
+    /**
+     * Computed for all direction stops on 1st call (schedules headsigns NOT updated after).
+     * @return `true` if this direction stop has schedules & all of them are no pickup
+     */
+    fun isNoPickup(directionId: Long, stopId: Int): Boolean {
+        val noPickup = (directionStopNoPickup ?: computeDirectionStopNoPickup().also { directionStopNoPickup = it })
+        return noPickup[directionId]?.getOrDefault(stopId, NO_PICKUP_UNKNOWN) == NO_PICKUP_ALL
+    }
+
+    private fun computeDirectionStopNoPickup(): MutableLongObjectMap<MutableIntIntMap> {
+        val noPickup = MutableLongObjectMap<MutableIntIntMap>()
+        values.forEach { mSchedule ->
+            val stopsNoPickup = noPickup.getOrPut(mSchedule.directionId) { MutableIntIntMap() }
+            if (stopsNoPickup.getOrDefault(mSchedule.stopId, NO_PICKUP_UNKNOWN) == NO_PICKUP_NOT_ALL) return@forEach
+            stopsNoPickup[mSchedule.stopId] = if (mSchedule.isNoPickup()) NO_PICKUP_ALL else NO_PICKUP_NOT_ALL
+        }
+        return noPickup
+    }
+}
@@ -0,0 +1,102 @@
+package org.mtransit.parser.scratch
+
+import org.apache.commons.csv.CSVFormat
+import org.apache.commons.csv.CSVParser
+import org.mtransit.parser.gtfs.GCsvTokenizer
+import java.io.BufferedReader
+import java.io.File
+import java.io.Reader
+import java.io.StringReader
+
+/**
+ * Compare GTFS CSV reading with commons-csv (previous per-line parsing) and [GCsvTokenizer].
+ *
+ * Usage: `CsvReaderBenchmark [path/to/stop_times.txt]` (synthetic stop times if no file provided)
+ */
+object CsvReaderBenchmark {
+
+    private const val WARM_UP_ITERATIONS = 3
+    private const val ITERATIONS = 5
+
+    private const val SYNTHETIC_LINES = 1_000_000
+
+    private val CSV_FORMAT = CSVFormat.RFC4180.builder()
+        .setIgnoreSurroundingSpaces(true)
+        .get()
+
+    @JvmStatic
+    fun main(args: Array<String>) {
+        val content = args.getOrNull(0)?.let { File(it).readText() } ?: makeSyntheticStopTimes()
+        println("Content: ${content.length} chars.")
+        repeat(WARM_UP_ITERATIONS) {
+            readCommonsCsv(StringReader(content))
+            readTokenizer(StringReader(content))
+        }
+        var commonsCsvMs = 0L
+        var tokenizerMs = 0L
+        repeat(ITERATIONS) {
+            var start = System.nanoTime()
+            val commonsCsvLines = readCommonsCsv(StringReader(content))
+            commonsCsvMs += (System.nanoTime() - start) / 1_000_000L
+            start = System.nanoTime()
+            val tokenizerLines = readTokenizer(StringReader(content))
+            tokenizerMs += (System.nanoTime() - start) / 1_000_000L
+            if (commonsCsvLines != tokenizerLines) {
+                throw IllegalStateException("Different result: $commonsCsvLines != $tokenizerLines!")
+            }
+        }
+        println("commons-csv: ${commonsCsvMs / ITERATIONS} ms/file")
+        println("tokenizer: ${tokenizerMs / ITERATIONS} ms/file")
+    }
+
+    private fun makeSyntheticStopTimes() = buildString {
+        appendLine("trip_id,arrival_time,departure_time,stop_id,stop_sequence,stop_headsign,pickup_type,drop_off_type")
+        for (l in 0 until SYNTHETIC_LINES) {
+            val time = "%02d:%02d:00".format((l / 60) % 28, l % 60)
+            append("trip_").append(l / 50).append(',')
+            append(time).append(',').append(time).append(',')
+            append("stop_").append(l % 2_000).append(',')
+            append(l % 50).append(',')
+            append(if (l % 10 == 0) "\"Downtown, Terminal\"" else "").append(',')
+            append("0,0")
+            appendLine()
+        }
+    }
+
+    private fun readCommonsCsv(reader: Reader): Int {
+        var l = 0
+        val columns = HashMap<String, String>()
+        BufferedReader(reader).use { br ->
+            val columnNames = CSVParser.parse(br.readLine(), CSV_FORMAT).records[0].toList()
+            while (true) {
+                val line = br.readLine() ?: break
+                val record = CSVParser.parse(line, CSV_FORMAT).records.firstOrNull() ?: continue
+                columns.clear()
+                columnNames.forEachIndexed { i, columnName ->
+                    columns[columnName] = if (i < record.size()) record[i] else ""
+                }
+                l++
+            }
+        }
+        return l
+    }
+
+    private fun readTokenizer(reader: Reader): Int {
+        var l = 0
+        val columns = HashMap<String, String>()
+        val tokenizer = GCsvTokenizer(reader)
+        tokenizer.nextLine()
+        tokenizer.tokenizeLine()
+        val columnNames = (0 until tokenizer.fieldCount).map { tokenizer.getString(it) }
+        while (tokenizer.nextLine()) {
+            if (tokenizer.lineLength == 0) continue
+            tokenizer.tokenizeLine()
+            columns.clear()
+            columnNames.forEachIndexed { i, columnName ->
+                columns[columnName] = tokenizer.getString(i)
+            }
+            l++
+        }
+        return l
+    }
+}
@@ -0,0 +1,86 @@
+package org.mtransit.parser.scratch
+
+import org.mtransit.parser.Constants.EMPTY
+import org.mtransit.parser.gtfs.data.GFieldTypes
+import org.mtransit.parser.gtfs.data.GTime
+
+/**
+ * Compare GTFS time parsing & conversion: previous (regex + `String.toInt()`, new `SimpleDateFormat` per call) and [GTime].
+ *
+ * Usage: `GTimeBenchmark` (synthetic times, including > 24h)
+ */
+object GTimeBenchmark {
+
+    private const val WARM_UP_ITERATIONS = 3
+    private const val ITERATIONS = 5
+
+    private const val SYNTHETIC_TIMES = 1_000_000
+
+    private val TIME_SEPARATOR_REGEX = ":".toRegex()
+
+    @JvmStatic
+    fun main(args: Array<String>) {
+        val timesS = makeSyntheticTimes()
+        println("Times: ${timesS.size}.")
+        repeat(WARM_UP_ITERATIONS) {
+            parseLegacy(timesS)
+            parse(timesS)
+        }
+        var legacyParseMs = 0L
+        var parseMs = 0L
+        var legacyToMsMs = 0L
+        var toMsMs = 0L
+        repeat(ITERATIONS) {
+            var start = System.nanoTime()
+            val legacyTimes = parseLegacy(timesS)
+            legacyParseMs += (System.nanoTime() - start) / 1_000_000L
+            start = System.nanoTime()
+            val times = parse(timesS)
+            parseMs += (System.nanoTime() - start) / 1_000_000L
+            if (!legacyTimes.contentEquals(times)) {
+                throw IllegalStateException("Different parsing result!")
+            }
+            start = System.nanoTime()
+            val legacyMs = toMsLegacy(times)
+            legacyToMsMs += (System.nanoTime() - start) / 1_000_000L
+            start = System.nanoTime()
+            val ms = toMs(times)
+            toMsMs += (System.nanoTime() - start) / 1_000_000L
+            if (legacyMs != ms) {
+                throw IllegalStateException("Different ms result: $legacyMs != $ms!")
+            }
+        }
+        println("fromString() legacy: ${legacyParseMs / ITERATIONS} ms")
+        println("fromString(): ${parseMs / ITERATIONS} ms")
+        println("toMs() legacy: ${legacyToMsMs / ITERATIONS} ms")
+        println("toMs(): ${toMsMs / ITERATIONS} ms")
+    }
+
+    private fun makeSyntheticTimes() = Array(SYNTHETIC_TIMES) { t ->
+        "%02d:%02d:%02d".format((t / 3_600) % 30, (t / 60) % 60, t % 60) // up to 29:59:59
+    }
+
+    private fun parseLegacy(timesS: Array<String>) = IntArray(timesS.size) { i ->
+        TIME_SEPARATOR_REGEX.replace(timesS[i], EMPTY).toInt()
+    }
+
+    private fun parse(timesS: Array<String>) = IntArray(timesS.size) { i ->
+        GTime.fromString(timesS[i])
+    }
+
+    private fun toMsLegacy(times: IntArray): Long {
+        var sum = 0L
+        for (time in times) {
+            sum += GFieldTypes.makeTimeFormat().parse(GTime.toString(time)).time
+        }
+        return sum
+    }
+
+    private fun toMs(times: IntArray): Long {
+        var sum = 0L
+        for (time in times) {
+            sum += GTime.toMs(time)
+        }
+        return sum
+    }
+}
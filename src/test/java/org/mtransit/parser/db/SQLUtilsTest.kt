@@ -0,0 +1,41 @@
+package org.mtransit.parser.db
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.mtransit.parser.db.SQLUtils.quotesEscape
+import org.mtransit.parser.db.SQLUtils.quotesEscapeValue
+import java.sql.DriverManager
+import java.sql.Types
+
+class SQLUtilsTest {
+
+    @Test
+    fun testQuotesEscapeValue_sameStoredValueAsLiteral() {
+        val values = listOf("Downtown", "St_Michel", "Rock 'n' Roll", "'quoted'", "__", "")
+        DriverManager.getConnection(SQLUtils.JDBC_SQLITE_MEMORY).use { connection ->
+            connection.createStatement().use { it.executeUpdate("CREATE TABLE t (literal TEXT, bound TEXT)") }
+            connection.prepareStatement("INSERT INTO t VALUES (?, ?)").use { preparedStatement ->
+                values.forEach { value ->
+                    connection.createStatement().use { it.executeUpdate("INSERT INTO t VALUES (${value.quotesEscape()}, NULL)") }
+                    preparedStatement.setNull(1, Types.VARCHAR)
+                    preparedStatement.setString(2, value.quotesEscapeValue())
+                    preparedStatement.executeUpdate()
+                }
+            }
+            val literals = mutableListOf<String>()
+            val bounds = mutableListOf<String>()
+            connection.createStatement().use { statement ->
+                statement.executeQuery("SELECT literal, bound FROM t ORDER BY rowid").use { rs ->
+                    while (rs.next()) {
+                        rs.getString("literal")?.let { literals.add(it) }
+                        rs.getString("bound")?.let { bounds.add(it) }
+                    }
+                }
+            }
+
+            assertEquals(values.size, literals.size)
+            assertEquals(literals, bounds)
+            assertEquals("StMichel", "St_Michel".quotesEscapeValue()) // underscore removed (as before)
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.mtransit.parser.gtfs
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+import org.mtransit.parser.gtfs.data.GIDs
+import org.mtransit.parser.gtfs.data.GStopTime
+import java.io.StringReader
+
+class GCsvRowTest {
+
+    private fun makeRow(csv: String): GCsvRow {
+        val tokenizer = GCsvTokenizer(StringReader(csv))
+        tokenizer.nextLine()
+        tokenizer.tokenizeLine()
+        val row = GCsvRow(tokenizer, (0 until tokenizer.fieldCount).map { tokenizer.getString(it) })
+        tokenizer.nextLine()
+        tokenizer.tokenizeLine()
+        return row
+    }
+
+    @Test
+    fun testGet() {
+        val row = makeRow("a,b,c\n1,,x")
+
+        assertEquals("1", row[row.getColumnIndex("a")])
+        assertEquals("", row[row.getColumnIndex("b")])
+        assertNull(row.getOptionalString(row.getColumnIndex("b")))
+        assertEquals("x", row["c"])
+        assertNull(row["d"])
+        assertEquals("{a=1, b=, c=x}", row.toString())
+    }
+
+    @Test
+    fun testGetInt() {
+        val row = makeRow("a,b,c,d,e\n12,-3, ,+4,0x1")
+
+        assertEquals(12, row.getInt(row.getColumnIndex("a")))
+        assertEquals(-3, row.getInt(row.getColumnIndex("b")))
+        assertNull(row.getOptionalInt(row.getColumnIndex("c")))
+        assertEquals(4, row.getOptionalInt(row.getColumnIndex("d")))
+        assertNull(row.getInt(row.getColumnIndex("z")))
+        assertNull(row.getOptionalInt(row.getColumnIndex("z")))
+    }
+
+    @Test(expected = NumberFormatException::class)
+    fun testGetInt_invalid() {
+        val row = makeRow("a,b,c,d,e\n12,-3, ,+4,0x1")
+
+        row.getInt(row.getColumnIndex("e"))
+    }
+
+    @Test
+    fun testGStopTimeFromLine() {
+        val row = makeRow(
+            "trip_id,arrival_time,departure_time,stop_id,stop_sequence,pickup_type\n" +
+                    "t1,08:00:00,08:01:00,s1,3,"
+        )
+
+        val result = GStopTime.fromLine(row)
+
+        assertEquals(GIDs.getInt("t1"), result.tripIdInt)
+        assertEquals(GIDs.getInt("s1"), result.stopIdInt)
+        assertEquals(3, result.stopSequence)
+        assertEquals(80000, result.arrivalTime)
+        assertEquals(80100, result.departureTime)
+        assertNull(result.stopHeadsign)
+    }
+}
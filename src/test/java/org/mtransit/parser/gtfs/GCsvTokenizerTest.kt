@@ -0,0 +1,103 @@
+package org.mtransit.parser.gtfs
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.StringReader
+
+class GCsvTokenizerTest {
+
+    private fun readLines(csv: String, bufferSize: Int = 4): List<List<String>> {
+        val tokenizer = GCsvTokenizer(StringReader(csv), bufferSize)
+        val lines = mutableListOf<List<String>>()
+        while (tokenizer.nextLine()) {
+            if (tokenizer.lineLength == 0) continue
+            tokenizer.tokenizeLine()
+            lines.add((0 until tokenizer.fieldCount).map { tokenizer.getString(it) })
+        }
+        return lines
+    }
+
+    @Test
+    fun testNextLine_lineSeparators() {
+        val result = readLines("a,b\nc,d\r\ne,f\rg,h\n\ni,j")
+
+        assertEquals(
+            listOf(
+                listOf("a", "b"),
+                listOf("c", "d"),
+                listOf("e", "f"),
+                listOf("g", "h"),
+                listOf("i", "j"),
+            ), result
+        )
+    }
+
+    @Test
+    fun testTokenizeLine_emptyFields() {
+        val result = readLines("a,,c,\n,")
+
+        assertEquals(
+            listOf(
+                listOf("a", "", "c", ""),
+                listOf("", ""),
+            ), result
+        )
+    }
+
+    @Test
+    fun testTokenizeLine_surroundingSpaces() {
+        val result = readLines(" a , b b ,\t\"c \" ,d")
+
+        assertEquals(listOf(listOf("a", "b b", "c ", "d")), result)
+    }
+
+    @Test
+    fun testTokenizeLine_quotes() {
+        val result = readLines("\"a,b\",\"c \"\"d\"\"\",e\"f")
+
+        assertEquals(listOf(listOf("a,b", "c \"d\"", "e\"f")), result)
+    }
+
+    @Test
+    fun testTokenizeLine_invalidQuotesFallback() {
+        val tokenizer = GCsvTokenizer(StringReader("\"a\"b,\"c\",d\n\"e,f"))
+
+        assertTrue(tokenizer.nextLine())
+        assertFalse(tokenizer.tokenizeLine())
+        assertEquals(3, tokenizer.fieldCount)
+        assertEquals("ab", tokenizer.getString(0))
+        assertEquals("c", tokenizer.getString(1))
+        assertEquals("d", tokenizer.getString(2))
+        assertTrue(tokenizer.nextLine())
+        assertFalse(tokenizer.tokenizeLine())
+        assertEquals(2, tokenizer.fieldCount)
+        assertEquals("e", tokenizer.getString(0))
+        assertEquals("f", tokenizer.getString(1))
+        assertFalse(tokenizer.nextLine())
+    }
+
+    @Test
+    fun testRemoveByteOrderMark() {
+        val tokenizer = GCsvTokenizer(StringReader("\uFEFFstop_id,stop_name\n1,Stop"))
+
+        assertTrue(tokenizer.nextLine())
+        assertTrue(tokenizer.removeByteOrderMark())
+        tokenizer.tokenizeLine()
+        assertEquals("stop_id", tokenizer.getString(0))
+        assertTrue(tokenizer.nextLine())
+        assertFalse(tokenizer.removeByteOrderMark())
+    }
+
+    @Test
+    fun testGetString_missingField() {
+        val tokenizer = GCsvTokenizer(StringReader("a"))
+
+        tokenizer.nextLine()
+        tokenizer.tokenizeLine()
+
+        assertEquals(1, tokenizer.fieldCount)
+        assertEquals("", tokenizer.getString(1))
+    }
+}
@@ -0,0 +1,62 @@
+package org.mtransit.parser.gtfs
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.File
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class GFeedSourceTest {
+
+    private fun makeZipFile(vararg entries: Pair<String, String>): File {
+        val zipFile = File.createTempFile("gtfs", ".zip")
+        zipFile.deleteOnExit()
+        ZipOutputStream(zipFile.outputStream()).use { zip ->
+            entries.forEach { (name, content) ->
+                zip.putNextEntry(ZipEntry(name))
+                zip.write(content.toByteArray(Charsets.UTF_8))
+                zip.closeEntry()
+            }
+        }
+        return zipFile
+    }
+
+    @Test
+    fun testZipSource() {
+        val zipFile = makeZipFile(
+            "__MACOSX/._stops.txt" to "junk",
+            "gtfs/Stops.TXT" to "\uFEFFstop_id,stop_name\n1,Stop",
+            "agency.txt" to "agency_id\n1",
+        )
+
+        GFeedSource.open(zipFile.path).use { source ->
+            assertTrue(source is GFeedSource.ZipSource)
+            assertNull(source.findFile(listOf("routes.txt")))
+            assertEquals("agency.txt", source.findFile(listOf("AGENCY.txt")))
+            val stopsFileName = source.findFile(listOf("directions.txt", "stops.txt"))
+            assertEquals("gtfs/Stops.TXT", stopsFileName)
+            val tokenizer = GCsvTokenizer(source.openReader(stopsFileName!!))
+            assertTrue(tokenizer.nextLine())
+            assertTrue(tokenizer.removeByteOrderMark())
+            tokenizer.tokenizeLine()
+            assertEquals("stop_id", tokenizer.getString(0))
+            assertTrue(tokenizer.nextLine())
+            tokenizer.tokenizeLine()
+            assertEquals("Stop", tokenizer.getString(1))
+        }
+    }
+
+    @Test
+    fun testZipSource_fingerprints() {
+        val fingerprints = GFeedSource.open(makeZipFile("stops.txt" to "stop_id\n1", "agency.txt" to "agency_id\n1").path).use { it.fingerprints() }
+        val sameFingerprints = GFeedSource.open(makeZipFile("agency.txt" to "agency_id\n1", "stops.txt" to "stop_id\n1").path).use { it.fingerprints() }
+        val otherFingerprints = GFeedSource.open(makeZipFile("agency.txt" to "agency_id\n1", "stops.txt" to "stop_id\n2").path).use { it.fingerprints() }
+
+        assertEquals(2, fingerprints.size)
+        assertEquals(fingerprints, sameFingerprints) // sorted by name
+        assertNotEquals(fingerprints, otherFingerprints)
+    }
+}
@@ -0,0 +1,79 @@
+package org.mtransit.parser.gtfs
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+import java.nio.file.Files
+
+class GIngestSchedulerTest {
+
+    @Test
+    fun testRun_dependenciesOrderAndPrefetch() {
+        val gtfsDir = Files.createTempDirectory("gtfs").toFile()
+        gtfsDir.deleteOnExit()
+        gtfsDir.resolve("trips.txt").writeText("trip_id\n" + (1..25_000).joinToString("\n") { "t$it" })
+        gtfsDir.resolve("stop_times.txt").writeText("trip_id,stop_id\n\nt1,s1\nt1,s2\n")
+        gtfsDir.resolve("stops.txt").writeText("stop_id\ns1\ns2")
+        val applied = mutableListOf<String>()
+        val rowCounts = mutableMapOf<String, Int>()
+
+        GFeedSource.open(gtfsDir.path).use { source ->
+            val scheduler = GIngestScheduler(source, 2)
+            val countRows = { name: String ->
+                GIngestScheduler.StepAction { reader ->
+                    applied.add(name)
+                    var count = 0
+                    while (reader?.nextRow() == true) count++
+                    rowCounts[name] = count
+                }
+            }
+            scheduler.add("stops", "stops.txt", true, listOf("stop_times"), countRows("stops"))
+            scheduler.add("stop_times", "stop_times.txt", true, listOf("trips"), countRows("stop_times"))
+            scheduler.add("frequencies", "frequencies.txt", false, listOf("trips"), countRows("frequencies"))
+            scheduler.add("trips", "trips.txt", true, emptyList(), countRows("trips"))
+            scheduler.run()
+        }
+
+        assertEquals(listOf("trips", "stop_times", "frequencies", "stops"), applied)
+        assertEquals(25_000, rowCounts["trips"])
+        assertEquals(2, rowCounts["stop_times"])
+        assertEquals(0, rowCounts["frequencies"])
+        assertEquals(2, rowCounts["stops"])
+        assertNull(rowCounts["routes"])
+    }
+
+    @Test
+    fun testRun_retainAndReplayFiles() {
+        val gtfsDir = Files.createTempDirectory("gtfs").toFile()
+        gtfsDir.deleteOnExit()
+        val tripsFile = gtfsDir.resolve("trips.txt")
+        tripsFile.writeText("trip_id,trip_headsign\n" + (1..25_000).joinToString("\n") { "t$it,\"Gare, $it\"" })
+        val readTrips = { scheduler: GIngestScheduler ->
+            val tripHeadsigns = mutableListOf<String>()
+            scheduler.add("trips", "trips.txt", true) { reader ->
+                requireNotNull(reader)
+                assertEquals(listOf("trip_id", "trip_headsign"), reader.columnNames)
+                while (reader.nextRow()) tripHeadsigns.add(reader.getString(1))
+            }
+            scheduler.run()
+            tripHeadsigns
+        }
+
+        val retainedFiles = GFeedSource.open(gtfsDir.path).use { source ->
+            val scheduler = GIngestScheduler(source, 2)
+            scheduler.retainFiles()
+            assertEquals(25_000, readTrips(scheduler).size)
+            scheduler.getRetainedFiles()
+        }
+        tripsFile.delete() // NOT read again
+
+        GFeedSource.open(gtfsDir.path).use { source ->
+            val scheduler = GIngestScheduler(source, 2)
+            scheduler.replayFiles(retainedFiles)
+            val tripHeadsigns = readTrips(scheduler)
+            assertEquals(25_000, tripHeadsigns.size)
+            assertEquals("Gare, 1", tripHeadsigns.first())
+            assertEquals("Gare, 25000", tripHeadsigns.last())
+        }
+    }
+}
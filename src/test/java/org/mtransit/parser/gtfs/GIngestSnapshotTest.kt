@@ -0,0 +1,57 @@
+package org.mtransit.parser.gtfs
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.mockito.Mockito.mock
+import org.mockito.kotlin.never
+import org.mockito.kotlin.verify
+import org.mockito.kotlin.whenever
+import org.mtransit.parser.gtfs.data.GIDs
+import org.mtransit.parser.gtfs.data.GPickupType
+import org.mtransit.parser.gtfs.data.GStopTime
+import org.mtransit.parser.mt.data.makeGStopTime
+import java.nio.file.Files
+
+class GIngestSnapshotTest {
+
+    @Test
+    fun testWriteRestore_sameStopTimesAndAgencyToolsSideEffects() {
+        val dir = Files.createTempDirectory("gtfs_snapshot").toFile()
+        val snapshot = GIngestSnapshot("test_key", dir)
+        val stopTimes = listOf(
+            makeGStopTime(GIDs.getInt("snapshot_trip_1"), GIDs.getInt("snapshot_stop_1"), 1, stopHeadsign = "Gare"),
+            makeGStopTime(GIDs.getInt("snapshot_trip_1"), GIDs.getInt("snapshot_stop_2"), 2, pickupType = GPickupType.NO_PICKUP),
+            makeGStopTime(GIDs.getInt("snapshot_trip_2"), GIDs.getInt("snapshot_stop_3"), 1),
+        )
+        val writerAgencyTools: GAgencyTools = mock()
+        whenever(writerAgencyTools.stopTimesHasPickupTypeNotRegular()).thenReturn(true)
+        whenever(writerAgencyTools.forceStopTimeFirstNoDropOffType()).thenReturn(true)
+        snapshot.newWriter().apply {
+            addStopTime(stopTimes[0], "trip_1", "stop_1")
+            forgetOriginalIds("trip_excluded", "stop_2") // excluded
+            addStopTime(stopTimes[1], "trip_1", "stop_2") // kept later: NOT forgotten
+            forgetOriginalIds("trip_excluded", "stop_excluded") // excluded
+            addStopTime(stopTimes[2], "trip_2", "stop_3")
+            commit(listOf("stop_1", "stop_2", "stop_3"), writerAgencyTools)
+        }
+        assertTrue(snapshot.exists())
+        val agencyTools: GAgencyTools = mock()
+        val restoredStopTimes = mutableListOf<GStopTime>()
+
+        val stopOriginalIds = snapshot.restore(agencyTools) { restoredStopTimes.add(it) }
+
+        assertEquals(stopTimes, restoredStopTimes)
+        assertEquals(setOf("stop_1", "stop_2", "stop_3"), stopOriginalIds)
+        verify(agencyTools).setStopTimesHasPickupTypeNotRegular(true)
+        verify(agencyTools, never()).setStopTimesHasDropOffTypeNotRegular(true)
+        verify(agencyTools, never()).setForceStopTimeLastNoPickupType(true)
+        verify(agencyTools).setForceStopTimeFirstNoDropOffType(true)
+        verify(agencyTools).forgetOriginalTripId("trip_excluded")
+        verify(agencyTools, never()).forgetOriginalTripId("trip_1")
+        verify(agencyTools).forgetOriginalStopId("stop_excluded")
+        verify(agencyTools, never()).forgetOriginalStopId("stop_2")
+        verify(agencyTools).cleanStopOriginalId("stop_2")
+        dir.deleteRecursively()
+    }
+}
@@ -0,0 +1,58 @@
+package org.mtransit.parser.gtfs
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.mtransit.parser.gtfs.data.GIDs
+
+class GOriginalIdsTest {
+
+    @Test
+    fun testAddContains() {
+        val originalIds = GOriginalIds()
+
+        assertTrue(originalIds.add("original_ids_test_1 "))
+        assertTrue(originalIds.add("original_ids_test_2"))
+        assertFalse(originalIds.add("original_ids_test_1 ")) // already added
+        assertFalse(originalIds.add(null))
+
+        assertEquals(2, originalIds.size)
+        assertTrue(originalIds.contains("original_ids_test_1 "))
+        assertFalse(originalIds.contains("original_ids_test_1")) // NOT trimmed
+        assertFalse(originalIds.contains(null))
+        assertEquals(setOf("original_ids_test_1 ", "original_ids_test_2"), originalIds.toSet())
+    }
+
+    @Test
+    fun testRemove() {
+        val originalIds = GOriginalIds()
+        originalIds.addAll(listOf("original_ids_test_3", "original_ids_test_4", "original_ids_test_5"))
+
+        assertTrue(originalIds.remove("original_ids_test_3"))
+        assertFalse(originalIds.remove("original_ids_test_3")) // already removed
+        assertFalse(originalIds.remove("original_ids_test_unknown_removed"))
+        assertFalse(originalIds.remove(null))
+        assertTrue(originalIds.removeAll(setOf("original_ids_test_4")))
+        val iterator = originalIds.iterator()
+        assertEquals("original_ids_test_5", iterator.next())
+        iterator.remove()
+
+        assertEquals(0, originalIds.size)
+        assertFalse(originalIds.contains("original_ids_test_5"))
+    }
+
+    @Test
+    fun testAddContains_notAddedToGIDs() {
+        val originalIds = GOriginalIds()
+        val count = GIDs.count()
+
+        originalIds.add("original_ids_test_6")
+        assertFalse(originalIds.contains("original_ids_test_unknown"))
+
+        assertEquals(count, GIDs.count())
+        originalIds.clear()
+        assertTrue(originalIds.isEmpty())
+        assertFalse(originalIds.contains("original_ids_test_6"))
+    }
+}
@@ -0,0 +1,73 @@
+package org.mtransit.parser.gtfs
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.mtransit.parser.gtfs.data.GStopTime
+import java.io.StringReader
+import java.util.concurrent.ForkJoinPool
+
+class GStopTimesParallelReaderTest {
+
+    private val csv = buildString {
+        append("\uFEFFtrip_id,arrival_time,departure_time,stop_id,stop_sequence,stop_headsign,pickup_type\r\n")
+        for (i in 1..500) {
+            append("t${i / 10}, 08:${i % 60}:00,08:${i % 60}:30,\"s$i\",$i,\"Gare, Montréal\",${i % 2}")
+            append(if (i % 3 == 0) "\r\n" else "\n")
+            if (i % 50 == 0) append("\n") // empty line
+        }
+    }
+
+    @Test
+    fun testNextChunk_sameAsSequential() {
+        val expected = mutableListOf<GStopTime>()
+        GCsvStreamReader(GStopTime.FILENAME, StringReader(csv)).use { reader ->
+            val row = GCsvRow(reader, reader.columnNames)
+            while (reader.nextRow()) {
+                expected.add(GStopTime.fromLine(row))
+            }
+        }
+        val tripOriginalIds = setOf("t1", "t2")
+        val result = mutableListOf<GStopTime>()
+        var tripOriginalIdFoundCount = 0
+        val pool = ForkJoinPool(3)
+        try {
+            GStopTimesParallelReader(GStopTime.FILENAME, csv.byteInputStream(), pool, tripOriginalIds, 64).use { reader ->
+                assertEquals("trip_id", reader.columnNames[0])
+                while (true) {
+                    val chunk = reader.nextChunk() ?: break
+                    assertNull(chunk.failure)
+                    chunk.rows.forEach { row ->
+                        result.add(row.toGStopTime(null))
+                        if (row.tripOriginalIdFound) tripOriginalIdFoundCount++
+                    }
+                }
+            }
+        } finally {
+            pool.shutdownNow()
+        }
+
+        assertEquals(500, expected.size)
+        assertEquals(expected, result)
+        assertEquals(20, tripOriginalIdFoundCount)
+    }
+
+    @Test
+    fun testNextChunk_failure() {
+        val pool = ForkJoinPool(2)
+        try {
+            GStopTimesParallelReader(GStopTime.FILENAME, "trip_id,stop_id,stop_sequence,arrival_time,departure_time\nt1,s1,1,,\nt1,s2,x,,\n".byteInputStream(), pool, emptySet()).use { reader ->
+                val chunk = reader.nextChunk()!!
+                assertEquals(1, chunk.rows.size)
+                assertFalse(chunk.rows[0].tripOriginalIdFound)
+                assertTrue(chunk.failure is NumberFormatException)
+                assertEquals("t1,s2,x,,", chunk.failureLine)
+                assertNull(reader.nextChunk())
+            }
+        } finally {
+            pool.shutdownNow()
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.mtransit.parser.gtfs.data
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.mtransit.parser.mt.data.makeGStopTime
+
+class GRouteStoreTest {
+
+    @Test
+    fun testBuild_sortedByTripAndSequence() {
+        val builder = GRouteStore.Partition.Builder(mRouteId = 1L)
+        // trips NOT sorted by ID integer, stop times NOT sorted by sequence
+        builder.addStopTime(makeGStopTime(tripIdInt = 20, stopIdInt = 2, stopSequence = 2))
+        builder.addStopTime(makeGStopTime(tripIdInt = 20, stopIdInt = 1, stopSequence = 1, stopHeadsign = "Gare"))
+        builder.addStopTime(makeGStopTime(tripIdInt = 10, stopIdInt = 3, stopSequence = 3))
+        builder.addStopTime(makeGStopTime(tripIdInt = 10, stopIdInt = 1, stopSequence = 1))
+        builder.addTripStop(GTripStop(routeIdInt = 5, tripIdInt = 20, stopIdInt = 2, stopSequence = 2, isLastTripStop = true))
+        builder.addTripStop(GTripStop(routeIdInt = 5, tripIdInt = 10, stopIdInt = 1, stopSequence = 1))
+        builder.addTripStop(GTripStop(routeIdInt = 5, tripIdInt = 20, stopIdInt = 1, stopSequence = 1))
+
+        val partition = builder.build()
+
+        assertEquals(4, partition.stopTimesCount)
+        assertEquals(3, partition.tripStopsCount)
+        assertArrayEquals(intArrayOf(10, 20), partition.stopTimesTripIdInts)
+        assertEquals(
+            listOf(
+                makeGStopTime(tripIdInt = 10, stopIdInt = 1, stopSequence = 1),
+                makeGStopTime(tripIdInt = 10, stopIdInt = 3, stopSequence = 3),
+            ),
+            partition.getTripStopTimes(10)
+        )
+        assertEquals(
+            listOf(
+                makeGStopTime(tripIdInt = 20, stopIdInt = 1, stopSequence = 1, stopHeadsign = "Gare"),
+                makeGStopTime(tripIdInt = 20, stopIdInt = 2, stopSequence = 2),
+            ),
+            partition.getTripStopTimes(20)
+        )
+        assertEquals(
+            listOf(
+                GTripStop(routeIdInt = 5, tripIdInt = 20, stopIdInt = 2, stopSequence = 2, isLastTripStop = true),
+                GTripStop(routeIdInt = 5, tripIdInt = 20, stopIdInt = 1, stopSequence = 1),
+            ),
+            partition.getTripTripStops(20) // insertion order
+        )
+        assertTrue(partition.getTripStopTimes(15).isEmpty())
+    }
+
+    @Test
+    fun testBuild_sameOrderAsSortedWith() {
+        val random = java.util.Random(42L)
+        val tripIdInts = (1..37).map { random.nextInt(7) }
+        val stopSequences = (1..37).map { random.nextInt(5) }
+        val builder = GRouteStore.Partition.Builder(mRouteId = 1L)
+        tripIdInts.indices.forEach { idx ->
+            builder.addStopTime(makeGStopTime(tripIdInts[idx], stopIdInt = idx, stopSequence = stopSequences[idx]))
+            builder.addTripStop(GTripStop(routeIdInt = 5, tripIdInt = tripIdInts[idx], stopIdInt = idx, stopSequence = stopSequences[idx]))
+        }
+
+        val partition = builder.build()
+
+        val expectedStopTimes = tripIdInts.indices
+            .sortedWith(compareBy({ tripIdInts[it] }, { stopSequences[it] })) // stable
+            .map { makeGStopTime(tripIdInts[it], stopIdInt = it, stopSequence = stopSequences[it]) }
+        assertEquals(expectedStopTimes, partition.stopTimesTripIdInts.flatMap { partition.getTripStopTimes(it) })
+        val expectedTripStops = tripIdInts.indices
+            .sortedBy { tripIdInts[it] } // stable: insertion order
+            .map { GTripStop(routeIdInt = 5, tripIdInt = tripIdInts[it], stopIdInt = it, stopSequence = stopSequences[it]) }
+        assertEquals(expectedTripStops, partition.tripStopsTripIdInts.flatMap { partition.getTripTripStops(it) })
+    }
+
+    @Test
+    fun testTake() {
+        val store = GRouteStore()
+        store.put(GRouteStore.Partition.Builder(mRouteId = 1L).build())
+
+        assertEquals(1, store.size)
+        assertEquals(1L, store.take(1L)?.mRouteId)
+        assertNull(store.take(1L))
+        assertEquals(0, store.size)
+    }
+}
@@ -0,0 +1,108 @@
+package org.mtransit.parser.gtfs.data
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.mtransit.parser.mt.data.makeGStopTime
+
+class GStopTimesColumnStoreTest {
+
+    @Test
+    fun testSelect_sortedBySequence() {
+        val store = GStopTimesColumnStore()
+        store.insert(makeGStopTime(tripIdInt = 20, stopIdInt = 2, stopSequence = 2))
+        store.insert(makeGStopTime(tripIdInt = 10, stopIdInt = 3, stopSequence = 3))
+        store.insert(makeGStopTime(tripIdInt = 20, stopIdInt = 1, stopSequence = 1, stopHeadsign = "Gare"))
+        store.insert(makeGStopTime(tripIdInt = 10, stopIdInt = 1, stopSequence = 1))
+
+        assertEquals(4, store.size)
+        assertEquals(
+            listOf(
+                makeGStopTime(tripIdInt = 20, stopIdInt = 1, stopSequence = 1, stopHeadsign = "Gare"),
+                makeGStopTime(tripIdInt = 20, stopIdInt = 2, stopSequence = 2),
+            ),
+            store.select(20) // tail
+        )
+        store.compact()
+        assertEquals(
+            listOf(
+                makeGStopTime(tripIdInt = 10, stopIdInt = 1, stopSequence = 1),
+                makeGStopTime(tripIdInt = 10, stopIdInt = 3, stopSequence = 3),
+                makeGStopTime(tripIdInt = 20, stopIdInt = 1, stopSequence = 1, stopHeadsign = "Gare"),
+                makeGStopTime(tripIdInt = 20, stopIdInt = 2, stopSequence = 2),
+            ),
+            store.select(listOf(10, 20)) // sorted
+        )
+        assertTrue(store.select(15).isEmpty())
+    }
+
+    @Test
+    fun testInsert_update() {
+        val store = GStopTimesColumnStore()
+        store.insert(makeGStopTime(tripIdInt = 1, stopIdInt = 1, stopSequence = 1))
+        store.insert(makeGStopTime(tripIdInt = 1, stopIdInt = 2, stopSequence = 2))
+        store.compact()
+        val updated = makeGStopTime(tripIdInt = 1, stopIdInt = 2, stopSequence = 2).apply { pickupType = GPickupType.NO_PICKUP }
+
+        store.insert(updated, allowUpdate = true) // sorted row
+        store.insert(makeGStopTime(tripIdInt = 1, stopIdInt = 3, stopSequence = 3))
+        store.insert(makeGStopTime(tripIdInt = 1, stopIdInt = 4, stopSequence = 3), allowUpdate = true) // tail row
+
+        assertEquals(3, store.size)
+        assertEquals(
+            listOf(
+                makeGStopTime(tripIdInt = 1, stopIdInt = 1, stopSequence = 1),
+                updated,
+                makeGStopTime(tripIdInt = 1, stopIdInt = 4, stopSequence = 3),
+            ),
+            store.select(1)
+        )
+    }
+
+    @Test(expected = IllegalStateException::class)
+    fun testInsert_duplicate() {
+        val store = GStopTimesColumnStore()
+        store.insert(makeGStopTime(tripIdInt = 1, stopIdInt = 1, stopSequence = 1))
+
+        store.insert(makeGStopTime(tripIdInt = 1, stopIdInt = 2, stopSequence = 1))
+    }
+
+    @Test
+    fun testDelete() {
+        val store = GStopTimesColumnStore()
+        (1..3).forEach { store.insert(makeGStopTime(tripIdInt = 1, stopIdInt = it, stopSequence = it)) }
+        store.compact()
+        store.insert(makeGStopTime(tripIdInt = 1, stopIdInt = 4, stopSequence = 4))
+        store.insert(makeGStopTime(tripIdInt = 2, stopIdInt = 1, stopSequence = 1))
+
+        assertEquals(4, store.delete(1))
+
+        assertEquals(1, store.size)
+        assertTrue(store.select(1).isEmpty())
+        store.compact()
+        assertEquals(listOf(makeGStopTime(tripIdInt = 2, stopIdInt = 1, stopSequence = 1)), store.select(2))
+    }
+
+    @Test
+    fun testCompact_multipleChunks() {
+        val store = GStopTimesColumnStore()
+        val tripsCount = 700
+        val stopsCount = 200 // 140,000 rows: 3 chunks
+        (stopsCount downTo 1).forEach { stopSequence -> // trips interleaved & NOT sorted by sequence
+            (1..tripsCount).forEach { tripIdInt -> store.insert(makeGStopTime(tripIdInt, stopIdInt = stopSequence, stopSequence = stopSequence)) }
+        }
+        val offHeapSizeInBytes = store.offHeapSizeInBytes
+        store.compact()
+        assertEquals(tripsCount * stopsCount, store.size)
+        assertEquals(offHeapSizeInBytes, store.offHeapSizeInBytes)
+
+        assertEquals(stopsCount * 400, (301..tripsCount).sumOf { store.delete(it) }) // 60,000 rows left: 1 chunk
+        store.compact()
+
+        assertTrue(store.offHeapSizeInBytes < offHeapSizeInBytes) // unused chunks released
+        assertTrue(store.select(400).isEmpty())
+        listOf(1, 150, 300).forEach { tripIdInt ->
+            assertEquals((1..stopsCount).map { makeGStopTime(tripIdInt, stopIdInt = it, stopSequence = it) }, store.select(tripIdInt))
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.mtransit.parser.gtfs.data
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class GStringDictionaryTest {
+
+    @Test
+    fun testGetOrAdd_contiguousIntegers() {
+        val dictionary = GStringDictionary()
+
+        val integers = (0 until 100_000).map { dictionary.getOrAdd("stop_$it") }
+
+        assertEquals((0 until 100_000).toList(), integers)
+        assertEquals(100_000, dictionary.size)
+        assertEquals(42, dictionary.getOrAdd("stop_42"))
+        assertEquals("stop_99999", dictionary.getString(99_999))
+        assertNull(dictionary.getString(100_000))
+        assertEquals(GStringDictionary.NOT_FOUND, dictionary.getInt("stop_100000"))
+    }
+
+    @Test
+    fun testGetOrAdd_hashCodeCollisionAndNonAscii() {
+        val dictionary = GStringDictionary()
+        val string1 = "11667511__MCOB-DO:123:0:Weekday:2:23SEP:41054:12345"
+        val string2 = "11612895__MCOB-DO:123:0:Weekday:1:23SEP:31011:12345"
+        assertEquals(string1.hashCode(), string2.hashCode())
+
+        assertEquals(0, dictionary.getOrAdd(string1))
+        assertEquals(1, dictionary.getOrAdd(string2))
+        assertEquals(2, dictionary.getOrAdd("Gare Montréal"))
+        assertEquals(3, dictionary.getOrAdd(""))
+
+        assertEquals(string1, dictionary.getString(0))
+        assertEquals(string2, dictionary.getString(1))
+        assertEquals(2, dictionary.getInt("Gare Montréal"))
+        assertEquals(GStringDictionary.NOT_FOUND, dictionary.getInt("Gare Montreal"))
+        assertEquals("", dictionary.getString(3))
+    }
+
+    @Test
+    fun testGetOrAdd_concurrent() {
+        val dictionary = GStringDictionary()
+        val executor = Executors.newFixedThreadPool(4)
+        val results = (0 until 4).map {
+            executor.submit<List<Int>> {
+                (0 until 50_000).map { i -> dictionary.getOrAdd("trip_$i") }
+                    .onEach { integer -> requireNotNull(dictionary.getString(integer)) }
+            }
+        }.map { it.get() }
+        executor.shutdown()
+        executor.awaitTermination(1, TimeUnit.MINUTES)
+
+        assertEquals(50_000, dictionary.size)
+        results.forEach { assertEquals(results[0], it) } // same integer for each string in all threads
+        (0 until 50_000).forEach { i ->
+            assertEquals("trip_$i", dictionary.getString(results[0][i]))
+        }
+    }
+}
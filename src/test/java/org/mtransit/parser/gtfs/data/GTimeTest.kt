@@ -0,0 +1,63 @@
+package org.mtransit.parser.gtfs.data
+
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.util.Calendar
+import java.util.TimeZone
+
+class GTimeTest {
+
+    private val originalTimeZone = TimeZone.getDefault()
+
+    @After
+    fun tearDown() {
+        TimeZone.setDefault(originalTimeZone)
+        GTime.resetTimeZone()
+    }
+
+    @Test
+    fun testFromString() {
+        assertEquals(-1, GTime.fromString(null))
+        assertEquals(-1, GTime.fromString(""))
+        assertEquals(80000, GTime.fromString("08:00:00"))
+        assertEquals(80000, GTime.fromString("8:00:00"))
+        assertEquals(251530, GTime.fromString("25:15:30"))
+        assertEquals(0, GTime.fromString("00:00:00"))
+    }
+
+    @Test(expected = NumberFormatException::class)
+    fun testFromString_invalid() {
+        GTime.fromString(" 08:00:00")
+    }
+
+    @Test
+    fun testSecondsSinceMidnight() {
+        assertEquals(8 * 3600 + 15 * 60 + 30, GTime.toSecondsSinceMidnight(81530))
+        assertEquals(25 * 3600 + 59, GTime.toSecondsSinceMidnight(250059))
+        assertEquals(251530, GTime.fromSecondsSinceMidnight(GTime.toSecondsSinceMidnight(251530)))
+        assertEquals(493000, GTime.add24Hours(253000))
+    }
+
+    @Test
+    fun testToMs_sameAsTimeFormat() {
+        listOf("UTC", "America/Montreal", "Asia/Kolkata", "Australia/Sydney").forEach { timeZoneId ->
+            TimeZone.setDefault(TimeZone.getTimeZone(timeZoneId))
+            GTime.resetTimeZone()
+            listOf(0, 1, 5959, 80000, 123456, 235959, 240000, 251530, 275959, 475959).forEach { time ->
+                val expected = GFieldTypes.makeTimeFormat().parse(GTime.toString(time)).time
+                assertEquals("$timeZoneId: $time", expected, GTime.toMs(time))
+                assertEquals("$timeZoneId: $time", expected, GTime.toDate(time).time)
+            }
+        }
+    }
+
+    @Test
+    fun testFromCal() {
+        val cal = Calendar.getInstance()
+        cal.timeInMillis = GTime.toMs(251530) // next day
+
+        assertEquals(11530, GTime.fromCal(cal))
+        assertEquals(GTime.fromDate(cal.time), GTime.fromCal(cal))
+    }
+}
@@ -0,0 +1,81 @@
+package org.mtransit.parser.gtfs.data
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.mtransit.parser.mt.data.makeGTrip
+
+class GTripIndexTest {
+
+    @Test
+    fun testAddGet() {
+        val index = GTripIndex()
+        val gTrip = makeGTrip(tripIdInt = 5_000, routeIdInt = 1, serviceIdInt = 7) // > initial capacity
+
+        index.add(gTrip)
+
+        assertSame(gTrip, index[5_000])
+        assertEquals(1, index.getRouteIdInt(5_000))
+        assertEquals(7, index.getServiceIdInt(5_000))
+        assertNull(index[4_999])
+        assertNull(index[-1])
+        assertEquals(GTripIndex.NO_ID, index.getRouteIdInt(10_000))
+        assertEquals(1, index.size)
+    }
+
+    @Test
+    fun testAdd_duplicate() {
+        val index = GTripIndex()
+        val gTrip1 = makeGTrip(tripIdInt = 1, routeIdInt = 1, serviceIdInt = 7)
+        val gTrip1Bis = makeGTrip(tripIdInt = 1, routeIdInt = 1, serviceIdInt = 8)
+        val gTrip1OtherRoute = makeGTrip(tripIdInt = 1, routeIdInt = 2)
+
+        index.add(gTrip1)
+        index.add(gTrip1Bis)
+
+        assertSame(gTrip1, index[1]) // 1st of route
+
+        index.add(gTrip1OtherRoute)
+
+        assertSame(gTrip1OtherRoute, index[1]) // last route
+        assertEquals(1, index.size)
+    }
+
+    @Test
+    fun testExcludedVerdict() {
+        val index = GTripIndex()
+        val gTrip = makeGTrip(tripIdInt = 3, routeIdInt = 1)
+        index.add(gTrip)
+
+        assertNull(index.isExcluded(3))
+
+        index.setExcluded(3, true)
+
+        assertTrue(index.isExcluded(3)!!)
+
+        index.put(gTrip.copy(directionIdE = GDirectionId.INBOUND)) // replaced
+
+        assertNull(index.isExcluded(3))
+
+        index.setExcluded(3, false)
+
+        assertFalse(index.isExcluded(3)!!)
+        assertNull(index.isExcluded(4))
+    }
+
+    @Test
+    fun testRemove() {
+        val index = GTripIndex()
+        val gTrip = makeGTrip(tripIdInt = 3, routeIdInt = 1)
+        index.add(gTrip)
+
+        assertFalse(index.remove(makeGTrip(tripIdInt = 3, routeIdInt = 2)))
+        assertTrue(index.remove(gTrip))
+        assertNull(index[3])
+        assertFalse(3 in index)
+        assertEquals(0, index.size)
+    }
+}
@@ -0,0 +1,50 @@
+package org.mtransit.parser.gtfs.data
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.mtransit.parser.mt.data.makeGStopTime
+
+class GTripStopTimesTest {
+
+    private val tripIdInt = GIDs.getInt("trip_stop_times_test_trip")
+
+    @Test
+    fun testSelect_sameStopTimesAsFullScan() {
+        // 200 stops trip, loop: 1st stop visited again at the end
+        val stopIdInts = (1..200).map { GIDs.getInt("trip_stop_times_test_stop_$it") } + GIDs.getInt("trip_stop_times_test_stop_1")
+        val stopTimes = stopIdInts.mapIndexed { index, stopIdInt -> makeGStopTime(tripIdInt, stopIdInt, stopSequence = (index + 1) * 5) }
+        val tripStops = stopTimes.map { GTripStop(routeIdInt = 1, tripIdInt = tripIdInt, stopIdInt = it.stopIdInt, stopSequence = it.stopSequence) } +
+                GTripStop(routeIdInt = 1, tripIdInt = tripIdInt, stopIdInt = stopIdInts[1], stopSequence = 7) // no stop time
+        val gTripStopTimes = GTripStopTimes(stopTimes)
+
+        val fullScanStopTimes = tripStops.flatMap { gTripStop -> // previous selection
+            stopTimes.filter {
+                it.tripIdInt == gTripStop.tripIdInt
+                        && it.stopIdInt == gTripStop.stopIdInt
+                        && it.stopSequence == gTripStop.stopSequence
+            }
+        }
+        val indexedStopTimes = tripStops.flatMap { gTripStop ->
+            gTripStopTimes.select(gTripStop)
+        }
+
+        assertEquals(GTripStopTimes.NO_INDEX, gTripStopTimes.findOutOfOrderIndex())
+        assertEquals(201, fullScanStopTimes.size)
+        assertEquals(fullScanStopTimes, indexedStopTimes)
+        assertTrue(gTripStopTimes.select(tripStops.last()).isEmpty())
+    }
+
+    @Test
+    fun testFindOutOfOrderIndex() {
+        val gTripStopTimes = GTripStopTimes(
+            listOf(
+                makeGStopTime(tripIdInt, stopIdInt = 1, stopSequence = 1),
+                makeGStopTime(tripIdInt, stopIdInt = 2, stopSequence = 3),
+                makeGStopTime(tripIdInt, stopIdInt = 3, stopSequence = 2),
+            )
+        )
+
+        assertEquals(2, gTripStopTimes.findOutOfOrderIndex())
+    }
+}
@@ -0,0 +1,120 @@
+package org.mtransit.parser.mt
+
+import androidx.collection.MutableIntIntMap
+import androidx.collection.MutableLongObjectMap
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.mockito.ArgumentMatchers.any
+import org.mockito.ArgumentMatchers.anyString
+import org.mockito.Mockito.mock
+import org.mockito.kotlin.whenever
+import org.mtransit.parser.Pair
+import org.mtransit.parser.gtfs.GAgencyTools
+import org.mtransit.parser.gtfs.data.GIDs
+import org.mtransit.parser.gtfs.data.GPickupType
+import org.mtransit.parser.gtfs.data.GRouteStore
+import org.mtransit.parser.gtfs.data.GRouteType
+import org.mtransit.parser.gtfs.data.GSpec
+import org.mtransit.parser.gtfs.data.GStopTime
+import org.mtransit.parser.gtfs.data.GTripStop
+import org.mtransit.parser.mt.data.MDirection
+import org.mtransit.parser.mt.data.MScheduleMap
+import org.mtransit.parser.mt.data.makeGRoute
+import org.mtransit.parser.mt.data.makeGStopTime
+import org.mtransit.parser.mt.data.makeGTrip
+
+class GenerateMObjectsTaskTest {
+
+    companion object {
+        private const val RID = 1L
+        private const val DIRECTION_ID = 100L
+        private const val TRIP_HEADSIGN = "Downtown"
+        private const val STOP_HEADSIGN = "Express"
+    }
+
+    private val gtfs: GSpec = mock()
+
+    private val agencyTools: GAgencyTools = mock()
+
+    private val serviceIdInt = GIDs.getInt("generate_m_objects_task_test_service")
+    private val tripIdInt = GIDs.getInt("generate_m_objects_task_test_trip")
+
+    private val gRoute = makeGRoute(
+        id = "generate_m_objects_task_test_route",
+        shortName = "RSN",
+        longName = "RLN",
+        routeType = GRouteType.BUS.id,
+    )
+
+    private val gTrip = makeGTrip(tripIdInt, gRoute.routeIdInt, serviceIdInt, tripHeadsign = TRIP_HEADSIGN)
+
+    @Before
+    fun setUp() {
+        whenever(agencyTools.getTimes(any(), any(), any()))
+            .then {
+                val gStopTime = it.arguments[0] as GStopTime
+                Pair(gStopTime.arrivalTime, gStopTime.departureTime)
+            }
+        whenever(agencyTools.cleanStopHeadSign(any(), any(), any(), anyString()))
+            .then { it.arguments[3] as String }
+        whenever(gtfs.getRoutes(RID)).thenReturn(listOf(gRoute))
+        whenever(gtfs.getRouteTrips(gRoute.routeIdInt)).thenReturn(listOf(gTrip))
+    }
+
+    @Test
+    fun testParseGStopTimes_tripStopsSchedules() {
+        // loop trip: 1st stop visited again at the end (no pickup)
+        val stopIdInts = (1..6).map { GIDs.getInt("generate_m_objects_task_test_stop_$it") } + GIDs.getInt("generate_m_objects_task_test_stop_1")
+        val stopTimes = stopIdInts.mapIndexed { index, stopIdInt ->
+            makeGStopTime(
+                tripIdInt,
+                stopIdInt,
+                stopSequence = index + 1,
+                stopHeadsign = if (index == 2) STOP_HEADSIGN else null,
+                pickupType = if (index == stopIdInts.lastIndex) GPickupType.NO_PICKUP else GPickupType.REGULAR,
+            )
+        }
+        whenever(gtfs.takeRoutePartition(RID)).thenReturn(
+            GRouteStore.Partition.Builder(RID).apply {
+                stopTimes.reversed().forEach { addStopTime(it) } // NOT sorted
+            }.build()
+        )
+        val tripStops = stopTimes.map { GTripStop(gRoute.routeIdInt, tripIdInt, it.stopIdInt, it.stopSequence) } +
+                GTripStop(gRoute.routeIdInt, tripIdInt, stopIdInts[1], 9) // no stop time
+        val task = GenerateMObjectsTask(RID, 0L, agencyTools, gtfs)
+        val mSchedules = MScheduleMap()
+        val addedMDirectionIdAndGStopIds = MutableLongObjectMap<MutableIntIntMap>()
+        // Act
+        task.loadRouteStopTimesAndTripStops(gtfs)
+        tripStops.forEach { gTripStop ->
+            task.parseGStopTimes(
+                mSchedules,
+                DIRECTION_ID,
+                serviceIdInt,
+                MDirection.HEADSIGN_TYPE_STRING,
+                TRIP_HEADSIGN,
+                null,
+                gRoute,
+                gTrip,
+                gTripStop,
+                gTripStop.stopIdInt, // MT stop ID
+                addedMDirectionIdAndGStopIds,
+            )
+        }
+        // Assert
+        assertEquals(
+            listOf(
+                listOf(stopIdInts[0], 1, 60_130, MDirection.HEADSIGN_TYPE_STRING, TRIP_HEADSIGN),
+                listOf(stopIdInts[1], 2, 60_230, MDirection.HEADSIGN_TYPE_STRING, TRIP_HEADSIGN),
+                listOf(stopIdInts[2], 3, 60_330, MDirection.HEADSIGN_TYPE_STRING, STOP_HEADSIGN),
+                listOf(stopIdInts[3], 4, 60_430, MDirection.HEADSIGN_TYPE_STRING, TRIP_HEADSIGN),
+                listOf(stopIdInts[4], 5, 60_530, MDirection.HEADSIGN_TYPE_STRING, TRIP_HEADSIGN),
+                listOf(stopIdInts[5], 6, 60_630, MDirection.HEADSIGN_TYPE_STRING, TRIP_HEADSIGN),
+                listOf(stopIdInts[0], 7, 60_730, MDirection.HEADSIGN_TYPE_NO_PICKUP, null),
+            ),
+            mSchedules.getValues().map { listOf(it.stopId, it.stopSequence, it.departure, it.headsignType, it.headsignValue) }
+        )
+        assertEquals(7, addedMDirectionIdAndGStopIds[DIRECTION_ID]?.get(stopIdInts[0]))
+    }
+}
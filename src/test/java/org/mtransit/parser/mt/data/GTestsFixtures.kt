@@ -1,7 +1,14 @@
 package org.mtransit.parser.mt.data
 
+import org.mtransit.parser.gtfs.data.GDirectionId
+import org.mtransit.parser.gtfs.data.GDropOffType
 import org.mtransit.parser.gtfs.data.GIDs
+import org.mtransit.parser.gtfs.data.GPickupType
 import org.mtransit.parser.gtfs.data.GRoute
+import org.mtransit.parser.gtfs.data.GStopTime
+import org.mtransit.parser.gtfs.data.GTimePoint
+import org.mtransit.parser.gtfs.data.GTrip
+import org.mtransit.parser.gtfs.data.GWheelchairBoardingType
 
 fun makeGRoute(
     agencyId: String = "agency_id",
@@ -20,3 +27,42 @@ fun makeGRoute(
     routeType = routeType,
     routeColor = color,
 )
+
+fun makeGTrip(
+    tripIdInt: Int,
+    routeIdInt: Int,
+    serviceIdInt: Int = GIDs.getInt("service_id"),
+    tripHeadsign: String? = null,
+    directionId: GDirectionId = GDirectionId.NONE,
+) = GTrip(
+    tripIdInt = tripIdInt,
+    routeIdInt = routeIdInt,
+    originalRouteIdInt = routeIdInt,
+    serviceIdInt = serviceIdInt,
+    tripHeadsign = tripHeadsign,
+    tripShortName = null,
+    directionIdE = directionId,
+    blockId = null,
+    shapeId = null,
+    wheelchairAccessible = GWheelchairBoardingType.NO_INFO,
+    bikesAllowed = null,
+)
+
+fun makeGStopTime(
+    tripIdInt: Int,
+    stopIdInt: Int,
+    stopSequence: Int,
+    stopHeadsign: String? = null,
+    pickupType: GPickupType = GPickupType.REGULAR,
+    dropOffType: GDropOffType = GDropOffType.REGULAR,
+) = GStopTime(
+    tripIdInt = tripIdInt,
+    _arrivalTime = 60_000 + stopSequence * 100,
+    _departureTime = 60_030 + stopSequence * 100,
+    stopIdInt = stopIdInt,
+    stopSequence = stopSequence,
+    stopHeadsign = stopHeadsign,
+    pickupType = pickupType,
+    dropOffType = dropOffType,
+    timePoint = GTimePoint.EXACT,
+)
@@ -0,0 +1,60 @@
+package org.mtransit.parser.mt.data
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.mtransit.parser.gtfs.data.GIDs
+
+class MScheduleMapTest {
+
+    private val serviceIdInt = GIDs.getInt("schedule_map_test_service")
+    private val tripIdInt = GIDs.getInt("schedule_map_test_trip")
+
+    private fun makeMSchedule(directionId: Long, stopId: Int, departure: Int, noPickup: Boolean = false) = MSchedule(
+        routeId = 1L,
+        serviceIdInt = serviceIdInt,
+        directionId = directionId,
+        stopId = stopId,
+        arrival = departure,
+        departure = departure,
+        tripIdInt = tripIdInt,
+        stopSequence = stopId,
+        accessible = 0,
+    ).apply {
+        if (noPickup) setHeadsign(MDirection.HEADSIGN_TYPE_NO_PICKUP, null)
+    }
+
+    @Test
+    fun testPut_sameUID() {
+        val map = MScheduleMap()
+        val schedules = (1..5_000).map { makeMSchedule(directionId = 100L + it % 2, stopId = it, departure = 80_000 + it) }
+        schedules.forEach { assertNull(map.put(it)) }
+        val sameUID = makeMSchedule(directionId = 101L, stopId = 1, departure = 80_001)
+
+        assertSame(schedules[0], map[sameUID])
+        assertSame(schedules[0], map.put(sameUID))
+
+        assertEquals(5_000, map.size)
+        assertSame(sameUID, map.getValues()[0]) // same position
+        assertEquals(schedules.map { it.uID }, map.getValues().map { it.uID })
+        assertNull(map[makeMSchedule(directionId = 100L, stopId = 1, departure = 80_001)])
+    }
+
+    @Test
+    fun testIsNoPickup() {
+        val map = MScheduleMap()
+        map.put(makeMSchedule(directionId = 1L, stopId = 1, departure = 80_000))
+        map.put(makeMSchedule(directionId = 1L, stopId = 2, departure = 80_100, noPickup = true))
+        map.put(makeMSchedule(directionId = 1L, stopId = 2, departure = 90_100, noPickup = true))
+        map.put(makeMSchedule(directionId = 1L, stopId = 3, departure = 80_200, noPickup = true))
+        map.put(makeMSchedule(directionId = 1L, stopId = 3, departure = 90_200))
+
+        assertFalse(map.isNoPickup(directionId = 1L, stopId = 1))
+        assertTrue(map.isNoPickup(directionId = 1L, stopId = 2))
+        assertFalse(map.isNoPickup(directionId = 1L, stopId = 3)) // NOT all
+        assertFalse(map.isNoPickup(directionId = 2L, stopId = 2)) // no schedule
+    }
+}